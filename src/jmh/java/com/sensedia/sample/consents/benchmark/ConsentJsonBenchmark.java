@@ -0,0 +1,92 @@
+package com.sensedia.sample.consents.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.dto.PageDTO;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Jackson serialization of a single consent and of a page of them, with the same date settings as
+ * {@code spring.jackson} in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConsentJsonBenchmark {
+
+  private final ObjectMapper objectMapper =
+      Jackson2ObjectMapperBuilder.json()
+          .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+          .build();
+
+  private ConsentResponseDTO consent;
+
+  @Setup
+  public void setUp() {
+    consent = response();
+  }
+
+  /** Only {@link #page} takes this state, so the single consent is not measured per page size. */
+  @State(Scope.Benchmark)
+  public static class Page {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private PageDTO<ConsentResponseDTO> page;
+
+    @Setup
+    public void setUp() {
+      page =
+          new PageDTO<>(
+              IntStream.range(0, pageSize).mapToObj(i -> response()).toList(),
+              0,
+              pageSize,
+              10_000L,
+              10_000 / pageSize,
+              true,
+              null);
+    }
+  }
+
+  private static ConsentResponseDTO response() {
+    return new ConsentResponseDTO(
+        UUID.randomUUID(),
+        "66052705094",
+        ConsentStatus.ACTIVE,
+        LocalDateTime.now(),
+        LocalDateTime.now().plusDays(30),
+        "Info");
+  }
+
+  @Benchmark
+  public byte[] consent() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(consent);
+  }
+
+  @Benchmark
+  public byte[] page(Page state) throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(state.page);
+  }
+}
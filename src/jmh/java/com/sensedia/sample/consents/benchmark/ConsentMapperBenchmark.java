@@ -0,0 +1,57 @@
+package com.sensedia.sample.consents.benchmark;
+
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.mapper.ConsentMapper;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The MapStruct mapping done on every create (request to entity) and every read (to response). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConsentMapperBenchmark {
+
+  private final ConsentMapper mapper = Mappers.getMapper(ConsentMapper.class);
+
+  private final ConsentRequestCreateDTO request =
+      new ConsentRequestCreateDTO(
+          "660.527.050-94", ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), "Info");
+
+  private final Consent consent =
+      Consent.builder()
+          .id(UUID.randomUUID())
+          .cpf("66052705094")
+          .status(ConsentStatus.ACTIVE)
+          .creationDateTime(LocalDateTime.now())
+          .expirationDateTime(LocalDateTime.now().plusDays(30))
+          .additionalInfo("Info")
+          .version(0)
+          .build();
+
+  @Benchmark
+  public Consent toEntity() {
+    return mapper.toEntity(request);
+  }
+
+  @Benchmark
+  public ConsentResponseDTO toResponseDTO() {
+    return mapper.toResponseDTO(consent);
+  }
+}
@@ -0,0 +1,67 @@
+package com.sensedia.sample.consents.benchmark;
+
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bean Validation of a create request ({@code @ValidCpf}, {@code @Future}, ...), for a valid
+ * request and for one whose CPF fails the check digits, which also builds the violation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConsentValidationBenchmark {
+
+  private ValidatorFactory factory;
+  private Validator validator;
+
+  private final ConsentRequestCreateDTO valid =
+      new ConsentRequestCreateDTO(
+          "660.527.050-94", ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), "Info");
+
+  private final ConsentRequestCreateDTO invalidCpf =
+      new ConsentRequestCreateDTO(
+          "660.527.050-95", ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), "Info");
+
+  @Setup
+  public void setUp() {
+    factory = Validation.buildDefaultValidatorFactory();
+    validator = factory.getValidator();
+  }
+
+  @TearDown
+  public void tearDown() {
+    factory.close();
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<ConsentRequestCreateDTO>> validRequest() {
+    return validator.validate(valid);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<ConsentRequestCreateDTO>> invalidCpf() {
+    return validator.validate(invalidCpf);
+  }
+}
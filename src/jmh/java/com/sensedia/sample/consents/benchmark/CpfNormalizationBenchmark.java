@@ -0,0 +1,51 @@
+package com.sensedia.sample.consents.benchmark;
+
+import com.sensedia.sample.consents.mapper.CpfCodec;
+import com.sensedia.sample.consents.mapper.CpfMapperUtil;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stripping the formatting of a CPF, done on every create, update and lookup by CPF, against the
+ * {@code replaceAll} it replaced, and full validation with {@link CpfCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CpfNormalizationBenchmark {
+
+  @Param({"660.527.050-94", "66052705094"})
+  public String cpf;
+
+  @Benchmark
+  public String regex() {
+    return cpf.replaceAll("\\D", "");
+  }
+
+  @Benchmark
+  public String onlyDigits() {
+    return CpfMapperUtil.onlyDigits(cpf);
+  }
+
+  @Benchmark
+  public String normalize() {
+    return CpfCodec.normalize(cpf);
+  }
+
+  @Benchmark
+  public long toLong() {
+    return CpfCodec.toLong(cpf);
+  }
+}
@@ -2,9 +2,11 @@ package com.sensedia.sample.consents;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @EnableReactiveMongoAuditing
 public class ConsentsApplication {
 
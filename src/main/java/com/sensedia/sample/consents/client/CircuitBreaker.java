@@ -0,0 +1,131 @@
+package com.sensedia.sample.consents.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import reactor.core.publisher.Mono;
+
+/**
+ * Opens after {@code failureThreshold} consecutive failed calls and rejects every call for {@code
+ * openDuration}. The first call after that goes through as a trial while the others are still
+ * rejected: if it succeeds the breaker closes, otherwise it opens again.
+ *
+ * <p>Publishes {@code consents.external.info.breaker.state}, 1 for the current state and 0 for the
+ * others, and {@code consents.external.info.breaker.calls} tagged with the outcome.
+ */
+class CircuitBreaker {
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openNanos;
+  private final AtomicReference<Snapshot> snapshot =
+      new AtomicReference<>(new Snapshot(State.CLOSED, 0, 0));
+  private final Counter succeeded;
+  private final Counter failed;
+  private final Counter rejected;
+
+  CircuitBreaker(int failureThreshold, Duration openDuration, MeterRegistry registry) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+    for (State state : State.values()) {
+      Gauge.builder("consents.external.info.breaker.state", () -> state() == state ? 1 : 0)
+          .description("Whether the external info circuit breaker is in this state")
+          .tag("state", state.name().toLowerCase())
+          .register(registry);
+    }
+    this.succeeded = calls(registry, "success");
+    this.failed = calls(registry, "failure");
+    this.rejected = calls(registry, "rejected");
+  }
+
+  private static Counter calls(MeterRegistry registry, String outcome) {
+    return Counter.builder("consents.external.info.breaker.calls")
+        .description("External info calls by circuit breaker outcome")
+        .tag("outcome", outcome)
+        .register(registry);
+  }
+
+  State state() {
+    return snapshot.get().state();
+  }
+
+  /**
+   * Runs the call unless the breaker is open, in which case it fails with {@link OpenException}.
+   */
+  <T> Mono<T> protect(Mono<T> call) {
+    return Mono.defer(
+        () -> {
+          Snapshot permitted = tryPermit();
+          if (permitted == null) {
+            rejected.increment();
+            return Mono.error(new OpenException());
+          }
+          return call.doOnSuccess(value -> onSuccess())
+              .doOnError(error -> onFailure())
+              .doOnCancel(() -> onCancel(permitted));
+        });
+  }
+
+  /** Emits the snapshot the call was permitted under, or null when it is rejected. */
+  private Snapshot tryPermit() {
+    while (true) {
+      Snapshot current = snapshot.get();
+      switch (current.state()) {
+        case CLOSED:
+          return current;
+        case HALF_OPEN:
+          return null;
+        default:
+          if (System.nanoTime() - current.openedAtNanos() < openNanos) {
+            return null;
+          }
+          Snapshot trial = new Snapshot(State.HALF_OPEN, 0, current.openedAtNanos());
+          if (snapshot.compareAndSet(current, trial)) {
+            return trial;
+          }
+      }
+    }
+  }
+
+  private void onSuccess() {
+    succeeded.increment();
+    snapshot.set(new Snapshot(State.CLOSED, 0, 0));
+  }
+
+  private void onFailure() {
+    failed.increment();
+    snapshot.updateAndGet(
+        current -> {
+          if (current.state() == State.HALF_OPEN) {
+            return new Snapshot(State.OPEN, 0, System.nanoTime());
+          }
+          int failures = current.failures() + 1;
+          return failures >= failureThreshold
+              ? new Snapshot(State.OPEN, 0, System.nanoTime())
+              : new Snapshot(current.state(), failures, current.openedAtNanos());
+        });
+  }
+
+  /** A cancelled trial proves nothing; let the next call try again. */
+  private void onCancel(Snapshot permitted) {
+    if (permitted.state() == State.HALF_OPEN) {
+      snapshot.compareAndSet(permitted, new Snapshot(State.OPEN, 0, permitted.openedAtNanos()));
+    }
+  }
+
+  /** Thrown instead of calling while the breaker is open. Carries no stack trace. */
+  static class OpenException extends RuntimeException {
+    OpenException() {
+      super("Circuit breaker is open", null, false, false);
+    }
+  }
+
+  private record Snapshot(State state, int failures, long openedAtNanos) {}
+}
@@ -3,5 +3,13 @@ package com.sensedia.sample.consents.client;
 import reactor.core.publisher.Mono;
 
 public interface ExternalInfoClient {
+
+  /** The additional info, or the default info when it cannot be fetched. */
   Mono<String> fetchAdditionalInfo();
+
+  /**
+   * The additional info, or an error when it cannot be fetched, for callers that would rather try
+   * again later than store the default info.
+   */
+  Mono<String> fetchAdditionalInfoOrError();
 }
@@ -1,39 +1,143 @@
 package com.sensedia.sample.consents.client;
 
+import com.sensedia.sample.consents.config.ExternalInfoProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+/**
+ * Fetches the additional info, which is the same for every consent, and keeps the last answer for
+ * {@code ttl}. For a further {@code staleWhileRevalidate} the stale answer is still served while
+ * one background call refreshes it. Callers that miss the cache while a call is in flight share
+ * that call instead of starting their own, so a burst of creates costs one outbound request.
+ *
+ * <p>Every lookup increments {@code consents.external.info} tagged with its result: {@code hit},
+ * {@code stale}, {@code miss} (started a call) or {@code coalesced} (joined one). Failures are not
+ * cached; the caller gets the default info, or the error from {@link #fetchAdditionalInfoOrError},
+ * and the next lookup tries again.
+ *
+ * <p>Calls go through a {@link CircuitBreaker}, so while the API keeps failing or timing out
+ * callers get the default info at once instead of waiting for each call to fail.
+ */
 @Slf4j
 @Component
 public class IExternalInfoClient implements ExternalInfoClient {
 
   private final WebClient webClient;
-  private static final String DUMMY_API_URL = "https://jsonplaceholder.typicode.com/todos/1";
   private static final String DEFAULT_INFO = "Default information";
 
-  public IExternalInfoClient(WebClient webClient) {
+  private final ExternalInfoProperties properties;
+  private final AtomicReference<CachedInfo> cached = new AtomicReference<>();
+  private final AtomicReference<Mono<String>> inFlight = new AtomicReference<>();
+  private final Counter hits;
+  private final Counter staleHits;
+  private final Counter misses;
+  private final Counter coalesced;
+  private final CircuitBreaker breaker;
+
+  public IExternalInfoClient(
+      WebClient webClient, ExternalInfoProperties properties, MeterRegistry registry) {
     this.webClient = webClient;
+    this.properties = properties;
+    this.hits = lookups(registry, "hit");
+    this.staleHits = lookups(registry, "stale");
+    this.misses = lookups(registry, "miss");
+    this.coalesced = lookups(registry, "coalesced");
+    this.breaker =
+        new CircuitBreaker(properties.failureThreshold(), properties.openDuration(), registry);
+  }
+
+  private static Counter lookups(MeterRegistry registry, String result) {
+    return Counter.builder("consents.external.info")
+        .description("Additional info lookups by how they were served")
+        .tag("result", result)
+        .register(registry);
   }
 
   @Override
   public Mono<String> fetchAdditionalInfo() {
+    return fetchAdditionalInfoOrError()
+        .onErrorResume(
+            e -> {
+              if (!(e instanceof CircuitBreaker.OpenException)) {
+                log.error("Failed to fetch from dummy API: {}", e.getMessage());
+              }
+              return Mono.just(DEFAULT_INFO);
+            });
+  }
+
+  @Override
+  public Mono<String> fetchAdditionalInfoOrError() {
+    return Mono.defer(
+        () -> {
+          CachedInfo current = cached.get();
+          if (Objects.nonNull(current)) {
+            long age = System.nanoTime() - current.fetchedAtNanos();
+            if (age <= properties.ttl().toNanos()) {
+              hits.increment();
+              return Mono.just(current.value());
+            }
+            if (age <= properties.ttl().plus(properties.staleWhileRevalidate()).toNanos()) {
+              staleHits.increment();
+              revalidate();
+              return Mono.just(current.value());
+            }
+          }
+          return shared();
+        });
+  }
+
+  private void revalidate() {
+    shared()
+        .subscribe(
+            value -> {},
+            error -> log.warn("Failed to refresh additional info: {}", error.getMessage()));
+  }
+
+  /**
+   * Joins the call in flight or starts one. The call runs detached from its callers, so a caller
+   * that cancels does not abort it for the others, and it is cleared only after its answer is
+   * cached.
+   */
+  private Mono<String> shared() {
+    Mono<String> current = inFlight.get();
+    if (Objects.nonNull(current)) {
+      coalesced.increment();
+      return current;
+    }
+    Sinks.One<String> result = Sinks.one();
+    Mono<String> call = result.asMono();
+    if (!inFlight.compareAndSet(null, call)) {
+      return shared();
+    }
+    misses.increment();
+    breaker
+        .protect(fetchRemote())
+        .doOnNext(value -> cached.set(new CachedInfo(value, System.nanoTime())))
+        .doFinally(signal -> inFlight.compareAndSet(call, null))
+        .subscribe(result::tryEmitValue, result::tryEmitError, result::tryEmitEmpty);
+    return call;
+  }
+
+  private Mono<String> fetchRemote() {
     log.info("Fetching additional info from dummy API...");
 
     return webClient
         .get()
-        .uri(DUMMY_API_URL)
+        .uri(properties.url())
         .retrieve()
         .bodyToMono(Map.class)
         .map(responseBody -> Optional.ofNullable((String) responseBody.get("title")))
-        .map(optionalTitle -> optionalTitle.orElse(DEFAULT_INFO))
-        .onErrorResume(
-            e -> {
-              log.error("Failed to fetch from dummy API: {}", e.getMessage());
-              return Mono.just(DEFAULT_INFO);
-            });
+        .map(optionalTitle -> optionalTitle.orElse(DEFAULT_INFO));
   }
+
+  private record CachedInfo(String value, long fetchedAtNanos) {}
 }
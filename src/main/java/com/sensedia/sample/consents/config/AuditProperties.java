@@ -0,0 +1,15 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.repository.ConsentLogStorage;
+import com.sensedia.sample.consents.service.AuditDurability;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.audit")
+public record AuditProperties(
+    @DefaultValue("GROUP_COMMIT") AuditDurability durability,
+    @DefaultValue("256") int maxBatchSize,
+    @DefaultValue("10ms") Duration maxWait,
+    @DefaultValue("10000") int queueCapacity,
+    @DefaultValue("SINGLE") ConsentLogStorage storage) {}
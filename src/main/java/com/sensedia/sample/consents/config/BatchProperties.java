@@ -0,0 +1,7 @@
+package com.sensedia.sample.consents.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.batch")
+public record BatchProperties(@DefaultValue("500") int chunkSize) {}
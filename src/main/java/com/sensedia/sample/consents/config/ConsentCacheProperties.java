@@ -0,0 +1,14 @@
+package com.sensedia.sample.consents.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.cache")
+public record ConsentCacheProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("10000") long maximumSize,
+    @DefaultValue("5m") Duration ttl,
+    @DefaultValue("1s") Duration revalidateAfter,
+    @DefaultValue("100000") long absentMaximumSize,
+    @DefaultValue("1h") Duration absentTtl) {}
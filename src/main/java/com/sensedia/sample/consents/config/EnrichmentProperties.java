@@ -0,0 +1,16 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.service.EnrichmentMode;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.enrichment")
+public record EnrichmentProperties(
+    @DefaultValue("INLINE") EnrichmentMode mode,
+    @DefaultValue("256") int maxBatchSize,
+    @DefaultValue("100ms") Duration maxWait,
+    @DefaultValue("4") int concurrency,
+    @DefaultValue("10000") int queueCapacity,
+    @DefaultValue("1m") Duration sweepInterval,
+    @DefaultValue("2m") Duration sweepLeaseTtl) {}
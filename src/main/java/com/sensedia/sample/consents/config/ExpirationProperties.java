@@ -0,0 +1,13 @@
+package com.sensedia.sample.consents.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.expiration")
+public record ExpirationProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("1m") Duration interval,
+    @DefaultValue("500") int chunkSize,
+    @DefaultValue("100ms") Duration chunkPause,
+    @DefaultValue("2m") Duration leaseTtl) {}
@@ -0,0 +1,13 @@
+package com.sensedia.sample.consents.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.external-info")
+public record ExternalInfoProperties(
+    @DefaultValue("https://jsonplaceholder.typicode.com/todos/1") String url,
+    @DefaultValue("5m") Duration ttl,
+    @DefaultValue("1h") Duration staleWhileRevalidate,
+    @DefaultValue("5") int failureThreshold,
+    @DefaultValue("30s") Duration openDuration) {}
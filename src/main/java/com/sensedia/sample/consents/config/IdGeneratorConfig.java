@@ -0,0 +1,26 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.service.TimeOrderedIdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.JdkIdGenerator;
+
+/**
+ * Ids of consents and log entries come from the {@link IdGenerator} declared here, selected by
+ * {@code consents.ids.strategy}. Time-ordered ids only keep their order in the {@code _id} index
+ * when UUIDs are stored with the standard binary representation ({@code
+ * spring.data.mongodb.uuid-representation: standard}); the legacy Java one reverses the bytes of
+ * each half.
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+  @Bean
+  public IdGenerator idGenerator(IdProperties properties) {
+    return switch (properties.strategy()) {
+      case RANDOM -> new JdkIdGenerator();
+      case TIME_ORDERED -> new TimeOrderedIdGenerator();
+    };
+  }
+}
@@ -0,0 +1,8 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.service.IdStrategy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.ids")
+public record IdProperties(@DefaultValue("TIME_ORDERED") IdStrategy strategy) {}
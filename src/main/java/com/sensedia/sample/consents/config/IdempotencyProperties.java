@@ -0,0 +1,14 @@
+package com.sensedia.sample.consents.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.idempotency")
+public record IdempotencyProperties(
+    @DefaultValue("24h") Duration ttl,
+    @DefaultValue("10s") Duration waitTimeout,
+    @DefaultValue("50ms") Duration pollInterval,
+    @DefaultValue("30s") Duration claimLease,
+    @DefaultValue("10000") long recentMaximumSize,
+    @DefaultValue("10m") Duration recentTtl) {}
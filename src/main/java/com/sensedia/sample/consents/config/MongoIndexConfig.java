@@ -0,0 +1,103 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import com.sensedia.sample.consents.repository.ConsentIndex;
+import com.sensedia.sample.consents.repository.ConsentLogIndex;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Creates the indexes declared in {@link ConsentIndex} and {@link ConsentLogIndex}, plus the TTL
+ * index of the idempotency keys, and checks they are all in place, since the documents declare none
+ * of their own. It runs once the singletons are created and before the web server starts, so the
+ * application never serves without them and fails to start if one is missing. The storage migration
+ * skips it, since it rebuilds the indexes itself.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class MongoIndexConfig implements SmartInitializingSingleton {
+
+  /** Serves lookups by CPF, optionally narrowed by status, ordered by expiration date. */
+  public static final String CPF_INDEX = ConsentIndex.CPF_STATUS_EXPIRATION_DATE_TIME.indexName();
+
+  /** Expires idempotency keys {@code consents.idempotency.ttl} after they were first used. */
+  private static final String IDEMPOTENCY_TTL_INDEX = "createdAt_ttl";
+
+  private static final String IDEMPOTENCY_CREATED_AT = "createdAt";
+
+  private final ReactiveMongoTemplate template;
+  private final IdempotencyProperties idempotencyProperties;
+  private final StorageProperties storageProperties;
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (!storageProperties.migrate()) {
+      ensureIndexes();
+    }
+  }
+
+  public void ensureIndexes() {
+    ensureIndexes(
+            Consent.class, Arrays.stream(ConsentIndex.values()).map(ConsentIndex::toIndex).toList())
+        .then(
+            ensureIndexes(
+                ConsentLog.class,
+                Arrays.stream(ConsentLogIndex.values()).map(ConsentLogIndex::toIndex).toList()))
+        .then(
+            ensureIndexes(
+                IdempotencyRecord.class,
+                List.of(
+                    new Index()
+                        .on(IDEMPOTENCY_CREATED_AT, Sort.Direction.ASC)
+                        .expire(idempotencyProperties.ttl())
+                        .named(IDEMPOTENCY_TTL_INDEX))))
+        .block();
+  }
+
+  private Mono<Void> ensureIndexes(Class<?> type, List<Index> indexes) {
+    String collection = template.getCollectionName(type);
+    return Flux.fromIterable(indexes)
+        .concatMap(index -> template.indexOps(type).ensureIndex(index))
+        .doOnNext(name -> log.info("Ensured index [{}] on {} collection", name, collection))
+        .then(checkIndexes(type, indexes));
+  }
+
+  private Mono<Void> checkIndexes(Class<?> type, List<Index> expected) {
+    return template
+        .indexOps(type)
+        .getIndexInfo()
+        .map(IndexInfo::getName)
+        .collect(Collectors.toSet())
+        .flatMap(
+            existing -> {
+              Set<String> missing =
+                  expected.stream()
+                      .map(index -> index.getIndexOptions().getString("name"))
+                      .filter(name -> !existing.contains(name))
+                      .collect(Collectors.toSet());
+              return missing.isEmpty()
+                  ? Mono.empty()
+                  : Mono.error(
+                      new IllegalStateException(
+                          "Missing indexes on "
+                              + template.getCollectionName(type)
+                              + " collection: "
+                              + missing));
+            });
+  }
+}
@@ -0,0 +1,46 @@
+package com.sensedia.sample.consents.config;
+
+import com.mongodb.event.CommandEvent;
+import com.sensedia.sample.consents.repository.SlowQueryMonitor;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.mongodb.DefaultMongoCommandTagsProvider;
+import io.micrometer.core.instrument.binder.mongodb.MongoCommandTagsProvider;
+import java.util.Set;
+import java.util.stream.StreamSupport;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tags of {@code mongodb.driver.commands}, the timer Spring Boot's actuator records for every
+ * command through a driver {@code CommandListener}. Only the command, the collection and the status
+ * are kept: the cluster id changes on every restart and the server address multiplies the series by
+ * the size of the replica set, while latency per command and collection is what is looked at.
+ * Histograms and SLO buckets are configured in {@code management.metrics.distribution}.
+ *
+ * <p>Also registers {@link SlowQueryMonitor} with the client, next to the actuator's listener.
+ */
+@Configuration
+public class MongoMetricsConfig {
+
+  private static final Set<String> KEPT_TAGS = Set.of("command", "collection", "status");
+
+  @Bean
+  public MongoCommandTagsProvider mongoCommandTagsProvider() {
+    return new DefaultMongoCommandTagsProvider() {
+      @Override
+      public Iterable<Tag> commandTags(CommandEvent event) {
+        return Tags.of(
+            StreamSupport.stream(super.commandTags(event).spliterator(), false)
+                .filter(tag -> KEPT_TAGS.contains(tag.getKey()))
+                .toList());
+      }
+    };
+  }
+
+  @Bean
+  public MongoClientSettingsBuilderCustomizer slowQueryMonitorCustomizer(SlowQueryMonitor monitor) {
+    return settings -> settings.addCommandListener(monitor);
+  }
+}
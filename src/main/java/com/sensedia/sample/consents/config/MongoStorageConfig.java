@@ -0,0 +1,82 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.repository.CompactStorage;
+import com.sensedia.sample.consents.repository.StorageFormat;
+import java.util.List;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoManagedTypes;
+import org.springframework.data.mongodb.core.convert.DefaultMongoTypeMapper;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+/**
+ * Lays out consents and log entries in the {@link StorageFormat} selected by {@code
+ * consents.storage.format}. Replaces the conversions, mapping context and converter Spring Boot
+ * would declare, keeping what they configure, so that under {@link StorageFormat#COMPACT} every
+ * query, update, sort and index goes through the short field names and value converters of {@link
+ * CompactStorage}. The compact format also leaves out the {@code _class} type hint: no stored class
+ * has subclasses, so documents are read by their declared type anyway.
+ */
+@Configuration
+public class MongoStorageConfig {
+
+  @Bean
+  public MongoCustomConversions mongoCustomConversions(StorageProperties properties) {
+    return customConversions(properties.format());
+  }
+
+  @Bean
+  public MongoMappingContext mongoMappingContext(
+      StorageProperties properties,
+      MongoProperties mongoProperties,
+      MongoCustomConversions conversions,
+      MongoManagedTypes managedTypes) {
+    MongoMappingContext context = mappingContext(properties.format(), conversions);
+    if (mongoProperties.isAutoIndexCreation() != null) {
+      context.setAutoIndexCreation(mongoProperties.isAutoIndexCreation());
+    }
+    context.setManagedTypes(managedTypes);
+    return context;
+  }
+
+  @Bean
+  public MappingMongoConverter mappingMongoConverter(
+      StorageProperties properties,
+      MongoMappingContext context,
+      MongoCustomConversions conversions) {
+    return converter(properties.format(), context, conversions);
+  }
+
+  public static MongoCustomConversions customConversions(StorageFormat format) {
+    if (format == StorageFormat.STANDARD) {
+      return new MongoCustomConversions(List.of());
+    }
+    return MongoCustomConversions.create(
+        adapter -> adapter.configurePropertyConversions(CompactStorage::registerConverters));
+  }
+
+  public static MongoMappingContext mappingContext(
+      StorageFormat format, MongoCustomConversions conversions) {
+    MongoMappingContext context = new MongoMappingContext();
+    context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    if (format == StorageFormat.COMPACT) {
+      context.setFieldNamingStrategy(CompactStorage.fieldNamingStrategy());
+    }
+    return context;
+  }
+
+  public static MappingMongoConverter converter(
+      StorageFormat format, MongoMappingContext context, MongoCustomConversions conversions) {
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+    converter.setCustomConversions(conversions);
+    if (format == StorageFormat.COMPACT) {
+      converter.setTypeMapper(new DefaultMongoTypeMapper(null, context));
+    }
+    return converter;
+  }
+}
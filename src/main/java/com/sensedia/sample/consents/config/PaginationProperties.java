@@ -0,0 +1,13 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.service.CountStrategy;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.pagination")
+public record PaginationProperties(
+    @DefaultValue("EXACT") CountStrategy countStrategy,
+    @DefaultValue("30s") Duration countCacheTtl,
+    @DefaultValue("100") int maxPageSize,
+    @DefaultValue("500") int streamBatchSize) {}
@@ -0,0 +1,14 @@
+package com.sensedia.sample.consents.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.audit.retention")
+public record RetentionProperties(
+    @DefaultValue("false") boolean enabled,
+    @DefaultValue("400d") Duration keep,
+    @DefaultValue("1h") Duration interval,
+    @DefaultValue("archive") Path archiveDirectory,
+    @DefaultValue("1h") Duration leaseTtl) {}
@@ -0,0 +1,13 @@
+package com.sensedia.sample.consents.config;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.slow-queries")
+public record SlowQueryProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("100ms") Duration threshold,
+    @DefaultValue("100") int capacity,
+    @DefaultValue({"consents", "consent_logs"}) List<String> collections) {}
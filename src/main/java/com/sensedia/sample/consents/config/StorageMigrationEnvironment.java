@@ -0,0 +1,29 @@
+package com.sensedia.sample.consents.config;
+
+import java.util.Map;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+/**
+ * Starts the application without a web server when {@code consents.storage.migrate} is set, so the
+ * storage migration never runs while requests are served against documents it is rewriting. The
+ * property is read from every source, the command line and environment variables included.
+ */
+public class StorageMigrationEnvironment implements EnvironmentPostProcessor {
+
+  private static final String MIGRATE = "consents.storage.migrate";
+  private static final String WEB_APPLICATION_TYPE = "spring.main.web-application-type";
+
+  @Override
+  public void postProcessEnvironment(
+      ConfigurableEnvironment environment, SpringApplication application) {
+    if (environment.getProperty(MIGRATE, Boolean.class, false)) {
+      environment
+          .getPropertySources()
+          .addFirst(
+              new MapPropertySource("storageMigration", Map.of(WEB_APPLICATION_TYPE, "none")));
+    }
+  }
+}
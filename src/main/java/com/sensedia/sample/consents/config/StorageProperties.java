@@ -0,0 +1,11 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.repository.StorageFormat;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.storage")
+public record StorageProperties(
+    @DefaultValue("STANDARD") StorageFormat format,
+    @DefaultValue("false") boolean migrate,
+    @DefaultValue("1000") int migrationBatchSize) {}
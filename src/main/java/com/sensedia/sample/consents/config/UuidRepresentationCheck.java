@@ -0,0 +1,74 @@
+package com.sensedia.sample.consents.config;
+
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.repository.ConsentLogBuckets;
+import com.sensedia.sample.consents.repository.LegacyUuids;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.UuidRepresentation;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Refuses to start when the consents or their logs hold UUID ids in the representation other than
+ * {@code spring.data.mongodb.uuid-representation}, since the driver would read none of them and
+ * every lookup by id would miss. Runs before the web server starts and is skipped by the storage
+ * migration, which converts legacy ids itself.
+ */
+@Component
+@RequiredArgsConstructor
+public class UuidRepresentationCheck implements SmartInitializingSingleton {
+
+  private final ReactiveMongoTemplate template;
+  private final ConsentLogBuckets buckets;
+  private final MongoProperties mongoProperties;
+  private final StorageProperties storageProperties;
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (storageProperties.migrate()) {
+      return;
+    }
+    UuidRepresentation representation = mongoProperties.getUuidRepresentation();
+    BsonBinarySubType foreign;
+    String fix;
+    if (representation == UuidRepresentation.STANDARD) {
+      foreign = BsonBinarySubType.UUID_LEGACY;
+      fix =
+          "run once with consents.storage.migrate=true to convert them, or set"
+              + " spring.data.mongodb.uuid-representation=java-legacy";
+    } else if (representation == UuidRepresentation.JAVA_LEGACY) {
+      foreign = BsonBinarySubType.UUID_STANDARD;
+      fix = "set spring.data.mongodb.uuid-representation=standard";
+    } else {
+      return;
+    }
+    String collection =
+        Flux.just(template.getCollectionName(Consent.class))
+            .concatWith(buckets.collectionsBetween(null, null))
+            .concatMap(
+                name ->
+                    template
+                        .getCollection(name)
+                        .flatMapMany(
+                            found ->
+                                found
+                                    .withDocumentClass(BsonDocument.class)
+                                    .find(LegacyUuids.idsOf(foreign))
+                                    .limit(1))
+                        .next()
+                        .map(document -> name))
+            .next()
+            .block();
+    if (Objects.nonNull(collection)) {
+      throw new IllegalStateException(
+          "Collection %s holds ids in a UUID representation other than %s; %s"
+              .formatted(collection, representation, fix));
+    }
+  }
+}
@@ -1,14 +1,47 @@
 package com.sensedia.sample.consents.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * Outbound calls use their own connection pool rather than Reactor Netty's global one, so its
+ * limits and metrics ({@code reactor.netty.connection.provider.*{name="outbound"}}) only cover
+ * them. A caller waiting for a connection fails after {@code pendingAcquireTimeout} instead of
+ * queueing without bound, and a slow upstream fails after {@code responseTimeout}.
+ */
 @Configuration
 public class WebClientConfig {
 
+  static final String POOL_NAME = "outbound";
+
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider outboundConnectionProvider(WebClientProperties properties) {
+    return ConnectionProvider.builder(POOL_NAME)
+        .maxConnections(properties.maxConnections())
+        .pendingAcquireMaxCount(properties.pendingAcquireMaxCount())
+        .pendingAcquireTimeout(properties.pendingAcquireTimeout())
+        .maxIdleTime(properties.maxIdleTime())
+        .evictInBackground(properties.evictionInterval())
+        .metrics(true)
+        .build();
+  }
+
   @Bean
-  public WebClient webClient(WebClient.Builder builder) {
-    return builder.build();
+  public WebClient webClient(
+      WebClient.Builder builder,
+      ConnectionProvider outboundConnectionProvider,
+      WebClientProperties properties) {
+    HttpClient httpClient =
+        HttpClient.create(outboundConnectionProvider)
+            .option(
+                ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                Math.toIntExact(properties.connectTimeout().toMillis()))
+            .responseTimeout(properties.responseTimeout());
+    return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
   }
 }
@@ -0,0 +1,15 @@
+package com.sensedia.sample.consents.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "consents.web-client")
+public record WebClientProperties(
+    @DefaultValue("2s") Duration connectTimeout,
+    @DefaultValue("3s") Duration responseTimeout,
+    @DefaultValue("50") int maxConnections,
+    @DefaultValue("200") int pendingAcquireMaxCount,
+    @DefaultValue("2s") Duration pendingAcquireTimeout,
+    @DefaultValue("30s") Duration maxIdleTime,
+    @DefaultValue("30s") Duration evictionInterval) {}
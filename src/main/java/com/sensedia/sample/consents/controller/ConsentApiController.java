@@ -1,20 +1,37 @@
 package com.sensedia.sample.consents.controller;
 
+import com.sensedia.sample.consents.config.PaginationProperties;
 import com.sensedia.sample.consents.controller.interfaces.IConsentApiController;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.BatchItemResultDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestUpdateDTO;
 import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckRequestDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckResponseDTO;
 import com.sensedia.sample.consents.dto.PageDTO;
+import com.sensedia.sample.consents.repository.ConsentFilter;
+import com.sensedia.sample.consents.repository.ConsentIndex;
+import com.sensedia.sample.consents.repository.ConsentSortField;
+import com.sensedia.sample.consents.service.ConsentBatchService;
 import com.sensedia.sample.consents.service.ConsentService;
+import com.sensedia.sample.consents.service.IdempotencyService;
+import com.sensedia.sample.consents.service.Versioned;
 import jakarta.validation.Valid;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -23,40 +40,141 @@ import reactor.core.publisher.Mono;
 @Validated
 public class ConsentApiController implements IConsentApiController {
 
+  private static final String ID_PROPERTY = "id";
+
   private final ConsentService service;
+  private final ConsentBatchService batchService;
+  private final IdempotencyService idempotencyService;
+  private final PaginationProperties paginationProperties;
 
   @Override
   public Mono<PageDTO<ConsentResponseDTO>> getAllBy(
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "20") int size,
+      @RequestParam(defaultValue = "creationDateTime") String sort,
+      @RequestParam(defaultValue = "desc") String direction,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) ConsentStatus status,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime expirationFrom,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime expirationTo,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime creationFrom,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime creationTo) {
+
+    if (size < 1 || size > paginationProperties.maxPageSize()) {
+      return Mono.error(
+          new IllegalArgumentException(
+              "Page size must be between 1 and " + paginationProperties.maxPageSize()));
+    }
+
+    ConsentFilter filter =
+        new ConsentFilter(status, expirationFrom, expirationTo, creationFrom, creationTo);
+
+    if (Objects.nonNull(cursor)) {
+      return service.getAllAfter(cursor, filter, size);
+    }
+
+    Pageable pageable = PageRequest.of(page, size, toSort(sort, direction));
+
+    return service.getAllBy(filter, pageable);
+  }
+
+  @Override
+  public Flux<ConsentResponseDTO> stream(
       @RequestParam(defaultValue = "creationDateTime") String sort,
       @RequestParam(defaultValue = "desc") String direction) {
+    return service.stream(toSort(sort, direction));
+  }
+
+  /** Only fields with a supporting index in {@link ConsentIndex} are accepted. */
+  private Sort toSort(String sort, String direction) {
+    ConsentSortField.fromProperty(sort)
+        .filter(ConsentIndex::supportsSort)
+        .orElseThrow(() -> new IllegalArgumentException("Unsupported sort field: " + sort));
+    Sort.Direction sortDirection =
+        direction.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+    Sort sortObj = Sort.by(sortDirection, sort);
+    if (!ID_PROPERTY.equals(sort)) {
+      sortObj = sortObj.and(Sort.by(sortDirection, ID_PROPERTY));
+    }
+    return sortObj;
+  }
 
-    Sort sortObj =
-        direction.equalsIgnoreCase("asc") ? Sort.by(sort).ascending() : Sort.by(sort).descending();
+  @Override
+  public Mono<ConsentResponseDTO> create(
+      String idempotencyKey, @Valid ConsentRequestCreateDTO request) {
+    if (Objects.isNull(idempotencyKey)) {
+      return service.create(request);
+    }
+    return idempotencyService.execute(
+        idempotencyKey, request, id -> service.create(request, id), service::findCreated);
+  }
 
-    Pageable pageable = PageRequest.of(page, size, sortObj);
+  @Override
+  public Flux<BatchItemResultDTO> createAll(Flux<ConsentRequestCreateDTO> requests) {
+    return batchService.createAll(requests);
+  }
 
-    return service.getAllBy(pageable);
+  @Override
+  public Flux<ConsentResponseDTO> getByCpf(
+      String cpf, @RequestParam(required = false) ConsentStatus status) {
+    return service.getByCpf(cpf, status);
   }
 
   @Override
-  public Mono<ConsentResponseDTO> create(@Valid ConsentRequestCreateDTO request) {
-    return service.create(request);
+  public Mono<ConsentStatusCheckResponseDTO> checkStatus(
+      @Valid ConsentStatusCheckRequestDTO request) {
+    return service.checkStatus(request.cpfs());
   }
 
+  /**
+   * With If-None-Match only the version is looked up first, so an unchanged consent is answered
+   * with 304 without reading or serializing the document.
+   */
   @Override
-  public Mono<ConsentResponseDTO> getById(String id) {
-    return service.getById(id);
+  public Mono<ConsentResponseDTO> getById(
+      String id, String ifNoneMatch, ServerWebExchange exchange) {
+    if (Objects.isNull(ifNoneMatch)) {
+      return withETag(service.getById(id), exchange);
+    }
+    return service
+        .getVersion(id)
+        .filter(version -> !exchange.checkNotModified(ConsentETag.of(UUID.fromString(id), version)))
+        .flatMap(version -> withETag(service.getById(id), exchange));
   }
 
   @Override
-  public Mono<ConsentResponseDTO> update(String id, @Valid ConsentRequestUpdateDTO request) {
-    return service.update(id, request);
+  public Mono<ConsentResponseDTO> update(
+      String id,
+      String ifMatch,
+      @Valid ConsentRequestUpdateDTO request,
+      ServerWebExchange exchange) {
+    return Mono.defer(
+        () ->
+            withETag(
+                service.update(
+                    id, request, ConsentETag.acceptedVersions(ifMatch, UUID.fromString(id))),
+                exchange));
   }
 
   @Override
-  public Mono<Void> delete(String id) {
-    return service.delete(id);
+  public Mono<Void> delete(String id, String ifMatch) {
+    return Mono.defer(
+        () -> service.delete(id, ConsentETag.acceptedVersions(ifMatch, UUID.fromString(id))));
+  }
+
+  private static Mono<ConsentResponseDTO> withETag(
+      Mono<Versioned<ConsentResponseDTO>> consent, ServerWebExchange exchange) {
+    return consent
+        .doOnNext(
+            versioned ->
+                exchange
+                    .getResponse()
+                    .getHeaders()
+                    .setETag(ConsentETag.of(versioned.body().id(), versioned.version())))
+        .map(Versioned::body);
   }
 }
@@ -0,0 +1,53 @@
+package com.sensedia.sample.consents.controller;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.springframework.http.ETag;
+
+/**
+ * Entity tags of a consent, {@code W/"<id>-<version>"}. The version changes on every write, so the
+ * tag identifies the representation without hashing the body. It is weak because the body is not
+ * byte-for-byte fixed per version (dates are rendered by the serializer, fields may be added).
+ */
+final class ConsentETag {
+
+  private ConsentETag() {}
+
+  static String of(UUID id, Integer version) {
+    return new ETag(id + "-" + version, true).formattedTag();
+  }
+
+  /**
+   * The versions an {@code If-Match} header accepts for this consent, or null when the header is
+   * absent or {@code *} and any version will do. Tags for other consents or in another format match
+   * nothing, so an empty set means the write must fail if the consent exists. Weak tags are
+   * compared like strong ones: the version, not the bytes, is what the client is asserting.
+   */
+  static Set<Integer> acceptedVersions(String ifMatch, UUID id) {
+    if (Objects.isNull(ifMatch)) {
+      return null;
+    }
+    List<ETag> tags = ETag.parse(ifMatch);
+    if (tags.stream().anyMatch(ETag::isWildcard)) {
+      return null;
+    }
+    String prefix = id + "-";
+    return tags.stream()
+        .map(ETag::tag)
+        .filter(tag -> tag.startsWith(prefix))
+        .map(tag -> parseVersion(tag.substring(prefix.length())))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+  }
+
+  private static Integer parseVersion(String version) {
+    try {
+      return Integer.valueOf(version);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
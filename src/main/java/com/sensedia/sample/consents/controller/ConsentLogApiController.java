@@ -0,0 +1,76 @@
+package com.sensedia.sample.consents.controller;
+
+import com.sensedia.sample.consents.config.PaginationProperties;
+import com.sensedia.sample.consents.controller.interfaces.IConsentLogApiController;
+import com.sensedia.sample.consents.dto.ConsentLogResponseDTO;
+import com.sensedia.sample.consents.dto.PageDTO;
+import com.sensedia.sample.consents.repository.ConsentLogFilter;
+import com.sensedia.sample.consents.service.ConsentLogService;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequiredArgsConstructor
+public class ConsentLogApiController implements IConsentLogApiController {
+
+  private final ConsentLogService service;
+  private final PaginationProperties paginationProperties;
+
+  @Override
+  public Mono<PageDTO<ConsentLogResponseDTO>> getHistory(
+      String id,
+      @RequestParam(defaultValue = "20") int size,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to) {
+    return page(new ConsentLogFilter(UUID.fromString(id), from, to), cursor, size);
+  }
+
+  @Override
+  public Flux<ConsentLogResponseDTO> streamHistory(
+      String id,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to) {
+    return service.stream(new ConsentLogFilter(UUID.fromString(id), from, to));
+  }
+
+  @Override
+  public Mono<PageDTO<ConsentLogResponseDTO>> getAll(
+      @RequestParam(defaultValue = "20") int size,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to) {
+    return page(new ConsentLogFilter(null, from, to), cursor, size);
+  }
+
+  @Override
+  public Flux<ConsentLogResponseDTO> streamAll(
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to) {
+    return service.stream(new ConsentLogFilter(null, from, to));
+  }
+
+  private Mono<PageDTO<ConsentLogResponseDTO>> page(
+      ConsentLogFilter filter, String cursor, int size) {
+    if (size < 1 || size > paginationProperties.maxPageSize()) {
+      return Mono.error(
+          new IllegalArgumentException(
+              "Page size must be between 1 and " + paginationProperties.maxPageSize()));
+    }
+    return service.getAllAfter(filter, cursor, size);
+  }
+}
@@ -0,0 +1,42 @@
+package com.sensedia.sample.consents.controller;
+
+import com.sensedia.sample.consents.repository.QueryExplainer;
+import com.sensedia.sample.consents.repository.QueryExplainer.QueryPlan;
+import com.sensedia.sample.consents.repository.SlowQueryMonitor;
+import com.sensedia.sample.consents.repository.SlowQueryMonitor.SlowQuery;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@code /actuator/slowqueries} lists the slow queries captured by {@link SlowQueryMonitor}, newest
+ * first, and {@code /actuator/slowqueries/{id}} explains one of them: its winning plan, whether it
+ * uses an index or scans the collection, and the keys and documents it examines. Unknown or evicted
+ * ids answer 404.
+ *
+ * <p>An explain runs the winning plan, a full scan for a {@code COLLSCAN}, so the endpoint is not
+ * exposed by default and should only be on a management port that the clients of the API cannot
+ * reach.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueryEndpoint {
+
+  private final SlowQueryMonitor monitor;
+  private final QueryExplainer explainer;
+
+  @ReadOperation
+  public List<SlowQuery> slowQueries() {
+    return monitor.recent();
+  }
+
+  @ReadOperation
+  public Mono<QueryPlan> explain(@Selector long id) {
+    return Mono.justOrEmpty(monitor.find(id)).flatMap(query -> explainer.explain(query.shape()));
+  }
+}
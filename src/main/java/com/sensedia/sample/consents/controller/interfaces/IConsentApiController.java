@@ -1,20 +1,31 @@
 package com.sensedia.sample.consents.controller.interfaces;
 
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.BatchItemResultDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestUpdateDTO;
 import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckRequestDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckResponseDTO;
 import com.sensedia.sample.consents.dto.ErrorDTO;
 import com.sensedia.sample.consents.dto.PageDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.time.LocalDateTime;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RequestMapping("/api/v1/consents")
@@ -23,6 +34,8 @@ import reactor.core.publisher.Mono;
     description = "Endpoints for creating, reading, updating, and revoking user consents.")
 public interface IConsentApiController {
 
+  String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
   @Operation(
       summary = "Create a new consent",
       description = "Registers a new user consent in the system and creates an initial log entry.")
@@ -34,15 +47,58 @@ public interface IConsentApiController {
     @ApiResponse(
         responseCode = "400",
         description = "Invalid input data",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class))),
+    @ApiResponse(
+        responseCode = "409",
+        description =
+            "Idempotency-Key already used for a different request, or its first request is still"
+                + " in progress",
         content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
   })
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
-  Mono<ConsentResponseDTO> create(@Valid @RequestBody ConsentRequestCreateDTO request);
+  Mono<ConsentResponseDTO> create(
+      @Parameter(
+              description =
+                  "Client-chosen key that makes retries safe: a repeat gets the response of the"
+                      + " first request instead of creating another consent")
+          @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false)
+          String idempotencyKey,
+      @Valid @RequestBody ConsentRequestCreateDTO request);
+
+  @Operation(
+      summary = "Create consents in batch",
+      description =
+          "Creates many consents from a JSON array or an NDJSON stream. Items are validated one"
+              + " by one and persisted in chunks, and one result is returned for each item, in"
+              + " input order, with the HTTP status it would have received on its own.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Batch processed; check the status of each item",
+        content = {
+          @Content(
+              mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+              schema = @Schema(implementation = BatchItemResultDTO.class)),
+          @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              array = @ArraySchema(schema = @Schema(implementation = BatchItemResultDTO.class)))
+        })
+  })
+  @PostMapping(
+      value = "/batch",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  Flux<BatchItemResultDTO> createAll(@RequestBody Flux<ConsentRequestCreateDTO> requests);
 
   @Operation(
       summary = "List all consents",
-      description = "Retrieves a paginated list of all consents.")
+      description =
+          "Retrieves a paginated list of consents, optionally filtered by status and by"
+              + " expiration and creation ranges. Only indexed fields can be sorted on. Pages"
+              + " carry a 'nextCursor' that can be sent back as 'cursor', with the same filters,"
+              + " to continue with keyset pagination, whose latency does not grow with the page"
+              + " depth.")
   @ApiResponses({
     @ApiResponse(
         responseCode = "200",
@@ -50,31 +106,155 @@ public interface IConsentApiController {
         content =
             @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = PageDTO.class)))
+                schema = @Schema(implementation = PageDTO.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Unsupported sort field, page size out of range or inverted date range",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
   })
   @GetMapping
   Mono<PageDTO<ConsentResponseDTO>> getAllBy(
       @Parameter(description = "Page number to retrieve (0-indexed)", example = "0")
           @RequestParam(defaultValue = "0")
           int page,
-      @Parameter(description = "Number of items per page", example = "10")
+      @Parameter(
+              description = "Number of items per page, up to the configured maximum",
+              example = "10")
           @RequestParam(defaultValue = "10")
           int size,
-      @Parameter(description = "Field to sort by", example = "creationDateTime")
+      @Parameter(
+              description =
+                  "Field to sort by: id, creationDateTime, expirationDateTime, cpf or status",
+              example = "creationDateTime")
+          @RequestParam(defaultValue = "creationDateTime")
+          String sort,
+      @Parameter(description = "Sort direction ('asc' or 'desc')", example = "desc")
+          @RequestParam(defaultValue = "desc")
+          String direction,
+      @Parameter(
+              description =
+                  "Opaque cursor taken from 'nextCursor' of a previous page. When present,"
+                      + " 'page', 'sort' and 'direction' are ignored")
+          @RequestParam(required = false)
+          String cursor,
+      @Parameter(description = "Only return consents with this status", example = "ACTIVE")
+          @RequestParam(required = false)
+          ConsentStatus status,
+      @Parameter(
+              description = "Only return consents expiring at or after this instant",
+              example = "2025-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime expirationFrom,
+      @Parameter(
+              description = "Only return consents expiring before this instant",
+              example = "2026-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime expirationTo,
+      @Parameter(
+              description = "Only return consents created at or after this instant",
+              example = "2025-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime creationFrom,
+      @Parameter(
+              description = "Only return consents created before this instant",
+              example = "2026-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime creationTo);
+
+  @Operation(
+      summary = "Stream all consents",
+      description =
+          "Streams every consent as NDJSON or Server-Sent Events straight from the database"
+              + " cursor, without buffering the result set in memory.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Consents streamed successfully",
+        content = {
+          @Content(
+              mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+              schema = @Schema(implementation = ConsentResponseDTO.class)),
+          @Content(
+              mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+              schema = @Schema(implementation = ConsentResponseDTO.class))
+        })
+  })
+  @GetMapping(
+      value = "/stream",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+  Flux<ConsentResponseDTO> stream(
+      @Parameter(
+              description =
+                  "Field to sort by: id, creationDateTime, expirationDateTime, cpf or status",
+              example = "creationDateTime")
           @RequestParam(defaultValue = "creationDateTime")
           String sort,
       @Parameter(description = "Sort direction ('asc' or 'desc')", example = "desc")
           @RequestParam(defaultValue = "desc")
           String direction);
 
+  @Operation(
+      summary = "List the consents of a CPF",
+      description =
+          "Retrieves every consent of the given CPF, optionally only those with the given status,"
+              + " ordered by status and expiration date.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Consents of the CPF retrieved successfully",
+        content =
+            @Content(
+                array = @ArraySchema(schema = @Schema(implementation = ConsentResponseDTO.class)))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Malformed CPF",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
+  })
+  @GetMapping("/by-cpf/{cpf}")
+  Flux<ConsentResponseDTO> getByCpf(
+      @Parameter(description = "CPF, with or without punctuation", example = "660.527.050-94")
+          @PathVariable
+          String cpf,
+      @Parameter(description = "Only return consents with this status", example = "ACTIVE")
+          @RequestParam(required = false)
+          ConsentStatus status);
+
+  @Operation(
+      summary = "Check the consent status of many CPFs",
+      description =
+          "Returns, for each CPF sent, whether it has an active, expired or revoked consent, or"
+              + " none at all. Up to 1000 CPFs are answered with a single database query.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Status of every CPF sent",
+        content = @Content(schema = @Schema(implementation = ConsentStatusCheckResponseDTO.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Empty list, more than 1000 CPFs or a malformed CPF",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
+  })
+  @PostMapping("/status-check")
+  Mono<ConsentStatusCheckResponseDTO> checkStatus(
+      @Valid @RequestBody ConsentStatusCheckRequestDTO request);
+
   @Operation(
       summary = "Get a consent by ID",
-      description = "Retrieves a single consent by its unique UUID.")
+      description =
+          "Retrieves a single consent by its unique UUID. The response carries an ETag that can be"
+              + " sent back in If-None-Match to skip the body while the consent is unchanged.")
   @ApiResponses({
     @ApiResponse(
         responseCode = "200",
         description = "Consent found",
         content = @Content(schema = @Schema(implementation = ConsentResponseDTO.class))),
+    @ApiResponse(
+        responseCode = "304",
+        description = "Consent unchanged since the ETag sent in If-None-Match"),
     @ApiResponse(
         responseCode = "404",
         description = "Consent not found",
@@ -86,12 +266,17 @@ public interface IConsentApiController {
               description = "UUID of the consent to retrieve",
               example = "1a2b3c4d-5e6f-7a8b-9c0d-1e2f3a4b5c6d")
           @PathVariable
-          String id);
+          String id,
+      @Parameter(description = "ETag of the copy the client already has")
+          @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+          String ifNoneMatch,
+      @Parameter(hidden = true) ServerWebExchange exchange);
 
   @Operation(
       summary = "Update an existing consent",
       description =
-          "Updates the details of an existing consent and creates a log entry for the change.")
+          "Updates the details of an existing consent and creates a log entry for the change."
+              + " With If-Match the update only applies if the consent is still at that ETag.")
   @ApiResponses({
     @ApiResponse(
         responseCode = "200",
@@ -104,6 +289,10 @@ public interface IConsentApiController {
     @ApiResponse(
         responseCode = "404",
         description = "Consent not found",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class))),
+    @ApiResponse(
+        responseCode = "412",
+        description = "Consent changed since the ETag sent in If-Match",
         content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
   })
   @PutMapping("/{id}")
@@ -113,16 +302,26 @@ public interface IConsentApiController {
               example = "1a2b3c4d-5e6f-7a8b-9c0d-1e2f3a4b5c6d")
           @PathVariable
           String id,
-      @Valid @RequestBody ConsentRequestUpdateDTO request);
+      @Parameter(description = "ETag the consent must still have for the update to apply")
+          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
+      @Valid @RequestBody ConsentRequestUpdateDTO request,
+      @Parameter(hidden = true) ServerWebExchange exchange);
 
   @Operation(
       summary = "Revoke a consent",
-      description = "Revokes a consent by deleting it and creates a final log entry.")
+      description =
+          "Revokes a consent by deleting it and creates a final log entry. With If-Match the"
+              + " consent is only revoked if it is still at that ETag.")
   @ApiResponses({
     @ApiResponse(responseCode = "204", description = "Consent revoked successfully"),
     @ApiResponse(
         responseCode = "404",
         description = "Consent not found",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class))),
+    @ApiResponse(
+        responseCode = "412",
+        description = "Consent changed since the ETag sent in If-Match",
         content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
   })
   @DeleteMapping("/{id}")
@@ -132,5 +331,8 @@ public interface IConsentApiController {
               description = "UUID of the consent to revoke",
               example = "1a2b3c4d-5e6f-7a8b-9c0d-1e2f3a4b5c6d")
           @PathVariable
-          String id);
+          String id,
+      @Parameter(description = "ETag the consent must still have to be revoked")
+          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch);
 }
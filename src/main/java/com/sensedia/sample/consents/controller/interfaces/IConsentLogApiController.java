@@ -0,0 +1,177 @@
+package com.sensedia.sample.consents.controller.interfaces;
+
+import com.sensedia.sample.consents.dto.ConsentLogResponseDTO;
+import com.sensedia.sample.consents.dto.ErrorDTO;
+import com.sensedia.sample.consents.dto.PageDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.LocalDateTime;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RequestMapping("/api/v1")
+@Tag(
+    name = "Consent History",
+    description = "Endpoints for reading the audit trail of consent changes.")
+public interface IConsentLogApiController {
+
+  @Operation(
+      summary = "Get the history of a consent",
+      description =
+          "Retrieves the log entries of a consent, including deleted ones, in chronological"
+              + " order. Pages carry a 'nextCursor' that can be sent back as 'cursor' to continue.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "History retrieved successfully",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = PageDTO.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Malformed id or cursor, page size out of range or inverted time range",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
+  })
+  @GetMapping("/consents/{id}/history")
+  Mono<PageDTO<ConsentLogResponseDTO>> getHistory(
+      @Parameter(
+              description = "UUID of the consent",
+              example = "1a2b3c4d-5e6f-7a8b-9c0d-1e2f3a4b5c6d")
+          @PathVariable
+          String id,
+      @Parameter(
+              description = "Number of items per page, up to the configured maximum",
+              example = "10")
+          @RequestParam(defaultValue = "20")
+          int size,
+      @Parameter(description = "Opaque cursor taken from 'nextCursor' of a previous page")
+          @RequestParam(required = false)
+          String cursor,
+      @Parameter(
+              description = "Only entries logged at or after this instant",
+              example = "2025-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @Parameter(
+              description = "Only entries logged before this instant",
+              example = "2026-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to);
+
+  @Operation(
+      summary = "Stream the history of a consent",
+      description =
+          "Streams every log entry of a consent in chronological order as NDJSON, straight from"
+              + " the database cursor.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "History streamed successfully",
+        content =
+            @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                schema = @Schema(implementation = ConsentLogResponseDTO.class)))
+  })
+  @GetMapping(
+      value = "/consents/{id}/history/stream",
+      produces = MediaType.APPLICATION_NDJSON_VALUE)
+  Flux<ConsentLogResponseDTO> streamHistory(
+      @Parameter(
+              description = "UUID of the consent",
+              example = "1a2b3c4d-5e6f-7a8b-9c0d-1e2f3a4b5c6d")
+          @PathVariable
+          String id,
+      @Parameter(
+              description = "Only entries logged at or after this instant",
+              example = "2025-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @Parameter(
+              description = "Only entries logged before this instant",
+              example = "2026-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to);
+
+  @Operation(
+      summary = "List all log entries",
+      description =
+          "Retrieves the log entries of every consent in chronological order, optionally within"
+              + " a time range. Pages carry a 'nextCursor' that can be sent back as 'cursor'.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Log entries retrieved successfully",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = PageDTO.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Malformed cursor, page size out of range or inverted time range",
+        content = @Content(schema = @Schema(implementation = ErrorDTO.class)))
+  })
+  @GetMapping("/consent-logs")
+  Mono<PageDTO<ConsentLogResponseDTO>> getAll(
+      @Parameter(
+              description = "Number of items per page, up to the configured maximum",
+              example = "10")
+          @RequestParam(defaultValue = "20")
+          int size,
+      @Parameter(description = "Opaque cursor taken from 'nextCursor' of a previous page")
+          @RequestParam(required = false)
+          String cursor,
+      @Parameter(
+              description = "Only entries logged at or after this instant",
+              example = "2025-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @Parameter(
+              description = "Only entries logged before this instant",
+              example = "2026-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to);
+
+  @Operation(
+      summary = "Stream all log entries",
+      description =
+          "Streams the log entries of every consent in chronological order as NDJSON, optionally"
+              + " within a time range, without buffering the result set in memory.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Log entries streamed successfully",
+        content =
+            @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                schema = @Schema(implementation = ConsentLogResponseDTO.class)))
+  })
+  @GetMapping(value = "/consent-logs/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  Flux<ConsentLogResponseDTO> streamAll(
+      @Parameter(
+              description = "Only entries logged at or after this instant",
+              example = "2025-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @Parameter(
+              description = "Only entries logged before this instant",
+              example = "2026-01-01T00:00:00")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to);
+}
@@ -1,7 +1,32 @@
 package com.sensedia.sample.consents.domain;
 
+import java.util.Arrays;
+
 public enum ActionType {
-  CREATED,
-  UPDATED,
-  DELETED
+  CREATED(1),
+  UPDATED(5),
+  DELETED(2),
+  EXPIRED(4),
+  ENRICHED(3);
+
+  private final int code;
+
+  ActionType(int code) {
+    this.code = code;
+  }
+
+  /**
+   * Stored in place of the name by the compact storage format. Codes never change, and a new action
+   * takes the next free one.
+   */
+  public int code() {
+    return code;
+  }
+
+  public static ActionType fromCode(int code) {
+    return Arrays.stream(values())
+        .filter(action -> action.code == code)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown action type code " + code));
+  }
 }
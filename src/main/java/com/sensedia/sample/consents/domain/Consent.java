@@ -1,5 +1,6 @@
 package com.sensedia.sample.consents.domain;
 
+import com.sensedia.sample.consents.validation.ValidCpf;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -9,7 +10,6 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.validator.constraints.br.CPF;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
@@ -24,7 +24,7 @@ public class Consent {
 
   @Id private UUID id;
 
-  @CPF @NotBlank private String cpf;
+  @ValidCpf @NotBlank private String cpf;
 
   @NotNull private ConsentStatus status;
 
@@ -35,5 +35,17 @@ public class Consent {
   @Size(min = 1, max = 50)
   private String additionalInfo;
 
+  /**
+   * True while the additional info of a consent saved under deferred enrichment is still being
+   * fetched, and absent otherwise.
+   */
+  private Boolean enrichmentPending;
+
+  /**
+   * The enrichment run that filled the additional info in, so that run logs only the consents it
+   * modified itself.
+   */
+  private UUID enrichmentRun;
+
   @Version private Integer version;
 }
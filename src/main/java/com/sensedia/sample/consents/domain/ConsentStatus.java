@@ -1,9 +1,34 @@
 package com.sensedia.sample.consents.domain;
 
+import java.util.Arrays;
+
 public enum ConsentStatus {
-  ACTIVE,
+  ACTIVE(1),
+
+  REVOKED(3),
+
+  EXPIRED(2);
+
+  private final int code;
+
+  ConsentStatus(int code) {
+    this.code = code;
+  }
 
-  REVOKED,
+  /**
+   * Stored in place of the name by the compact storage format. Codes never change, and a new status
+   * takes the next free one. The current codes happen to follow the alphabetical order of the
+   * names, so for these values sorting by status gives the same order in both formats; a status
+   * added later may not keep it.
+   */
+  public int code() {
+    return code;
+  }
 
-  EXPIRED
+  public static ConsentStatus fromCode(int code) {
+    return Arrays.stream(values())
+        .filter(status -> status.code == code)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown consent status code " + code));
+  }
 }
@@ -0,0 +1,45 @@
+package com.sensedia.sample.consents.domain;
+
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A create request seen under an {@code Idempotency-Key}. The key is the {@code _id}, so only one
+ * request can claim it; the response is filled in once that request completes, and the record
+ * expires through a TTL index on {@code createdAt}.
+ *
+ * <p>The id of the consent is chosen when the key is claimed, so a request that takes over the key
+ * after a failure can tell whether the consent was already saved.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+  @Id private String key;
+
+  /** Hash of the request body, so a key reused for a different request is rejected. */
+  private String fingerprint;
+
+  /** The id the consent is saved with. */
+  private UUID consentId;
+
+  private ConsentResponseDTO response;
+
+  /**
+   * When the request working on the key took it; null once that request has given it up. A claim
+   * older than {@code consents.idempotency.claim-lease} is considered abandoned.
+   */
+  private Instant claimedAt;
+
+  private Instant createdAt;
+}
@@ -0,0 +1,24 @@
+package com.sensedia.sample.consents.domain;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/** Time-bound ownership of a background job, so only one instance runs it at a time. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "leases")
+public class Lease {
+
+  @Id private String id;
+
+  private String owner;
+
+  private Instant expiresAt;
+}
@@ -0,0 +1,9 @@
+package com.sensedia.sample.consents.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResultDTO(
+    long index, int status, UUID id, String message, List<ErrorDTO.ValidationError> errors) {}
@@ -0,0 +1,16 @@
+package com.sensedia.sample.consents.dto;
+
+/** Consent situation of a CPF as reported by the status check. */
+public enum ConsentCheckStatus {
+  /** At least one consent is active and not past its expiration date. */
+  ACTIVE,
+
+  /** No consent is in force, and at least one expired. */
+  EXPIRED,
+
+  /** Every consent of the CPF was revoked. */
+  REVOKED,
+
+  /** The CPF has no consent. */
+  ABSENT
+}
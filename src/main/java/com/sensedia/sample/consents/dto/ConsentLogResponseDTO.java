@@ -0,0 +1,8 @@
+package com.sensedia.sample.consents.dto;
+
+import com.sensedia.sample.consents.domain.ActionType;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record ConsentLogResponseDTO(
+    UUID id, UUID consentId, ActionType action, LocalDateTime timestamp, String details) {}
@@ -1,13 +1,13 @@
 package com.sensedia.sample.consents.dto;
 
 import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.validation.ValidCpf;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
-import org.hibernate.validator.constraints.br.CPF;
 
 public record ConsentRequestUpdateDTO(
-    @CPF String cpf,
+    @ValidCpf String cpf,
     ConsentStatus status,
     @Future LocalDateTime expirationDateTime,
     @Size(min = 1, max = 50) String additionalInfo) {}
@@ -0,0 +1,9 @@
+package com.sensedia.sample.consents.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+public record ConsentStatusCheckRequestDTO(
+    @NotEmpty @Size(max = 1000) List<@NotBlank String> cpfs) {}
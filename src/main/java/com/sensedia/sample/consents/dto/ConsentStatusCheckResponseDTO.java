@@ -0,0 +1,6 @@
+package com.sensedia.sample.consents.dto;
+
+import java.util.Map;
+
+/** Consent situation keyed by the CPF digits, in the order the CPFs were sent. */
+public record ConsentStatusCheckResponseDTO(Map<String, ConsentCheckStatus> statuses) {}
@@ -1,5 +1,14 @@
 package com.sensedia.sample.consents.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 
-public record PageDTO<T>(List<T> content, int page, int size, long totalElements, int totalPages) {}
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PageDTO<T>(
+    List<T> content,
+    Integer page,
+    int size,
+    Long totalElements,
+    Integer totalPages,
+    boolean hasNext,
+    String nextCursor) {}
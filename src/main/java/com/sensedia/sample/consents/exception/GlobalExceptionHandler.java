@@ -64,6 +64,46 @@ public class GlobalExceptionHandler {
     return Mono.just(error);
   }
 
+  @ExceptionHandler(IdempotencyConflictException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Mono<ErrorDTO> handleIdempotencyConflictException(
+      IdempotencyConflictException ex, ServerWebExchange exchange) {
+    log.warn(
+        "Idempotency conflict for request [{}]: {}",
+        exchange.getRequest().getPath(),
+        ex.getMessage());
+
+    ErrorDTO error =
+        new ErrorDTO(
+            LocalDateTime.now(),
+            HttpStatus.CONFLICT.value(),
+            "Conflict",
+            ex.getMessage(),
+            exchange.getRequest().getPath().value(),
+            null);
+    return Mono.just(error);
+  }
+
+  @ExceptionHandler(PreconditionFailedException.class)
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Mono<ErrorDTO> handlePreconditionFailedException(
+      PreconditionFailedException ex, ServerWebExchange exchange) {
+    log.warn(
+        "Precondition failed for request [{}]: {}",
+        exchange.getRequest().getPath(),
+        ex.getMessage());
+
+    ErrorDTO error =
+        new ErrorDTO(
+            LocalDateTime.now(),
+            HttpStatus.PRECONDITION_FAILED.value(),
+            "Precondition Failed",
+            ex.getMessage(),
+            exchange.getRequest().getPath().value(),
+            null);
+    return Mono.just(error);
+  }
+
   @ExceptionHandler(IllegalArgumentException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public Mono<ErrorDTO> handleIllegalArgumentException(
@@ -0,0 +1,12 @@
+package com.sensedia.sample.consents.exception;
+
+/**
+ * Thrown when an {@code Idempotency-Key} is reused for a different request, or its first request is
+ * still running after the wait timeout. Like {@link ResourceNotFoundException} it is an expected
+ * outcome and carries no stack trace.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+  public IdempotencyConflictException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,11 @@
+package com.sensedia.sample.consents.exception;
+
+/**
+ * Thrown when a conditional write names a version the consent no longer has. Like {@link
+ * ResourceNotFoundException} it is an expected outcome and carries no stack trace.
+ */
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(String message) {
+    super(message, null, false, false);
+  }
+}
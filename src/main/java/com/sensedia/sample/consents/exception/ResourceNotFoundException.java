@@ -1,7 +1,12 @@
 package com.sensedia.sample.consents.exception;
 
+/**
+ * Thrown when a requested resource does not exist. It carries no stack trace and no suppressed
+ * exceptions: it is an expected outcome rather than a bug, and filling in the trace dominated the
+ * cost of the 404 path when clients probe unknown ids.
+ */
 public class ResourceNotFoundException extends RuntimeException {
   public ResourceNotFoundException(String message) {
-    super(message);
+    super(message, null, false, false);
   }
 }
@@ -0,0 +1,11 @@
+package com.sensedia.sample.consents.mapper;
+
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.dto.ConsentLogResponseDTO;
+import org.mapstruct.Mapper;
+
+@Mapper(componentModel = "spring")
+public interface ConsentLogMapper {
+
+  ConsentLogResponseDTO toResponseDTO(ConsentLog consentLog);
+}
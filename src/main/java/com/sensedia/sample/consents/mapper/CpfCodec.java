@@ -0,0 +1,161 @@
+package com.sensedia.sample.consents.mapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Reads and normalizes CPFs in a single pass over the characters, with no regular expressions and
+ * no intermediate strings.
+ *
+ * <p>{@link #toLong} accepts {@code ddddddddddd}, {@code ddd.ddd.ddd-dd} and {@code ddddddddd-dd}.
+ * Both check digits must match and the digits must not all be the same. Only ASCII {@code 0-9}
+ * count as digits, as in the regular expressions it replaces. This is what Hibernate Validator's
+ * {@code @CPF} accepts, except for layouts with a single dot: its pattern allows them, but it then
+ * reads the check digits at the positions of the fully dotted layout, so it rejects nearly all of
+ * them and accepts a few invalid ones. Here they are always rejected.
+ */
+public final class CpfCodec {
+
+  public static final int LENGTH = 11;
+
+  /** Returned by {@link #toLong} for anything that is not a valid CPF. */
+  public static final long INVALID = -1;
+
+  private static final int MAX_FORMATTED_LENGTH = 14;
+
+  private CpfCodec() {}
+
+  /** The CPF as a number, 0 to 99999999999, or {@link #INVALID}. */
+  public static long toLong(CharSequence cpf) {
+    if (Objects.isNull(cpf)) {
+      return INVALID;
+    }
+    int length = cpf.length();
+    if (length < LENGTH || length > MAX_FORMATTED_LENGTH) {
+      return INVALID;
+    }
+    long value = 0;
+    int digits = 0;
+    int firstSum = 0;
+    int secondSum = 0;
+    boolean sameDigits = true;
+    boolean dash = false;
+    int dots = 0;
+    boolean afterSeparator = true;
+    for (int i = 0; i < length; i++) {
+      char c = cpf.charAt(i);
+      if (c >= '0' && c <= '9') {
+        int digit = c - '0';
+        if (digits == 9 && digit != checkDigit(firstSum)) {
+          return INVALID;
+        }
+        if (digits == 10 && digit != checkDigit(secondSum)) {
+          return INVALID;
+        }
+        if (digits < 9) {
+          firstSum += digit * (10 - digits);
+        }
+        if (digits < 10) {
+          secondSum += digit * (11 - digits);
+        }
+        sameDigits &= digits == 0 || digit == value % 10;
+        value = value * 10 + digit;
+        digits++;
+        afterSeparator = false;
+      } else if (afterSeparator || length == LENGTH) {
+        return INVALID;
+      } else if (c == '.' && (digits == 3 || digits == 6)) {
+        dots++;
+        afterSeparator = true;
+      } else if (c == '-' && digits == 9) {
+        dash = true;
+        afterSeparator = true;
+      } else {
+        return INVALID;
+      }
+    }
+    boolean formatted = length == LENGTH || (dash && dots != 1);
+    return digits == LENGTH && formatted && !sameDigits ? value : INVALID;
+  }
+
+  private static int checkDigit(int sum) {
+    int remainder = sum % 11;
+    return remainder < 2 ? 0 : 11 - remainder;
+  }
+
+  public static boolean isValid(CharSequence cpf) {
+    return toLong(cpf) != INVALID;
+  }
+
+  /**
+   * The 11 digits of a valid CPF, or null when it is not valid. Bare digits are returned as they
+   * are, without allocating.
+   */
+  public static String normalize(String cpf) {
+    long value = toLong(cpf);
+    if (value == INVALID) {
+      return null;
+    }
+    return cpf.length() == LENGTH ? cpf : toDigits(value);
+  }
+
+  /**
+   * Exactly 11 ASCII digits as a number, or {@link #INVALID}. Unlike {@link #toLong} it accepts no
+   * separators and does not check the digits, so any stored CPF can be packed and read back by
+   * {@link #toDigits}.
+   */
+  public static long fromDigits(CharSequence digits) {
+    if (Objects.isNull(digits) || digits.length() != LENGTH) {
+      return INVALID;
+    }
+    long value = 0;
+    for (int i = 0; i < LENGTH; i++) {
+      char c = digits.charAt(i);
+      if (c < '0' || c > '9') {
+        return INVALID;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /** The 11 digits of a CPF read by {@link #toLong}, with its leading zeros. */
+  public static String toDigits(long cpf) {
+    byte[] digits = new byte[LENGTH];
+    for (int i = LENGTH - 1; i >= 0; i--) {
+      digits[i] = (byte) ('0' + cpf % 10);
+      cpf /= 10;
+    }
+    return new String(digits, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Drops every character that is not an ASCII digit, like {@code replaceAll("\\D", "")}, but
+   * without checking anything else. Strings that are already all digits are returned as they are.
+   */
+  public static String onlyDigits(String value) {
+    if (Objects.isNull(value)) {
+      return null;
+    }
+    int length = value.length();
+    int digits = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits++;
+      }
+    }
+    if (digits == length) {
+      return value;
+    }
+    byte[] result = new byte[digits];
+    int next = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        result[next++] = (byte) c;
+      }
+    }
+    return new String(result, StandardCharsets.ISO_8859_1);
+  }
+}
@@ -6,6 +6,6 @@ public class CpfMapperUtil {
 
   @Named("onlyDigits")
   public static String onlyDigits(String cpf) {
-    return cpf == null ? null : cpf.replaceAll("\\D", "");
+    return CpfCodec.onlyDigits(cpf);
   }
 }
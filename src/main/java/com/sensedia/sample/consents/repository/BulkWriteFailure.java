@@ -0,0 +1,4 @@
+package com.sensedia.sample.consents.repository;
+
+/** A document rejected by an unordered bulk write, identified by its position in the batch. */
+public record BulkWriteFailure(int index, String message) {}
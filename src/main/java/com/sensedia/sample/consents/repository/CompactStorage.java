@@ -0,0 +1,198 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.mapper.CpfCodec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import org.bson.Document;
+import org.springframework.data.convert.PropertyValueConverter;
+import org.springframework.data.convert.PropertyValueConverterRegistrar;
+import org.springframework.data.mapping.model.FieldNamingStrategy;
+import org.springframework.data.mongodb.core.convert.MongoConversionContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+/**
+ * The {@link StorageFormat#COMPACT} layout of consents and log entries. Field names are shortened,
+ * the CPF is stored as an int64 instead of an 11 character string, and statuses and actions as
+ * their int32 codes. Only the documents change: queries, updates, sorts and index keys are written
+ * with the property names and mapped by Spring Data, and the REST representations are untouched.
+ */
+public final class CompactStorage {
+
+  private static final String TYPE_KEY = "_class";
+
+  private static final Map<Class<?>, Map<String, String>> FIELD_NAMES =
+      Map.of(
+          Consent.class,
+          Map.of(
+              "cpf", "c",
+              "status", "s",
+              "creationDateTime", "cd",
+              "expirationDateTime", "ed",
+              "additionalInfo", "ai",
+              "enrichmentPending", "ep",
+              "enrichmentRun", "er",
+              "version", "v"),
+          ConsentLog.class,
+          Map.of(
+              "consentId", "ci",
+              "action", "a",
+              "timestamp", "t",
+              "details", "d"));
+
+  private CompactStorage() {}
+
+  /** Short field name by property name. Properties left out, like the id, keep their name. */
+  public static Map<String, String> fieldNames(Class<?> type) {
+    return FIELD_NAMES.getOrDefault(type, Map.of());
+  }
+
+  /** Shortens the fields of consents and log entries, and only theirs. */
+  public static FieldNamingStrategy fieldNamingStrategy() {
+    return property ->
+        fieldNames(property.getOwner().getType())
+            .getOrDefault(property.getName(), property.getName());
+  }
+
+  public static void registerConverters(
+      PropertyValueConverterRegistrar<MongoPersistentProperty> registrar) {
+    registrar
+        .registerConverter(Consent.class, "cpf", new CpfConverter())
+        .registerConverter(
+            Consent.class,
+            "status",
+            new CodeConverter<>(ConsentStatus::code, ConsentStatus::fromCode))
+        .registerConverter(
+            ConsentLog.class,
+            "action",
+            new CodeConverter<>(ActionType::code, ActionType::fromCode));
+  }
+
+  /**
+   * An update pipeline that rewrites a document of {@code type} from the other format into {@code
+   * target}, converting values the way the converters below do. Fields the document lacks stay
+   * absent. The {@code _class} hint is dropped on the way to the compact format and not put back,
+   * since the standard format reads fine without it.
+   */
+  public static List<Document> rewritePipeline(Class<?> type, StorageFormat target) {
+    boolean compact = target == StorageFormat.COMPACT;
+    Document set = new Document();
+    List<String> unset = new ArrayList<>();
+    new TreeMap<>(fieldNames(type))
+        .forEach(
+            (name, compactName) -> {
+              String from = compact ? name : compactName;
+              set.append(compact ? compactName : name, rewrite(type, name, "$" + from, compact));
+              unset.add(from);
+            });
+    if (compact) {
+      unset.add(TYPE_KEY);
+    }
+    return List.of(new Document("$set", set), new Document("$unset", unset));
+  }
+
+  private static Object rewrite(Class<?> type, String property, String field, boolean compact) {
+    if (type == Consent.class && property.equals("cpf")) {
+      return compact ? packCpf(field) : unpackCpf(field);
+    }
+    if (type == Consent.class && property.equals("status")) {
+      return codes(ConsentStatus.values(), ConsentStatus::code, field, compact);
+    }
+    if (type == ConsentLog.class && property.equals("action")) {
+      return codes(ActionType.values(), ActionType::code, field, compact);
+    }
+    return field;
+  }
+
+  private static Document packCpf(String field) {
+    Document elevenDigits =
+        new Document(
+            "$and",
+            List.of(
+                new Document("$eq", List.of(new Document("$type", field), "string")),
+                new Document(
+                    "$regexMatch", new Document("input", field).append("regex", "^[0-9]{11}$"))));
+    return new Document("$cond", List.of(elevenDigits, new Document("$toLong", field), field));
+  }
+
+  private static Document unpackCpf(String field) {
+    Document digits = new Document("$toString", field);
+    Document padded =
+        new Document(
+            "$substrCP",
+            List.of(
+                new Document("$concat", List.of("0".repeat(CpfCodec.LENGTH), digits)),
+                new Document("$strLenCP", digits),
+                CpfCodec.LENGTH));
+    return new Document(
+        "$cond",
+        List.of(new Document("$eq", List.of(new Document("$type", field), "long")), padded, field));
+  }
+
+  private static <E extends Enum<E>> Document codes(
+      E[] values, ToIntFunction<E> code, String field, boolean compact) {
+    List<Document> branches =
+        Arrays.stream(values)
+            .map(
+                value -> {
+                  Object name = value.name();
+                  Object valueCode = code.applyAsInt(value);
+                  return new Document(
+                          "case", new Document("$eq", List.of(field, compact ? name : valueCode)))
+                      .append("then", compact ? valueCode : name);
+                })
+            .toList();
+    return new Document("$switch", new Document("branches", branches).append("default", field));
+  }
+
+  /**
+   * Packs the 11 digits into an int64. Anything else, like the partial CPFs a lookup may carry, is
+   * written as the string it is, so it can never match a packed CPF by accident.
+   */
+  static final class CpfConverter
+      implements PropertyValueConverter<String, Object, MongoConversionContext> {
+
+    @Override
+    public String read(Object value, MongoConversionContext context) {
+      return value instanceof Number number
+          ? CpfCodec.toDigits(number.longValue())
+          : value.toString();
+    }
+
+    @Override
+    public Object write(String value, MongoConversionContext context) {
+      long packed = CpfCodec.fromDigits(value);
+      return packed == CpfCodec.INVALID ? value : packed;
+    }
+  }
+
+  static final class CodeConverter<E extends Enum<E>>
+      implements PropertyValueConverter<E, Object, MongoConversionContext> {
+
+    private final ToIntFunction<E> code;
+    private final IntFunction<E> fromCode;
+
+    CodeConverter(ToIntFunction<E> code, IntFunction<E> fromCode) {
+      this.code = code;
+      this.fromCode = fromCode;
+    }
+
+    @Override
+    public E read(Object value, MongoConversionContext context) {
+      return fromCode.apply(((Number) value).intValue());
+    }
+
+    @Override
+    public Object write(E value, MongoConversionContext context) {
+      return code.applyAsInt(value);
+    }
+  }
+}
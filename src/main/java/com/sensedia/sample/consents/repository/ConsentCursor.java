@@ -0,0 +1,58 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.Consent;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Keyset position after a given consent: the sort field and direction, the value of that field and
+ * the consent id used as tie-breaker. Exposed to clients only in its opaque encoded form.
+ */
+public record ConsentCursor(
+    ConsentSortField field, Sort.Direction direction, Object value, UUID id) {
+
+  private static final String SEPARATOR = "|";
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  public static ConsentCursor after(
+      Consent consent, ConsentSortField field, Sort.Direction direction) {
+    return new ConsentCursor(field, direction, field.valueOf(consent), consent.getId());
+  }
+
+  public String encode() {
+    StringBuilder raw =
+        new StringBuilder()
+            .append(field.name())
+            .append(SEPARATOR)
+            .append(direction.name())
+            .append(SEPARATOR)
+            .append(id);
+    if (Objects.nonNull(value)) {
+      raw.append(SEPARATOR).append(value);
+    }
+    return ENCODER.encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static ConsentCursor decode(String cursor) {
+    try {
+      String raw = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\" + SEPARATOR, 4);
+      if (parts.length < 3) {
+        throw new IllegalArgumentException("Malformed cursor: " + cursor);
+      }
+
+      ConsentSortField field = ConsentSortField.valueOf(parts[0]);
+      return new ConsentCursor(
+          field,
+          Sort.Direction.valueOf(parts[1]),
+          parts.length == 4 ? field.parse(parts[3]) : null,
+          UUID.fromString(parts[2]));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Optional filters of the list endpoint. Every bound may be null; ranges include the lower bound
+ * and exclude the upper one.
+ */
+public record ConsentFilter(
+    ConsentStatus status,
+    LocalDateTime expirationFrom,
+    LocalDateTime expirationTo,
+    LocalDateTime creationFrom,
+    LocalDateTime creationTo) {
+
+  private static final ConsentFilter NONE = new ConsentFilter(null, null, null, null, null);
+
+  public ConsentFilter {
+    requireOrdered("expiration", expirationFrom, expirationTo);
+    requireOrdered("creation", creationFrom, creationTo);
+  }
+
+  public static ConsentFilter none() {
+    return NONE;
+  }
+
+  public boolean isEmpty() {
+    return equals(NONE);
+  }
+
+  private static void requireOrdered(String range, LocalDateTime from, LocalDateTime to) {
+    if (Objects.nonNull(from) && Objects.nonNull(to) && !from.isBefore(to)) {
+      throw new IllegalArgumentException(
+          "The " + range + " range must start before it ends: " + from + " / " + to);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Registry of the indexes on the consents collection. They are created at startup, and list queries
+ * may only sort on fields that one of them can serve together with the {@code _id} tie-break, so
+ * sorts never fall back to an in-memory sort or a collection scan.
+ */
+public enum ConsentIndex {
+  CREATION_DATE_TIME("creationDateTime", "_id"),
+  EXPIRATION_DATE_TIME("expirationDateTime", "_id"),
+  CPF("cpf", "_id"),
+  STATUS("status", "_id"),
+  STATUS_CREATION_DATE_TIME("status", "creationDateTime", "_id"),
+  STATUS_EXPIRATION_DATE_TIME("status", "expirationDateTime", "_id"),
+  CPF_STATUS_EXPIRATION_DATE_TIME("cpf", "status", "expirationDateTime"),
+
+  /**
+   * Answers {@code findVersionById} from the index alone, so checking a cached consent against the
+   * stored version never reads the document.
+   */
+  ID_VERSION("_id", "version"),
+
+  /**
+   * Only covers consents waiting for their additional info, so it stays small however large the
+   * collection grows and costs nothing once they are enriched. Ordered by creation so the sweep
+   * reads only those pending for a while.
+   */
+  ENRICHMENT_PENDING_CREATION_DATE_TIME(
+      where("enrichmentPending").is(true), "enrichmentPending", "creationDateTime");
+
+  private static final String ID_KEY = "_id";
+
+  private final List<String> keys;
+  private final String indexName;
+  private final Criteria partialFilter;
+
+  ConsentIndex(String... keys) {
+    this(null, keys);
+  }
+
+  ConsentIndex(Criteria partialFilter, String... keys) {
+    this.keys = List.of(keys);
+    this.indexName =
+        String.join("_", Arrays.stream(keys).map(key -> key.replace(ID_KEY, "id")).toList())
+            + (partialFilter == null ? "" : "_partial");
+    this.partialFilter = partialFilter;
+  }
+
+  public String indexName() {
+    return indexName;
+  }
+
+  public Index toIndex() {
+    Index index = new Index();
+    keys.forEach(key -> index.on(key, Sort.Direction.ASC));
+    if (partialFilter != null) {
+      index.partial(PartialIndexFilter.of(partialFilter));
+    }
+    return index.named(indexName);
+  }
+
+  /** Whether some index is led by ({@code field}, {@code _id}), the order keyset queries use. */
+  public static boolean supportsSort(ConsentSortField field) {
+    if (field == ConsentSortField.ID) {
+      return true;
+    }
+    return Arrays.stream(values())
+        .anyMatch(
+            index ->
+                index.keys.size() > 1
+                    && index.keys.get(0).equals(field.property())
+                    && index.keys.get(1).equals(ID_KEY));
+  }
+}
@@ -0,0 +1,161 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.config.AuditProperties;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.DefaultReactiveIndexOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Maps log entries to the collection that stores them under the configured {@link
+ * ConsentLogStorage}, and keeps track of the monthly bucket collections.
+ */
+@Component
+public class ConsentLogBuckets {
+
+  public static final String BASE_COLLECTION = "consent_logs";
+
+  private static final String BUCKET_PREFIX = BASE_COLLECTION + "_";
+  private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+  private static final Duration LISTING_TTL = Duration.ofSeconds(30);
+
+  private final ReactiveMongoTemplate template;
+  private final ConsentLogStorage storage;
+  private final Set<String> prepared = ConcurrentHashMap.newKeySet();
+  private volatile Mono<List<String>> collections;
+
+  public ConsentLogBuckets(ReactiveMongoTemplate template, AuditProperties properties) {
+    this.template = template;
+    this.storage = properties.storage();
+    this.collections = listCollections();
+  }
+
+  public ConsentLogStorage storage() {
+    return storage;
+  }
+
+  public String collectionFor(LocalDateTime timestamp) {
+    if (storage == ConsentLogStorage.SINGLE || Objects.isNull(timestamp)) {
+      return BASE_COLLECTION;
+    }
+    return BUCKET_PREFIX + MONTH.format(timestamp);
+  }
+
+  /**
+   * Makes sure a bucket carries the {@link ConsentLogIndex} indexes before its first write. The
+   * base collection is handled at startup.
+   */
+  public Mono<String> prepare(String collection) {
+    if (BASE_COLLECTION.equals(collection) || prepared.contains(collection)) {
+      return Mono.just(collection);
+    }
+    return Flux.fromArray(ConsentLogIndex.values())
+        .concatMap(index -> indexOps(collection).ensureIndex(index.toIndex()))
+        .then(
+            Mono.fromRunnable(
+                () -> {
+                  prepared.add(collection);
+                  collections = listCollections();
+                }))
+        .thenReturn(collection);
+  }
+
+  /**
+   * Index operations on one of the log collections. Unlike the ones the template gives by
+   * collection name, they map the {@link ConsentLog} property names in index keys to the stored
+   * field names, which differ under the compact storage format.
+   */
+  public ReactiveIndexOperations indexOps(String collection) {
+    return new DefaultReactiveIndexOperations(
+        template, collection, new QueryMapper(template.getConverter()), ConsentLog.class);
+  }
+
+  /**
+   * Collections that may hold entries logged in [from, to), oldest first. Either bound may be null.
+   * The base collection always comes first, since its entries are not bucketed by month.
+   */
+  public Flux<String> collectionsBetween(LocalDateTime from, LocalDateTime to) {
+    if (storage == ConsentLogStorage.SINGLE) {
+      return Flux.just(BASE_COLLECTION);
+    }
+    return collections
+        .flatMapIterable(names -> names)
+        .filter(
+            name -> {
+              YearMonth month = monthOf(name);
+              return Objects.isNull(month)
+                  || ((Objects.isNull(from)
+                          || month.plusMonths(1).atDay(1).atStartOfDay().isAfter(from))
+                      && (Objects.isNull(to) || month.atDay(1).atStartOfDay().isBefore(to)));
+            });
+  }
+
+  /** Monthly buckets whose whole month lies before the cutoff, oldest first. */
+  public Flux<String> bucketsBefore(LocalDateTime cutoff) {
+    return collections
+        .flatMapIterable(names -> names)
+        .filter(
+            name -> {
+              YearMonth month = monthOf(name);
+              return Objects.nonNull(month)
+                  && !month.plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff);
+            });
+  }
+
+  /** Reads a bucket as raw documents, exactly as stored. */
+  public Flux<Document> documents(String collection, int batchSize) {
+    return template
+        .getCollection(collection)
+        .flatMapMany(mongoCollection -> mongoCollection.find().batchSize(batchSize));
+  }
+
+  public Mono<Void> drop(String collection) {
+    return template
+        .dropCollection(collection)
+        .then(
+            Mono.fromRunnable(
+                () -> {
+                  prepared.remove(collection);
+                  collections = listCollections();
+                }));
+  }
+
+  private Mono<List<String>> listCollections() {
+    return template
+        .getCollectionNames()
+        .filter(name -> BASE_COLLECTION.equals(name) || Objects.nonNull(monthOf(name)))
+        .sort(
+            Comparator.comparing((String name) -> !BASE_COLLECTION.equals(name))
+                .thenComparing(name -> name))
+        .collectList()
+        .cache(LISTING_TTL);
+  }
+
+  private static YearMonth monthOf(String collection) {
+    if (!collection.startsWith(BUCKET_PREFIX)) {
+      return null;
+    }
+    String[] parts = collection.substring(BUCKET_PREFIX.length()).split("_");
+    try {
+      return parts.length == 2
+          ? YearMonth.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]))
+          : null;
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.ConsentLog;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keyset position after a given log entry in chronological (timestamp, id) order. Exposed to
+ * clients only in its opaque encoded form.
+ */
+public record ConsentLogCursor(LocalDateTime timestamp, UUID id) {
+
+  private static final String SEPARATOR = "|";
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  public static ConsentLogCursor after(ConsentLog logEntry) {
+    return new ConsentLogCursor(logEntry.getTimestamp(), logEntry.getId());
+  }
+
+  public String encode() {
+    StringBuilder raw = new StringBuilder().append(id);
+    if (Objects.nonNull(timestamp)) {
+      raw.append(SEPARATOR).append(timestamp);
+    }
+    return ENCODER.encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static ConsentLogCursor decode(String cursor) {
+    try {
+      String raw = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\" + SEPARATOR, 2);
+      return new ConsentLogCursor(
+          parts.length == 2 ? LocalDateTime.parse(parts[1]) : null, UUID.fromString(parts[0]));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.sensedia.sample.consents.repository;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Filters of the history endpoints. A null consent id covers every consent; the time range includes
+ * its start and excludes its end, and either bound may be null.
+ */
+public record ConsentLogFilter(UUID consentId, LocalDateTime from, LocalDateTime to) {
+
+  public ConsentLogFilter {
+    if (Objects.nonNull(from) && Objects.nonNull(to) && !from.isBefore(to)) {
+      throw new IllegalArgumentException(
+          "The time range must start before it ends: " + from + " / " + to);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.sensedia.sample.consents.repository;
+
+import java.util.List;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Registry of the indexes on the consent_logs collection, created at startup. Both end in
+ * (timestamp, _id), the order history pages are read in.
+ */
+public enum ConsentLogIndex {
+  CONSENT_ID_TIMESTAMP("consentId_timestamp_id", "consentId", "timestamp", "_id"),
+  TIMESTAMP("timestamp_id", "timestamp", "_id");
+
+  private final String indexName;
+  private final List<String> keys;
+
+  ConsentLogIndex(String indexName, String... keys) {
+    this.indexName = indexName;
+    this.keys = List.of(keys);
+  }
+
+  public String indexName() {
+    return indexName;
+  }
+
+  public Index toIndex() {
+    Index index = new Index();
+    keys.forEach(key -> index.on(key, Sort.Direction.ASC));
+    return index.named(indexName);
+  }
+}
@@ -0,0 +1,28 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.ConsentLog;
+import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads and writes that follow the configured {@link ConsentLogStorage}. Log entries must be
+ * written through {@link #append} and {@link #appendAll} rather than the inherited inserts, which
+ * only know the base collection.
+ */
+public interface ConsentLogRepositoryCustom {
+
+  Mono<ConsentLog> append(ConsentLog entry);
+
+  /** Inserts the entries with one insert per bucket they fall into. */
+  Flux<ConsentLog> appendAll(List<ConsentLog> entries);
+
+  /**
+   * Fetches up to {@code limit} entries matching the filter in (timestamp, id) order, starting
+   * after the cursor, or from the first entry when the cursor is null.
+   */
+  Flux<ConsentLog> findAllAfter(ConsentLogFilter filter, ConsentLogCursor cursor, int limit);
+
+  /** Streams every entry matching the filter in (timestamp, id) order straight from the cursor. */
+  Flux<ConsentLog> streamAll(ConsentLogFilter filter);
+}
@@ -0,0 +1,120 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.sensedia.sample.consents.config.PaginationProperties;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class ConsentLogRepositoryCustomImpl implements ConsentLogRepositoryCustom {
+
+  private static final String ID = "id";
+  private static final String CONSENT_ID = "consentId";
+  private static final String TIMESTAMP = "timestamp";
+  private static final Sort CHRONOLOGICAL = Sort.by(Sort.Direction.ASC, TIMESTAMP, ID);
+
+  private final ReactiveMongoTemplate template;
+  private final PaginationProperties properties;
+  private final ConsentLogBuckets buckets;
+
+  @Override
+  public Mono<ConsentLog> append(ConsentLog entry) {
+    return buckets
+        .prepare(buckets.collectionFor(entry.getTimestamp()))
+        .flatMap(collection -> template.insert(entry, collection));
+  }
+
+  @Override
+  public Flux<ConsentLog> appendAll(List<ConsentLog> entries) {
+    Map<String, List<ConsentLog>> byCollection = new LinkedHashMap<>();
+    entries.forEach(
+        entity ->
+            byCollection
+                .computeIfAbsent(
+                    buckets.collectionFor(entity.getTimestamp()), name -> new ArrayList<>())
+                .add(entity));
+    return Flux.fromIterable(byCollection.entrySet())
+        .concatMap(
+            bucket ->
+                buckets
+                    .prepare(bucket.getKey())
+                    .flatMapMany(collection -> template.insert(bucket.getValue(), collection)));
+  }
+
+  /**
+   * Buckets are read one after the other in chronological order, and the next one is only queried
+   * when the previous ones did not fill the page.
+   */
+  @Override
+  public Flux<ConsentLog> findAllAfter(
+      ConsentLogFilter filter, ConsentLogCursor cursor, int limit) {
+    Query query = filtered(filter).with(CHRONOLOGICAL).limit(limit);
+    LocalDateTime from = filter.from();
+    if (Objects.nonNull(cursor)) {
+      query.addCriteria(keyset(cursor));
+      if (Objects.nonNull(cursor.timestamp())
+          && (Objects.isNull(from) || cursor.timestamp().isAfter(from))) {
+        from = cursor.timestamp();
+      }
+    }
+    return buckets
+        .collectionsBetween(from, filter.to())
+        .concatMap(collection -> template.find(query, ConsentLog.class, collection))
+        .take(limit);
+  }
+
+  @Override
+  public Flux<ConsentLog> streamAll(ConsentLogFilter filter) {
+    Query query =
+        filtered(filter).with(CHRONOLOGICAL).cursorBatchSize(properties.streamBatchSize());
+    return buckets
+        .collectionsBetween(filter.from(), filter.to())
+        .concatMap(collection -> template.find(query, ConsentLog.class, collection));
+  }
+
+  private static Query filtered(ConsentLogFilter filter) {
+    Query query = new Query();
+    if (Objects.nonNull(filter.consentId())) {
+      query.addCriteria(where(CONSENT_ID).is(filter.consentId()));
+    }
+    if (Objects.nonNull(filter.from()) || Objects.nonNull(filter.to())) {
+      Criteria range = where(TIMESTAMP);
+      if (Objects.nonNull(filter.from())) {
+        range = range.gte(filter.from());
+      }
+      if (Objects.nonNull(filter.to())) {
+        range = range.lt(filter.to());
+      }
+      query.addCriteria(range);
+    }
+    return query;
+  }
+
+  /**
+   * Everything after the cursor in ascending (timestamp, id) order. Entries written before
+   * timestamps were recorded have none, and nulls sort first.
+   */
+  private static Criteria keyset(ConsentLogCursor cursor) {
+    Criteria sameTimestamp =
+        new Criteria()
+            .andOperator(where(TIMESTAMP).is(cursor.timestamp()), where(ID).gt(cursor.id()));
+    Criteria later =
+        Objects.isNull(cursor.timestamp())
+            ? where(TIMESTAMP).ne(null)
+            : where(TIMESTAMP).gt(cursor.timestamp());
+    return new Criteria().orOperator(later, sameTimestamp);
+  }
+}
@@ -0,0 +1,14 @@
+package com.sensedia.sample.consents.repository;
+
+/** Where {@code ConsentLog} entries are stored. */
+public enum ConsentLogStorage {
+  /** Every entry goes to the {@code consent_logs} collection. */
+  SINGLE,
+
+  /**
+   * Entries go to one collection per month of their timestamp, {@code consent_logs_yyyy_MM}, so
+   * each index only covers a month and old months can be archived and dropped whole. The {@code
+   * consent_logs} collection is still read, as the oldest bucket, for entries written before.
+   */
+  MONTHLY
+}
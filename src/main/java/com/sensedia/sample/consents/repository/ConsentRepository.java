@@ -2,11 +2,7 @@ package com.sensedia.sample.consents.repository;
 
 import com.sensedia.sample.consents.domain.Consent;
 import java.util.UUID;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
-import reactor.core.publisher.Flux;
 
-public interface ConsentRepository extends ReactiveMongoRepository<Consent, UUID> {
-
-  Flux<Consent> findAllBy(Pageable pageable);
-}
+public interface ConsentRepository
+    extends ReactiveMongoRepository<Consent, UUID>, ConsentRepositoryCustom {}
@@ -0,0 +1,90 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ConsentRepositoryCustom {
+
+  Flux<Consent> findAllAfter(ConsentCursor cursor, ConsentFilter filter, int limit);
+
+  /** Fetches the requested page plus one extra element, which signals that a next page exists. */
+  Flux<Consent> findSlice(ConsentFilter filter, Pageable pageable);
+
+  Mono<Long> countMatching(ConsentFilter filter);
+
+  /**
+   * Finds the consents of a CPF, optionally with the given status, ordered by status and expiration
+   * date so the (cpf, status, expirationDateTime) index serves both the filter and the sort.
+   */
+  Flux<Consent> findByCpf(String cpf, ConsentStatus status);
+
+  /**
+   * Fetches only cpf, status and expiration date of every consent of the given CPFs with a single
+   * {@code $in} query. The projection is covered by the (cpf, status, expirationDateTime) index and
+   * the whole result is requested in one batch.
+   */
+  Flux<Consent> findStatusesByCpfIn(Collection<String> cpfs);
+
+  Mono<Long> estimatedCount();
+
+  /** Streams every consent straight from the Mongo cursor, fetching it in configured batches. */
+  Flux<Consent> streamAll(Sort sort);
+
+  /**
+   * Inserts the consents in a single unordered bulk write, so one rejected document does not stop
+   * the others. Emits the documents that were rejected.
+   */
+  Flux<BulkWriteFailure> insertUnordered(List<Consent> consents);
+
+  /**
+   * Applies the update and bumps the version in one findAndModify, returning the new document. When
+   * {@code expectedVersions} is not null the consent must have one of them, otherwise nothing is
+   * updated.
+   */
+  Mono<Consent> updateFields(UUID id, Update update, Collection<Integer> expectedVersions);
+
+  /** Reads only the version of a consent. */
+  Mono<Integer> findVersionById(UUID id);
+
+  /**
+   * Emits the ids of up to {@code limit} ACTIVE consents whose expiration date has passed, read
+   * from the (status, expirationDateTime, _id) index alone.
+   */
+  Flux<UUID> findExpiredIds(LocalDateTime now, int limit);
+
+  /**
+   * Marks the given consents EXPIRED with one updateMulti, skipping any that changed since they
+   * were found. Emits how many were modified.
+   */
+  Mono<Long> markExpired(Collection<UUID> ids, LocalDateTime now);
+
+  /**
+   * Emits the ids of the consents created before {@code createdBefore} and still waiting for their
+   * additional info, read from the partial index that only covers them.
+   */
+  Flux<UUID> findPendingEnrichmentIds(LocalDateTime createdBefore);
+
+  /**
+   * Sets the additional info of the given consents with one updateMulti, clears their pending flag
+   * and stamps them with {@code run}, skipping any no longer pending. Emits how many were modified.
+   */
+  Mono<Long> fillAdditionalInfo(Collection<UUID> ids, String additionalInfo, UUID run);
+
+  /** Emits those of the given consents whose additional info was filled in by {@code run}. */
+  Flux<UUID> findEnrichedIds(Collection<UUID> ids, UUID run);
+
+  /**
+   * Removes the consent in one findAndDelete, returning the removed document. When {@code
+   * expectedVersions} is not null the consent must have one of them, otherwise nothing is removed.
+   */
+  Mono<Consent> findAndDeleteById(UUID id, Collection<Integer> expectedVersions);
+}
@@ -0,0 +1,260 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.result.UpdateResult;
+import com.sensedia.sample.consents.config.PaginationProperties;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class ConsentRepositoryCustomImpl implements ConsentRepositoryCustom {
+
+  private static final String ID = ConsentSortField.ID.property();
+  private static final String VERSION = "version";
+  private static final String ADDITIONAL_INFO = "additionalInfo";
+  private static final String ENRICHMENT_PENDING = "enrichmentPending";
+  private static final String ENRICHMENT_RUN = "enrichmentRun";
+
+  /**
+   * Large enough for the projected documents of a full status check to arrive in the first batch;
+   * the server still caps a batch at 16MB.
+   */
+  private static final int STATUS_CHECK_BATCH_SIZE = 100_000;
+
+  private static final String CPF = ConsentSortField.CPF.property();
+  private static final String STATUS = ConsentSortField.STATUS.property();
+  private static final String EXPIRATION_DATE_TIME =
+      ConsentSortField.EXPIRATION_DATE_TIME.property();
+  private static final String CREATION_DATE_TIME = ConsentSortField.CREATION_DATE_TIME.property();
+
+  private final ReactiveMongoTemplate template;
+  private final PaginationProperties properties;
+
+  @Override
+  public Flux<Consent> findAllAfter(ConsentCursor cursor, ConsentFilter filter, int limit) {
+    Sort sort = Sort.by(cursor.direction(), cursor.field().property(), ID);
+    Query query = filtered(filter).addCriteria(keyset(cursor)).with(sort).limit(limit);
+    return template.find(query, Consent.class);
+  }
+
+  @Override
+  public Flux<Consent> findSlice(ConsentFilter filter, Pageable pageable) {
+    Query query = filtered(filter).with(pageable).limit(pageable.getPageSize() + 1);
+    return template.find(query, Consent.class);
+  }
+
+  @Override
+  public Mono<Long> countMatching(ConsentFilter filter) {
+    return template.count(filtered(filter), Consent.class);
+  }
+
+  @Override
+  public Flux<Consent> findByCpf(String cpf, ConsentStatus status) {
+    Criteria criteria = where(CPF).is(cpf);
+    if (Objects.nonNull(status)) {
+      criteria = criteria.and(STATUS).is(status);
+    }
+    Query query =
+        new Query(criteria).with(Sort.by(Sort.Direction.ASC, STATUS, EXPIRATION_DATE_TIME));
+    return template.find(query, Consent.class);
+  }
+
+  @Override
+  public Flux<Consent> findStatusesByCpfIn(Collection<String> cpfs) {
+    Query query = new Query(where(CPF).in(cpfs)).cursorBatchSize(STATUS_CHECK_BATCH_SIZE);
+    query.fields().include(CPF, STATUS, EXPIRATION_DATE_TIME).exclude(ID);
+    return template.find(query, Consent.class);
+  }
+
+  @Override
+  public Mono<Long> estimatedCount() {
+    return template.estimatedCount(Consent.class);
+  }
+
+  @Override
+  public Flux<Consent> streamAll(Sort sort) {
+    Query query = new Query().with(sort).cursorBatchSize(properties.streamBatchSize());
+    return template.find(query, Consent.class);
+  }
+
+  @Override
+  public Flux<BulkWriteFailure> insertUnordered(List<Consent> consents) {
+    if (consents.isEmpty()) {
+      return Flux.empty();
+    }
+    return template
+        .bulkOps(BulkOperations.BulkMode.UNORDERED, Consent.class)
+        .insert(consents)
+        .execute()
+        .thenMany(Flux.<BulkWriteFailure>empty())
+        .onErrorResume(
+            error -> Objects.nonNull(findBulkWriteException(error)),
+            error ->
+                Flux.fromIterable(findBulkWriteException(error).getWriteErrors())
+                    .map(
+                        writeError ->
+                            new BulkWriteFailure(writeError.getIndex(), writeError.getMessage())));
+  }
+
+  @Override
+  public Mono<Consent> updateFields(UUID id, Update update, Collection<Integer> expectedVersions) {
+    return template.findAndModify(
+        byIdAndVersion(id, expectedVersions),
+        update.inc(VERSION, 1),
+        FindAndModifyOptions.options().returnNew(true),
+        Consent.class);
+  }
+
+  @Override
+  public Mono<Integer> findVersionById(UUID id) {
+    // Without the hint the planner takes the _id fast path, which has to fetch the document
+    Query query = Query.query(where(ID).is(id)).withHint(ConsentIndex.ID_VERSION.indexName());
+    query.fields().include(VERSION);
+    return template.findOne(query, Consent.class).mapNotNull(Consent::getVersion);
+  }
+
+  private static Query byIdAndVersion(UUID id, Collection<Integer> expectedVersions) {
+    Criteria criteria = where(ID).is(id);
+    if (Objects.nonNull(expectedVersions)) {
+      criteria = criteria.and(VERSION).in(expectedVersions);
+    }
+    return Query.query(criteria);
+  }
+
+  @Override
+  public Flux<UUID> findExpiredIds(LocalDateTime now, int limit) {
+    Query query = new Query(expired(now)).limit(limit);
+    query.fields().include(ID);
+    return template.find(query, Consent.class).map(Consent::getId);
+  }
+
+  @Override
+  public Mono<Long> markExpired(Collection<UUID> ids, LocalDateTime now) {
+    Query query = new Query(expired(now)).addCriteria(where(ID).in(ids));
+    Update update = new Update().set(STATUS, ConsentStatus.EXPIRED).inc(VERSION, 1);
+    return template.updateMulti(query, update, Consent.class).map(UpdateResult::getModifiedCount);
+  }
+
+  @Override
+  public Flux<UUID> findPendingEnrichmentIds(LocalDateTime createdBefore) {
+    Query query = new Query(pendingEnrichment().and(CREATION_DATE_TIME).lt(createdBefore));
+    query.fields().include(ID);
+    return template.find(query, Consent.class).map(Consent::getId);
+  }
+
+  @Override
+  public Mono<Long> fillAdditionalInfo(Collection<UUID> ids, String additionalInfo, UUID run) {
+    Query query = new Query(pendingEnrichment()).addCriteria(where(ID).in(ids));
+    Update update =
+        new Update()
+            .set(ADDITIONAL_INFO, additionalInfo)
+            .set(ENRICHMENT_RUN, run)
+            .unset(ENRICHMENT_PENDING)
+            .inc(VERSION, 1);
+    return template.updateMulti(query, update, Consent.class).map(UpdateResult::getModifiedCount);
+  }
+
+  @Override
+  public Flux<UUID> findEnrichedIds(Collection<UUID> ids, UUID run) {
+    Query query = new Query(where(ID).in(ids).and(ENRICHMENT_RUN).is(run));
+    query.fields().include(ID);
+    return template.find(query, Consent.class).map(Consent::getId);
+  }
+
+  private static Criteria pendingEnrichment() {
+    return where(ENRICHMENT_PENDING).is(true);
+  }
+
+  private static Criteria expired(LocalDateTime now) {
+    return where(STATUS).is(ConsentStatus.ACTIVE).and(EXPIRATION_DATE_TIME).lte(now);
+  }
+
+  @Override
+  public Mono<Consent> findAndDeleteById(UUID id, Collection<Integer> expectedVersions) {
+    return template.findAndRemove(byIdAndVersion(id, expectedVersions), Consent.class);
+  }
+
+  /**
+   * Equality on status and ranges on the dates. Keyset criteria on the sort field are added as a
+   * separate {@code $or}, so a range on the same field never collides with them.
+   */
+  private static Query filtered(ConsentFilter filter) {
+    Query query = new Query();
+    if (Objects.nonNull(filter.status())) {
+      query.addCriteria(where(STATUS).is(filter.status()));
+    }
+    range(EXPIRATION_DATE_TIME, filter.expirationFrom(), filter.expirationTo())
+        .ifPresent(query::addCriteria);
+    range(CREATION_DATE_TIME, filter.creationFrom(), filter.creationTo())
+        .ifPresent(query::addCriteria);
+    return query;
+  }
+
+  private static Optional<Criteria> range(String field, LocalDateTime from, LocalDateTime to) {
+    if (Objects.isNull(from) && Objects.isNull(to)) {
+      return Optional.empty();
+    }
+    Criteria criteria = where(field);
+    if (Objects.nonNull(from)) {
+      criteria = criteria.gte(from);
+    }
+    if (Objects.nonNull(to)) {
+      criteria = criteria.lt(to);
+    }
+    return Optional.of(criteria);
+  }
+
+  /** The exception translator may wrap the driver exception, so look for it down the chain. */
+  private static MongoBulkWriteException findBulkWriteException(Throwable error) {
+    for (Throwable current = error; current != null; current = current.getCause()) {
+      if (current instanceof MongoBulkWriteException bulkWriteException) {
+        return bulkWriteException;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Builds the range predicate for "everything after the cursor" in (field, id) order. Nulls sort
+   * before any value in MongoDB, so they are the tail of a descending scan and the head of an
+   * ascending one.
+   */
+  private Criteria keyset(ConsentCursor cursor) {
+    boolean ascending = cursor.direction().isAscending();
+    Criteria tieBreak = ascending ? where(ID).gt(cursor.id()) : where(ID).lt(cursor.id());
+    if (cursor.field() == ConsentSortField.ID) {
+      return tieBreak;
+    }
+
+    String field = cursor.field().property();
+    Object value = cursor.value();
+    Criteria sameValue = new Criteria().andOperator(where(field).is(value), tieBreak);
+
+    if (value == null) {
+      return ascending ? new Criteria().orOperator(sameValue, where(field).ne(null)) : sameValue;
+    }
+    if (ascending) {
+      return new Criteria().orOperator(where(field).gt(value), sameValue);
+    }
+    return new Criteria().orOperator(where(field).lt(value), sameValue, where(field).is(null));
+  }
+}
@@ -0,0 +1,48 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Fields that can drive keyset pagination. Each one is backed by a compound index on ({@code
+ * field}, {@code _id}) declared in {@link ConsentIndex}, so that cursor queries resolve to an index
+ * range scan.
+ */
+public enum ConsentSortField {
+  ID("id", Consent::getId, UUID::fromString),
+  CREATION_DATE_TIME("creationDateTime", Consent::getCreationDateTime, LocalDateTime::parse),
+  EXPIRATION_DATE_TIME("expirationDateTime", Consent::getExpirationDateTime, LocalDateTime::parse),
+  CPF("cpf", Consent::getCpf, Function.identity()),
+  STATUS("status", Consent::getStatus, ConsentStatus::valueOf);
+
+  private final String property;
+  private final Function<Consent, Object> extractor;
+  private final Function<String, Object> parser;
+
+  ConsentSortField(String property, Function<Consent, ?> extractor, Function<String, ?> parser) {
+    this.property = property;
+    this.extractor = extractor::apply;
+    this.parser = parser::apply;
+  }
+
+  public String property() {
+    return property;
+  }
+
+  public Object valueOf(Consent consent) {
+    return extractor.apply(consent);
+  }
+
+  public Object parse(String value) {
+    return value == null ? null : parser.apply(value);
+  }
+
+  public static Optional<ConsentSortField> fromProperty(String property) {
+    return Arrays.stream(values()).filter(field -> field.property.equals(property)).findFirst();
+  }
+}
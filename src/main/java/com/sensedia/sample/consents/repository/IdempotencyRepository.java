@@ -0,0 +1,7 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface IdempotencyRepository
+    extends ReactiveMongoRepository<IdempotencyRecord, String>, IdempotencyRepositoryCustom {}
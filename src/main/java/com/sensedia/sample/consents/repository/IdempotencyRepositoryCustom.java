@@ -0,0 +1,30 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import java.time.Instant;
+import java.util.UUID;
+import reactor.core.publisher.Mono;
+
+public interface IdempotencyRepositoryCustom {
+
+  /**
+   * Inserts an in-progress record for the key, holding the id its consent will be saved with. Emits
+   * whether this call is the one that did.
+   */
+  Mono<Boolean> claim(String key, String fingerprint, UUID consentId);
+
+  Mono<Void> complete(String key, ConsentResponseDTO response);
+
+  /**
+   * Gives up the claim on a record still in progress, keeping the record and its consent id, so a
+   * retry can take it over without creating the consent twice.
+   */
+  Mono<Void> release(String key);
+
+  /**
+   * Claims a record still in progress whose claim was released or taken before {@code
+   * claimedBefore}. Emits it, or nothing when it is still held, complete or gone.
+   */
+  Mono<IdempotencyRecord> takeOver(String key, Instant claimedBefore);
+}
@@ -0,0 +1,77 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class IdempotencyRepositoryCustomImpl implements IdempotencyRepositoryCustom {
+
+  private static final String KEY = "key";
+  private static final String RESPONSE = "response";
+  private static final String CLAIMED_AT = "claimedAt";
+
+  private final ReactiveMongoTemplate template;
+
+  /** A plain insert: the key is the {@code _id}, so a second claim collides with the first. */
+  @Override
+  public Mono<Boolean> claim(String key, String fingerprint, UUID consentId) {
+    Instant now = Instant.now();
+    IdempotencyRecord record =
+        IdempotencyRecord.builder()
+            .key(key)
+            .fingerprint(fingerprint)
+            .consentId(consentId)
+            .createdAt(now)
+            .claimedAt(now)
+            .build();
+    return template
+        .insert(record)
+        .thenReturn(true)
+        .onErrorResume(DuplicateKeyException.class, error -> Mono.just(false));
+  }
+
+  @Override
+  public Mono<Void> complete(String key, ConsentResponseDTO response) {
+    return template
+        .updateFirst(
+            Query.query(where(KEY).is(key)),
+            new Update().set(RESPONSE, response),
+            IdempotencyRecord.class)
+        .then();
+  }
+
+  @Override
+  public Mono<Void> release(String key) {
+    return template
+        .updateFirst(
+            Query.query(where(KEY).is(key).and(RESPONSE).is(null)),
+            new Update().unset(CLAIMED_AT),
+            IdempotencyRecord.class)
+        .then();
+  }
+
+  /**
+   * Conditional on the claim being released or stale, so of several waiters only one takes it. A
+   * missing {@code claimedAt} does not match {@code $gt}, so released claims are taken too.
+   */
+  @Override
+  public Mono<IdempotencyRecord> takeOver(String key, Instant claimedBefore) {
+    return template.findAndModify(
+        Query.query(
+            where(KEY).is(key).and(RESPONSE).is(null).and(CLAIMED_AT).not().gt(claimedBefore)),
+        new Update().set(CLAIMED_AT, Instant.now()),
+        FindAndModifyOptions.options().returnNew(true),
+        IdempotencyRecord.class);
+  }
+}
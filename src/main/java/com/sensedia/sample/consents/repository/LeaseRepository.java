@@ -0,0 +1,7 @@
+package com.sensedia.sample.consents.repository;
+
+import com.sensedia.sample.consents.domain.Lease;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface LeaseRepository
+    extends ReactiveMongoRepository<Lease, String>, LeaseRepositoryCustom {}
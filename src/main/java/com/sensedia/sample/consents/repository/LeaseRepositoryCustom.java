@@ -0,0 +1,16 @@
+package com.sensedia.sample.consents.repository;
+
+import java.time.Duration;
+import reactor.core.publisher.Mono;
+
+public interface LeaseRepositoryCustom {
+
+  /**
+   * Takes the lease if it is free, expired or already held by the owner, extending it by the ttl.
+   * Emits whether the owner now holds it.
+   */
+  Mono<Boolean> tryAcquire(String name, String owner, Duration ttl);
+
+  /** Frees the lease if the owner still holds it. */
+  Mono<Void> release(String name, String owner);
+}
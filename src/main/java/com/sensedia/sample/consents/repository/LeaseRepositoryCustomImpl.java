@@ -0,0 +1,53 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.sensedia.sample.consents.domain.Lease;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class LeaseRepositoryCustomImpl implements LeaseRepositoryCustom {
+
+  private static final String ID = "id";
+  private static final String OWNER = "owner";
+  private static final String EXPIRES_AT = "expiresAt";
+
+  private final ReactiveMongoTemplate template;
+
+  /**
+   * A single upserting findAndModify. When another owner holds a live lease the filter matches
+   * nothing, the upsert collides with the existing {@code _id} and the lease is not taken.
+   */
+  @Override
+  public Mono<Boolean> tryAcquire(String name, String owner, Duration ttl) {
+    Instant now = Instant.now();
+    Query query =
+        Query.query(
+            where(ID)
+                .is(name)
+                .orOperator(where(EXPIRES_AT).lte(now), Criteria.where(OWNER).is(owner)));
+    Update update = new Update().set(OWNER, owner).set(EXPIRES_AT, now.plus(ttl));
+    return template
+        .findAndModify(
+            query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), Lease.class)
+        .map(lease -> owner.equals(lease.getOwner()))
+        .onErrorResume(DuplicateKeyException.class, error -> Mono.just(false))
+        .defaultIfEmpty(false);
+  }
+
+  @Override
+  public Mono<Void> release(String name, String owner) {
+    return template
+        .remove(Query.query(where(ID).is(name).and(OWNER).is(owner)), Lease.class)
+        .then();
+  }
+}
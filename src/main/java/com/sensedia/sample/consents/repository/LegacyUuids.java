@@ -0,0 +1,70 @@
+package com.sensedia.sample.consents.repository;
+
+import com.mongodb.client.model.Filters;
+import java.util.Arrays;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+/**
+ * UUIDs as stored by the driver's legacy Java representation: binary subtype 3 with each 8-byte
+ * half in reverse order. The standard representation is subtype 4, big-endian, so converting one is
+ * reversing both halves and changing the subtype.
+ */
+public final class LegacyUuids {
+
+  private static final String ID = "_id";
+  private static final int LENGTH = 16;
+  private static final int HALF = 8;
+
+  private LegacyUuids() {}
+
+  /**
+   * Documents whose {@code _id} is a UUID of the given subtype. Binary values sort by length, then
+   * subtype, then bytes, so this is a range on the {@code _id} index.
+   */
+  public static Bson idsOf(BsonBinarySubType subtype) {
+    byte[] highest = new byte[LENGTH];
+    Arrays.fill(highest, (byte) 0xFF);
+    return Filters.and(
+        Filters.gte(ID, new BsonBinary(subtype, new byte[LENGTH])),
+        Filters.lte(ID, new BsonBinary(subtype, highest)));
+  }
+
+  /** A copy of the document with every legacy UUID in it, at any depth, in the standard layout. */
+  public static BsonDocument toStandard(BsonDocument document) {
+    BsonDocument converted = new BsonDocument();
+    document.forEach((key, value) -> converted.append(key, toStandard(value)));
+    return converted;
+  }
+
+  private static BsonValue toStandard(BsonValue value) {
+    if (value.isDocument()) {
+      return toStandard(value.asDocument());
+    }
+    if (value.isArray()) {
+      BsonArray converted = new BsonArray();
+      value.asArray().forEach(element -> converted.add(toStandard(element)));
+      return converted;
+    }
+    if (!isLegacy(value)) {
+      return value;
+    }
+    byte[] legacy = value.asBinary().getData();
+    byte[] standard = new byte[LENGTH];
+    for (int i = 0; i < HALF; i++) {
+      standard[i] = legacy[HALF - 1 - i];
+      standard[HALF + i] = legacy[LENGTH - 1 - i];
+    }
+    return new BsonBinary(BsonBinarySubType.UUID_STANDARD, standard);
+  }
+
+  private static boolean isLegacy(BsonValue value) {
+    return value.isBinary()
+        && value.asBinary().getType() == BsonBinarySubType.UUID_LEGACY.getValue()
+        && value.asBinary().getData().length == LENGTH;
+  }
+}
@@ -0,0 +1,113 @@
+package com.sensedia.sample.consents.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs {@code explain} on a {@link QueryShape} and reports how the server would answer it: through
+ * an index or by scanning the whole collection. The shape is explained as a {@code find} with its
+ * filter and sort, whatever command it came from, since that is what picks the index.
+ *
+ * <p>The verbosity is {@code executionStats}, so the winning plan is actually run with the
+ * placeholder values to count the keys and documents it examines. A collection scan examines every
+ * document, whatever the values.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryExplainer {
+
+  private final ReactiveMongoTemplate template;
+
+  public Mono<QueryPlan> explain(QueryShape shape) {
+    Document find =
+        new Document("find", shape.collection()).append("filter", shape.filterDocument());
+    if (Objects.nonNull(shape.sort())) {
+      find.append("sort", shape.sortDocument());
+    }
+    return template
+        .executeCommand(new Document("explain", find).append("verbosity", "executionStats"))
+        .map(explained -> QueryPlan.of(shape, explained));
+  }
+
+  /**
+   * The winning plan of a query, top stage first, with the indexes it reads. {@code access} is
+   * {@code COLLSCAN} when any stage scans the collection, {@code IXSCAN} when the documents are
+   * found through an index, or else the last stage, such as {@code EOF} for a missing collection.
+   */
+  public record QueryPlan(
+      QueryShape shape,
+      String access,
+      List<String> stages,
+      List<String> indexes,
+      long keysExamined,
+      long docsExamined,
+      long returned,
+      long executionMillis) {
+
+    public static final String COLLSCAN = "COLLSCAN";
+    public static final String IXSCAN = "IXSCAN";
+
+    private static final Set<String> INDEX_STAGES = Set.of("IDHACK", "COUNT_SCAN", "DISTINCT_SCAN");
+
+    public boolean collectionScan() {
+      return COLLSCAN.equals(access);
+    }
+
+    static QueryPlan of(QueryShape shape, Document explained) {
+      Document winningPlan =
+          explained.get("queryPlanner", new Document()).get("winningPlan", new Document());
+      // The slot-based engine nests the classic plan one level down
+      Document plan = winningPlan.get("queryPlan", winningPlan);
+      List<String> stages = new ArrayList<>();
+      List<String> indexes = new ArrayList<>();
+      walk(plan, stages, indexes);
+      Document stats = explained.get("executionStats", new Document());
+      return new QueryPlan(
+          shape,
+          access(stages),
+          stages,
+          indexes,
+          number(stats, "totalKeysExamined"),
+          number(stats, "totalDocsExamined"),
+          number(stats, "nReturned"),
+          number(stats, "executionTimeMillis"));
+    }
+
+    private static void walk(Document stage, List<String> stages, List<String> indexes) {
+      if (Objects.isNull(stage) || !stage.containsKey("stage")) {
+        return;
+      }
+      stages.add(stage.getString("stage"));
+      if (stage.containsKey("indexName")) {
+        indexes.add(stage.getString("indexName"));
+      }
+      walk(stage.get("inputStage", Document.class), stages, indexes);
+      for (Document input : stage.getList("inputStages", Document.class, List.of())) {
+        walk(input, stages, indexes);
+      }
+    }
+
+    private static String access(List<String> stages) {
+      if (stages.contains(COLLSCAN)) {
+        return COLLSCAN;
+      }
+      if (stages.stream()
+          .anyMatch(stage -> stage.endsWith(IXSCAN) || INDEX_STAGES.contains(stage))) {
+        return IXSCAN;
+      }
+      return stages.isEmpty() ? "UNKNOWN" : stages.get(stages.size() - 1);
+    }
+
+    private static long number(Document document, String key) {
+      Number value = document.get(key, Number.class);
+      return Objects.isNull(value) ? 0 : value.longValue();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package com.sensedia.sample.consents.repository;
+
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+/**
+ * The shape of a query sent to Mongo: its fields and operators, with every value replaced by a
+ * placeholder of the same BSON type. CPFs and dates never leave the command, queries that differ
+ * only in their values share a shape, and the shape can still be explained, since the planner picks
+ * an index from the fields and the types of their bounds. Lists of values, as in {@code $in},
+ * collapse to one placeholder per type, so their length does not make a new shape.
+ *
+ * <p>The filter and sort are kept as relaxed JSON, {@code null} for a query without a sort.
+ */
+public record QueryShape(String command, String collection, String filter, String sort) {
+
+  private static final JsonWriterSettings JSON =
+      JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+  private static final String PLACEHOLDER = "?";
+  private static final String MATCH = "$match";
+  private static final String SORT = "$sort";
+
+  /**
+   * The collection a command runs on, or null when it is not one of the commands that read or write
+   * documents by a filter.
+   */
+  public static String collectionOf(String commandName, BsonDocument command) {
+    if (!isQuery(commandName)) {
+      return null;
+    }
+    BsonValue collection = command.get(commandName);
+    return Objects.nonNull(collection) && collection.isString()
+        ? collection.asString().getValue()
+        : null;
+  }
+
+  private static boolean isQuery(String commandName) {
+    return switch (commandName) {
+      case "find", "count", "distinct", "findAndModify", "update", "delete", "aggregate" -> true;
+      default -> false;
+    };
+  }
+
+  /**
+   * The shape of a command on {@code collection}. Updates and deletes are shaped by their first
+   * statement and aggregations by their {@code $match} and {@code $sort} stages.
+   */
+  public static QueryShape of(String commandName, String collection, BsonDocument command) {
+    BsonDocument filter;
+    BsonDocument sort;
+    switch (commandName) {
+      case "find" -> {
+        filter = document(command, "filter");
+        sort = document(command, "sort");
+      }
+      case "count", "distinct" -> {
+        filter = document(command, "query");
+        sort = null;
+      }
+      case "findAndModify" -> {
+        filter = document(command, "query");
+        sort = document(command, "sort");
+      }
+      case "update" -> {
+        filter = document(firstStatement(command, "updates"), "q");
+        sort = null;
+      }
+      case "delete" -> {
+        filter = document(firstStatement(command, "deletes"), "q");
+        sort = null;
+      }
+      default -> {
+        filter = stage(command, MATCH);
+        sort = stage(command, SORT);
+      }
+    }
+    return new QueryShape(
+        commandName,
+        collection,
+        redact(Objects.isNull(filter) ? new BsonDocument() : filter).toJson(JSON),
+        Objects.isNull(sort) ? null : sort.toJson(JSON));
+  }
+
+  /** Whether the query selects documents, rather than reading the whole collection on purpose. */
+  public boolean filtered() {
+    return !filterDocument().isEmpty();
+  }
+
+  public Document filterDocument() {
+    return Document.parse(filter);
+  }
+
+  public Document sortDocument() {
+    return Objects.isNull(sort) ? null : Document.parse(sort);
+  }
+
+  private static BsonDocument document(BsonDocument parent, String key) {
+    if (Objects.isNull(parent)) {
+      return null;
+    }
+    BsonValue value = parent.get(key);
+    return Objects.nonNull(value) && value.isDocument() ? value.asDocument() : null;
+  }
+
+  private static BsonDocument firstStatement(BsonDocument command, String key) {
+    BsonValue statements = command.get(key);
+    if (Objects.isNull(statements) || !statements.isArray() || statements.asArray().isEmpty()) {
+      return null;
+    }
+    BsonValue first = statements.asArray().get(0);
+    return first.isDocument() ? first.asDocument() : null;
+  }
+
+  private static BsonDocument stage(BsonDocument command, String name) {
+    BsonValue pipeline = command.get("pipeline");
+    if (Objects.isNull(pipeline) || !pipeline.isArray()) {
+      return null;
+    }
+    for (BsonValue stage : pipeline.asArray()) {
+      if (stage.isDocument() && stage.asDocument().containsKey(name)) {
+        return document(stage.asDocument(), name);
+      }
+    }
+    return null;
+  }
+
+  static BsonDocument redact(BsonDocument filter) {
+    BsonDocument shape = new BsonDocument();
+    filter.forEach((key, value) -> shape.append(key, redact(value)));
+    return shape;
+  }
+
+  private static BsonValue redact(BsonValue value) {
+    return switch (value.getBsonType()) {
+      case DOCUMENT -> redact(value.asDocument());
+      case ARRAY -> redact(value.asArray());
+      case STRING, SYMBOL, JAVASCRIPT -> new BsonString(PLACEHOLDER);
+      case INT32 -> new BsonInt32(0);
+      case INT64 -> new BsonInt64(0);
+      case DOUBLE -> new BsonDouble(0);
+      case DECIMAL128 -> new BsonDecimal128(Decimal128.POSITIVE_ZERO);
+      case DATE_TIME -> new BsonDateTime(0);
+      case TIMESTAMP -> new BsonTimestamp();
+      case BINARY ->
+          new BsonBinary(value.asBinary().getType(), new byte[value.asBinary().getData().length]);
+      case OBJECT_ID -> new BsonObjectId(new ObjectId(new byte[12]));
+      case REGULAR_EXPRESSION -> new BsonRegularExpression(PLACEHOLDER);
+      default -> value;
+    };
+  }
+
+  /**
+   * Documents, as in {@code $or}, are shaped one by one; values collapse to the distinct
+   * placeholders among them.
+   */
+  private static BsonArray redact(BsonArray values) {
+    Set<BsonValue> shapes = new LinkedHashSet<>();
+    BsonArray documents = new BsonArray();
+    for (BsonValue value : values) {
+      if (value.isDocument()) {
+        documents.add(redact(value.asDocument()));
+      } else {
+        shapes.add(redact(value));
+      }
+    }
+    documents.addAll(shapes);
+    return documents;
+  }
+}
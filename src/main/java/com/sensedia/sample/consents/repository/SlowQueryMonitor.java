@@ -0,0 +1,125 @@
+package com.sensedia.sample.consents.repository;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.sensedia.sample.consents.config.SlowQueryProperties;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Driver listener that flags the queries on the consent and log collections taking longer than
+ * {@code consents.slow-queries.threshold}. Log buckets ({@code consent_logs_yyyy_MM}) count as the
+ * log collection. Each one is logged and kept, by its {@link QueryShape} only, in a buffer of the
+ * last {@code capacity} slow queries, which the {@code slowqueries} actuator endpoint lists and
+ * explains.
+ *
+ * <p>The shape is taken when the command starts, while its document is still readable, and only for
+ * the watched collections; it is dropped when the command turns out to be fast.
+ */
+@Slf4j
+@Component
+public class SlowQueryMonitor implements CommandListener {
+
+  private final SlowQueryProperties properties;
+  private final long thresholdNanos;
+  private final ConcurrentMap<Integer, QueryShape> running = new ConcurrentHashMap<>();
+
+  /** Newest first. Guards {@link #sequence} too. */
+  private final Deque<SlowQuery> recent = new ArrayDeque<>();
+
+  private long sequence;
+
+  public SlowQueryMonitor(SlowQueryProperties properties) {
+    this.properties = properties;
+    this.thresholdNanos = properties.threshold().toNanos();
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent event) {
+    if (!properties.enabled()) {
+      return;
+    }
+    String collection = QueryShape.collectionOf(event.getCommandName(), event.getCommand());
+    if (Objects.nonNull(collection) && isWatched(collection)) {
+      running.put(
+          event.getRequestId(),
+          QueryShape.of(event.getCommandName(), collection, event.getCommand()));
+    }
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    finished(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    finished(event.getRequestId(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+  }
+
+  private boolean isWatched(String collection) {
+    for (String watched : properties.collections()) {
+      if (collection.equals(watched)
+          || (collection.startsWith(watched) && collection.charAt(watched.length()) == '_')) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void finished(int requestId, long elapsedNanos) {
+    QueryShape shape = running.remove(requestId);
+    if (Objects.isNull(shape) || elapsedNanos < thresholdNanos) {
+      return;
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    log.warn(
+        "Slow {} on {} took {} ms, filter {} sort {}",
+        shape.command(),
+        shape.collection(),
+        elapsedMillis,
+        shape.filter(),
+        shape.sort());
+    synchronized (recent) {
+      recent.addFirst(new SlowQuery(++sequence, Instant.now(), elapsedMillis, shape));
+      while (recent.size() > properties.capacity()) {
+        recent.removeLast();
+      }
+    }
+  }
+
+  /** The captured slow queries, newest first. */
+  public List<SlowQuery> recent() {
+    synchronized (recent) {
+      return List.copyOf(recent);
+    }
+  }
+
+  public Optional<SlowQuery> find(long id) {
+    synchronized (recent) {
+      return recent.stream().filter(query -> query.id() == id).findFirst();
+    }
+  }
+
+  /** The captured slow queries, newest first, emptying the buffer. */
+  public List<SlowQuery> drain() {
+    synchronized (recent) {
+      List<SlowQuery> drained = List.copyOf(recent);
+      recent.clear();
+      return drained;
+    }
+  }
+
+  public record SlowQuery(long id, Instant at, long elapsedMillis, QueryShape shape) {}
+}
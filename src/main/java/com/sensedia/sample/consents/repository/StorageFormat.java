@@ -0,0 +1,17 @@
+package com.sensedia.sample.consents.repository;
+
+/** How consents and log entries are laid out in their documents. */
+public enum StorageFormat {
+  /**
+   * Field names as in the classes, CPFs as strings of digits, enums by name, and the class of each
+   * document in {@code _class}.
+   */
+  STANDARD,
+
+  /**
+   * The layout of {@link CompactStorage}: short field names, CPFs as int64, enums as int32 codes
+   * and no {@code _class}. Documents in the other format are not read correctly, so switching
+   * requires running the storage migration first.
+   */
+  COMPACT
+}
@@ -0,0 +1,10 @@
+package com.sensedia.sample.consents.service;
+
+public enum AuditDurability {
+  /** Each entry is inserted on its own and the caller waits for it. */
+  SYNC,
+  /** Entries are batched and the caller waits until the batch holding its entry is flushed. */
+  GROUP_COMMIT,
+  /** Entries are batched and the caller returns as soon as its entry is queued. */
+  FIRE_AND_FORGET
+}
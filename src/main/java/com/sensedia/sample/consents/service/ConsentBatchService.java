@@ -0,0 +1,205 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.client.ExternalInfoClient;
+import com.sensedia.sample.consents.config.BatchProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.dto.BatchItemResultDTO;
+import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
+import com.sensedia.sample.consents.dto.ErrorDTO;
+import com.sensedia.sample.consents.mapper.ConsentMapper;
+import com.sensedia.sample.consents.repository.BulkWriteFailure;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.IdGenerator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * Creates consents in chunks: each chunk is validated item by item, persisted with one unordered
+ * bulk insert and audited with one insert of its log entries. A chunk that fails as a whole reports
+ * every item it was writing as failed and the next chunk goes on, so the response still has one
+ * result per item.
+ */
+@Service
+@Log4j2
+@RequiredArgsConstructor
+public class ConsentBatchService {
+
+  private final ConsentMapper mapper;
+  private final ConsentRepository repository;
+  private final ConsentLogRepository logRepository;
+  private final ExternalInfoClient externalInfoClient;
+  private final Validator validator;
+  private final BatchProperties properties;
+  private final IdGenerator idGenerator;
+
+  public Flux<BatchItemResultDTO> createAll(Flux<ConsentRequestCreateDTO> requests) {
+    return requests.index().buffer(properties.chunkSize()).concatMap(this::createChunk);
+  }
+
+  private Flux<BatchItemResultDTO> createChunk(List<Tuple2<Long, ConsentRequestCreateDTO>> chunk) {
+    BatchItemResultDTO[] results = new BatchItemResultDTO[chunk.size()];
+    List<Integer> positions = new ArrayList<>(chunk.size());
+    List<Consent> consents = new ArrayList<>(chunk.size());
+    LocalDateTime now = LocalDateTime.now();
+
+    for (int i = 0; i < chunk.size(); i++) {
+      long index = chunk.get(i).getT1();
+      ConsentRequestCreateDTO dto = chunk.get(i).getT2();
+      Set<ConstraintViolation<ConsentRequestCreateDTO>> violations = validator.validate(dto);
+      if (!violations.isEmpty()) {
+        results[i] = invalid(index, violations);
+        continue;
+      }
+      Consent consent = mapper.toEntity(dto);
+      consent.setId(idGenerator.generateId());
+      // Bulk inserts skip the template's version initialisation. Once the version is set,
+      // auditing no longer sees the entity as new, so the creation date is set here too.
+      consent.setVersion(0);
+      consent.setCreationDateTime(now);
+      positions.add(i);
+      consents.add(consent);
+    }
+
+    return fetchInfoIfAnyNull(consents)
+        .thenMany(Flux.defer(() -> repository.insertUnordered(consents)))
+        .collectMap(BulkWriteFailure::index, BulkWriteFailure::message)
+        .flatMapMany(
+            failures -> {
+              List<ConsentLog> logEntries = new ArrayList<>(consents.size());
+              List<Integer> created = new ArrayList<>(consents.size());
+              for (int j = 0; j < consents.size(); j++) {
+                int position = positions.get(j);
+                long index = chunk.get(position).getT1();
+                Consent consent = consents.get(j);
+                String failure = failures.get(j);
+                if (Objects.isNull(failure)) {
+                  results[position] =
+                      new BatchItemResultDTO(
+                          index, HttpStatus.CREATED.value(), consent.getId(), null, null);
+                  logEntries.add(logEntry(consent, now));
+                  created.add(position);
+                } else {
+                  results[position] =
+                      new BatchItemResultDTO(
+                          index, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, failure, null);
+                }
+              }
+              return saveConsentLogs(logEntries)
+                  .onErrorResume(
+                      error -> {
+                        created.forEach(
+                            position -> results[position] = unaudited(results[position], error));
+                        return Mono.empty();
+                      })
+                  .thenMany(Flux.fromArray(results));
+            })
+        .onErrorResume(
+            error -> {
+              log.error(
+                  "Failed to create a chunk of {} consents: {}",
+                  consents.size(),
+                  error.getMessage());
+              for (int j = 0; j < consents.size(); j++) {
+                int position = positions.get(j);
+                results[position] =
+                    chunkFailed(chunk.get(position).getT1(), consents.get(j), error);
+              }
+              return Flux.fromArray(results);
+            });
+  }
+
+  private Mono<Void> fetchInfoIfAnyNull(List<Consent> consents) {
+    List<Consent> missingInfo =
+        consents.stream().filter(c -> Objects.isNull(c.getAdditionalInfo())).toList();
+    if (missingInfo.isEmpty()) {
+      return Mono.empty();
+    }
+    log.info("Fetching additional info from external API for {} consents.", missingInfo.size());
+    return externalInfoClient
+        .fetchAdditionalInfo()
+        .doOnNext(info -> missingInfo.forEach(consent -> consent.setAdditionalInfo(info)))
+        .then();
+  }
+
+  private Mono<Void> saveConsentLogs(List<ConsentLog> logEntries) {
+    if (logEntries.isEmpty()) {
+      return Mono.empty();
+    }
+    return logRepository
+        .appendAll(logEntries)
+        .then()
+        .doOnSuccess(v -> log.info("Logged action [CREATED] for {} consents", logEntries.size()))
+        .doOnError(
+            error ->
+                log.error(
+                    "Failed to log action [CREATED] for {} consents: {}",
+                    logEntries.size(),
+                    error.getMessage()));
+  }
+
+  /**
+   * The chunk failed as a whole, for instance on a timeout, so whether the consent was written is
+   * unknown; its id lets the client find out instead of creating it again.
+   */
+  private static BatchItemResultDTO chunkFailed(long index, Consent consent, Throwable error) {
+    return new BatchItemResultDTO(
+        index,
+        HttpStatus.INTERNAL_SERVER_ERROR.value(),
+        consent.getId(),
+        "Failed to write the chunk of this consent, look it up by id to know whether it was"
+            + " created: "
+            + error.getMessage(),
+        null);
+  }
+
+  /**
+   * A consent that was created but not audited is reported as failed, as a single create would be,
+   * with its id so the client can find it instead of creating it again.
+   */
+  private static BatchItemResultDTO unaudited(BatchItemResultDTO created, Throwable error) {
+    return new BatchItemResultDTO(
+        created.index(),
+        HttpStatus.INTERNAL_SERVER_ERROR.value(),
+        created.id(),
+        "Consent created, but its audit entry could not be written: " + error.getMessage(),
+        null);
+  }
+
+  private ConsentLog logEntry(Consent consent, LocalDateTime timestamp) {
+    return ConsentLog.builder()
+        .id(idGenerator.generateId())
+        .consentId(consent.getId())
+        .action(ActionType.CREATED)
+        .timestamp(timestamp)
+        .details("Consent created successfully in batch.")
+        .build();
+  }
+
+  private BatchItemResultDTO invalid(
+      long index, Set<ConstraintViolation<ConsentRequestCreateDTO>> violations) {
+    List<ErrorDTO.ValidationError> errors =
+        violations.stream()
+            .map(
+                violation ->
+                    new ErrorDTO.ValidationError(
+                        violation.getPropertyPath().toString(), violation.getMessage()))
+            .toList();
+    return new BatchItemResultDTO(
+        index, HttpStatus.BAD_REQUEST.value(), null, "Validation failed.", errors);
+  }
+}
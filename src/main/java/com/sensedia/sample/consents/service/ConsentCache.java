@@ -0,0 +1,153 @@
+package com.sensedia.sample.consents.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sensedia.sample.consents.config.ConsentCacheProperties;
+import com.sensedia.sample.consents.domain.Consent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-through cache of consents by id, bounded in size and time and evicted with Caffeine's
+ * W-TinyLFU policy. An entry is only ever replaced by a consent with a newer {@code version}, so a
+ * slow read cannot overwrite the result of a later update. Hits, misses and evictions are exported
+ * as the {@code cache.*} meters tagged {@code cache=consents}.
+ *
+ * <p>Other instances change and delete consents without this one knowing. A cached copy is served
+ * as is for {@code revalidateAfter} after it was stored or last confirmed, so changes made
+ * elsewhere may go unseen for that long; changes made through this instance refresh the entry at
+ * once. After that the hit is checked against the stored {@code version}, which an index answers
+ * without reading the document: the copy is served and confirmed again while its version is still
+ * the stored one, and otherwise the consent is loaded again, or remembered as absent if it was
+ * deleted. A zero {@code revalidateAfter} checks every hit.
+ *
+ * <p>Ids that were looked up and not found are remembered in a second, bounded cache so repeated
+ * probes for them are answered without touching MongoDB. Ids are generated server-side and never
+ * reused, so a miss recorded here cannot later turn into a hit. That cache is exported with {@code
+ * cache=consents-absent}.
+ */
+@Component
+public class ConsentCache {
+
+  private final Cache<UUID, Entry> cache;
+  private final Cache<UUID, Boolean> absent;
+  private final long revalidateAfterNanos;
+
+  public ConsentCache(ConsentCacheProperties properties, MeterRegistry registry) {
+    this.revalidateAfterNanos = properties.revalidateAfter().toNanos();
+    if (!properties.enabled()) {
+      this.cache = null;
+      this.absent = null;
+      return;
+    }
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumSize())
+            .expireAfterWrite(properties.ttl())
+            .recordStats()
+            .build();
+    this.absent =
+        Caffeine.newBuilder()
+            .maximumSize(properties.absentMaximumSize())
+            .expireAfterWrite(properties.absentTtl())
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(registry, cache, "consents");
+    CaffeineCacheMetrics.monitor(registry, absent, "consents-absent");
+  }
+
+  /**
+   * The consent, from the cache if it was confirmed recently enough or {@code storedVersion}
+   * confirms it is still current, or else from {@code loader}.
+   */
+  public Mono<Consent> get(
+      UUID id, Function<UUID, Mono<Consent>> loader, Function<UUID, Mono<Integer>> storedVersion) {
+    if (Objects.isNull(cache)) {
+      return loader.apply(id);
+    }
+    return Mono.defer(
+        () -> {
+          Entry cached = cache.getIfPresent(id);
+          if (Objects.nonNull(cached)) {
+            if (System.nanoTime() - cached.confirmedAtNanos() < revalidateAfterNanos) {
+              return Mono.just(cached.consent());
+            }
+            return storedVersion
+                .apply(id)
+                .filter(version -> version.equals(cached.consent().getVersion()))
+                .map(version -> confirm(cached))
+                .switchIfEmpty(Mono.defer(() -> load(id, loader)));
+          }
+          if (isKnownAbsent(id)) {
+            return Mono.empty();
+          }
+          return load(id, loader);
+        });
+  }
+
+  private Mono<Consent> load(UUID id, Function<UUID, Mono<Consent>> loader) {
+    return loader
+        .apply(id)
+        .doOnNext(this::refresh)
+        .switchIfEmpty(Mono.fromRunnable(() -> markAbsent(id)));
+  }
+
+  /** Restarts the staleness bound of the entry, unless it was replaced in the meantime. */
+  private Consent confirm(Entry cached) {
+    Consent consent = cached.consent();
+    cache
+        .asMap()
+        .computeIfPresent(
+            consent.getId(),
+            (id, current) -> current == cached ? new Entry(consent, System.nanoTime()) : current);
+    return consent;
+  }
+
+  public void refresh(Consent consent) {
+    if (Objects.isNull(cache)) {
+      return;
+    }
+    cache
+        .asMap()
+        .merge(
+            consent.getId(),
+            new Entry(consent, System.nanoTime()),
+            (current, candidate) ->
+                isNewer(candidate.consent(), current.consent()) ? candidate : current);
+  }
+
+  /** Drops the cached copies, for changes made without reading the documents back. */
+  public void evictAll(Collection<UUID> ids) {
+    if (Objects.nonNull(cache)) {
+      cache.invalidateAll(ids);
+    }
+  }
+
+  /** Whether the id is known not to exist, meaning a lookup would certainly come back empty. */
+  public boolean isKnownAbsent(UUID id) {
+    return Objects.nonNull(absent) && Objects.nonNull(absent.getIfPresent(id));
+  }
+
+  /** Drops any cached copy and remembers that the id no longer exists. */
+  public void markAbsent(UUID id) {
+    if (Objects.nonNull(absent)) {
+      cache.invalidate(id);
+      absent.put(id, Boolean.TRUE);
+    }
+  }
+
+  private static boolean isNewer(Consent candidate, Consent current) {
+    if (Objects.isNull(candidate.getVersion()) || Objects.isNull(current.getVersion())) {
+      return true;
+    }
+    return candidate.getVersion() >= current.getVersion();
+  }
+
+  private record Entry(Consent consent, long confirmedAtNanos) {}
+}
@@ -0,0 +1,108 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.config.PaginationProperties;
+import com.sensedia.sample.consents.repository.ConsentFilter;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves {@code totalElements} for list responses according to the configured {@link
+ * CountStrategy}. Every request increments {@code consents.list.count} tagged with the strategy
+ * that actually served it.
+ *
+ * <p>Filtered lists cannot be estimated or share the cached total, so they are counted exactly
+ * under {@code EXACT} and not counted at all otherwise.
+ */
+@Slf4j
+@Component
+public class ConsentCounter {
+
+  private final ConsentRepository repository;
+  private final PaginationProperties properties;
+  private final Map<CountStrategy, Counter> servedBy = new EnumMap<>(CountStrategy.class);
+  private final AtomicReference<CachedCount> cached = new AtomicReference<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  public ConsentCounter(
+      ConsentRepository repository, PaginationProperties properties, MeterRegistry registry) {
+    this.repository = repository;
+    this.properties = properties;
+    for (CountStrategy strategy : CountStrategy.values()) {
+      servedBy.put(
+          strategy,
+          Counter.builder("consents.list.count")
+              .description("List requests by the count strategy that served them")
+              .tag("strategy", strategy.name().toLowerCase())
+              .register(registry));
+    }
+  }
+
+  /** Emits the number of consents matching the filter, or completes empty when not counted. */
+  public Mono<Long> count(ConsentFilter filter) {
+    if (!filter.isEmpty()) {
+      return properties.countStrategy() == CountStrategy.EXACT
+          ? repository.countMatching(filter).doOnSubscribe(s -> served(CountStrategy.EXACT))
+          : Mono.<Long>empty().doOnSubscribe(s -> served(CountStrategy.NONE));
+    }
+    return switch (properties.countStrategy()) {
+      case EXACT -> exactCount();
+      case ESTIMATED ->
+          repository.estimatedCount().doOnSubscribe(s -> served(CountStrategy.ESTIMATED));
+      case CACHED -> cachedCount();
+      case NONE -> Mono.<Long>empty().doOnSubscribe(s -> served(CountStrategy.NONE));
+    };
+  }
+
+  private Mono<Long> exactCount() {
+    return repository.count().doOnSubscribe(s -> served(CountStrategy.EXACT));
+  }
+
+  private Mono<Long> cachedCount() {
+    return Mono.defer(
+        () -> {
+          CachedCount current = cached.get();
+          if (current == null) {
+            return exactCount().doOnNext(this::store);
+          }
+          if (current.isOlderThan(properties.countCacheTtl().toNanos())) {
+            refreshInBackground();
+          }
+          served(CountStrategy.CACHED);
+          return Mono.just(current.value());
+        });
+  }
+
+  private void refreshInBackground() {
+    if (!refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    repository
+        .count()
+        .doFinally(signal -> refreshing.set(false))
+        .subscribe(
+            this::store,
+            error -> log.warn("Failed to refresh cached consent count: {}", error.getMessage()));
+  }
+
+  private void store(long value) {
+    cached.set(new CachedCount(value, System.nanoTime()));
+  }
+
+  private void served(CountStrategy strategy) {
+    servedBy.get(strategy).increment();
+  }
+
+  private record CachedCount(long value, long fetchedAtNanos) {
+    boolean isOlderThan(long ttlNanos) {
+      return System.nanoTime() - fetchedAtNanos > ttlNanos;
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.client.ExternalInfoClient;
+import com.sensedia.sample.consents.config.EnrichmentProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.LeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.IdGenerator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Fills in the additional info of consents saved with {@code enrichmentPending} set under {@link
+ * EnrichmentMode#DEFERRED}. Ids go through a bounded queue and are enriched in batches of up to
+ * {@code maxBatchSize} or {@code maxWait}, at most {@code concurrency} batches at a time: one
+ * lookup, one updateMulti and one insert of their {@code ENRICHED} log entries per batch. When the
+ * queue is full the caller enriches its consent itself, which pushes back on creates instead of
+ * leaving consents pending.
+ *
+ * <p>The queue lives in memory and a batch whose external call fails is left pending, so every
+ * {@code sweepInterval}, starting at startup, consents pending for longer than that are picked up
+ * from the partial index that covers them: those left by an instance that stopped before enriching
+ * them, and those whose batch failed. Only the instance holding the {@value #LEASE} lease sweeps.
+ *
+ * <p>A sweep and a queued batch may still race for the same consent. Each batch stamps the consents
+ * it fills with its own run id, so only the batch that modified a consent logs it.
+ */
+@Slf4j
+@Component
+public class ConsentEnricher {
+
+  static final String LEASE = "consent-enrichment-sweeper";
+
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final ConsentRepository repository;
+  private final ConsentLogRepository logRepository;
+  private final LeaseRepository leaseRepository;
+  private final ExternalInfoClient externalInfoClient;
+  private final ConsentCache cache;
+  private final EnrichmentProperties properties;
+  private final IdGenerator idGenerator;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Counter enriched;
+  private final Counter overflow;
+  private final Sinks.Empty<Void> terminated = Sinks.empty();
+  private final String owner = UUID.randomUUID().toString();
+  private FluxSink<UUID> queue;
+  private Disposable sweep;
+
+  public ConsentEnricher(
+      ConsentRepository repository,
+      ConsentLogRepository logRepository,
+      LeaseRepository leaseRepository,
+      ExternalInfoClient externalInfoClient,
+      ConsentCache cache,
+      EnrichmentProperties properties,
+      IdGenerator idGenerator,
+      MeterRegistry registry) {
+    this.repository = repository;
+    this.logRepository = logRepository;
+    this.leaseRepository = leaseRepository;
+    this.externalInfoClient = externalInfoClient;
+    this.cache = cache;
+    this.properties = properties;
+    this.idGenerator = idGenerator;
+    this.enriched =
+        Counter.builder("consents.enrichment.enriched")
+            .description("Consents whose additional info was filled in after they were saved")
+            .register(registry);
+    this.overflow =
+        Counter.builder("consents.enrichment.overflow")
+            .description("Consents enriched by the caller because the queue was full")
+            .register(registry);
+    Gauge.builder("consents.enrichment.queue.size", pending, AtomicInteger::get)
+        .description("Consents waiting to be enriched")
+        .register(registry);
+
+    if (isDeferred()) {
+      start();
+    }
+  }
+
+  public boolean isDeferred() {
+    return properties.mode() == EnrichmentMode.DEFERRED;
+  }
+
+  private void start() {
+    Flux.<UUID>create(sink -> this.queue = sink)
+        .bufferTimeout(properties.maxBatchSize(), properties.maxWait(), true)
+        .flatMap(
+            batch -> enrich(batch).doFinally(signal -> pending.addAndGet(-batch.size())),
+            properties.concurrency())
+        .doFinally(signal -> terminated.tryEmitEmpty())
+        .subscribe();
+  }
+
+  /** Queues the consent for enrichment, or enriches it before completing when the queue is full. */
+  public Mono<Void> submit(UUID id) {
+    return Mono.defer(
+        () -> {
+          if (pending.incrementAndGet() > properties.queueCapacity()) {
+            pending.decrementAndGet();
+            overflow.increment();
+            return enrich(List.of(id)).then();
+          }
+          queue.next(id);
+          return Mono.empty();
+        });
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startSweep() {
+    if (!isDeferred()) {
+      return;
+    }
+    sweep =
+        Flux.interval(Duration.ZERO, properties.sweepInterval())
+            .onBackpressureDrop()
+            .concatMap(tick -> sweepPending(), 0)
+            .subscribe();
+  }
+
+  /**
+   * Enriches the consents pending for longer than the sweep interval if this instance can take the
+   * lease, emitting how many.
+   */
+  public Mono<Long> sweepPending() {
+    return Mono.usingWhen(
+            leaseRepository
+                .tryAcquire(LEASE, owner, properties.sweepLeaseTtl())
+                .filter(Boolean::booleanValue),
+            held ->
+                repository
+                    .findPendingEnrichmentIds(LocalDateTime.now().minus(properties.sweepInterval()))
+                    .buffer(properties.maxBatchSize())
+                    .concatMap(this::enrich)
+                    .reduce(0L, Long::sum),
+            held -> leaseRepository.release(LEASE, owner))
+        .filter(count -> count > 0)
+        .doOnNext(count -> log.info("Enriched {} consents left pending", count))
+        .onErrorResume(
+            error -> {
+              log.error("Failed to sweep pending enrichments: {}", error.getMessage());
+              return Mono.empty();
+            })
+        .defaultIfEmpty(0L);
+  }
+
+  /**
+   * Enriches the consents that are still pending, emitting how many were enriched. When the info
+   * cannot be fetched they stay pending for the sweep, rather than getting the default info.
+   */
+  Mono<Long> enrich(List<UUID> ids) {
+    LocalDateTime now = LocalDateTime.now();
+    UUID run = UUID.randomUUID();
+    return externalInfoClient
+        .fetchAdditionalInfoOrError()
+        .flatMap(
+            info ->
+                repository
+                    .fillAdditionalInfo(ids, info, run)
+                    .flatMap(modified -> confirmEnriched(ids, modified, run)))
+        .flatMap(enrichedIds -> record(enrichedIds, now))
+        .map(enrichedIds -> (long) enrichedIds.size())
+        .onErrorResume(
+            error -> {
+              log.error(
+                  "Failed to enrich {} consents, leaving them to the next sweep: {}",
+                  ids.size(),
+                  error.getMessage());
+              return Mono.empty();
+            })
+        .defaultIfEmpty(0L);
+  }
+
+  /**
+   * When fewer documents were modified than given, some were updated, deleted or enriched by
+   * another run in between; look up the ones stamped with this run to log only those.
+   */
+  private Mono<List<UUID>> confirmEnriched(List<UUID> ids, long modified, UUID run) {
+    if (modified == ids.size()) {
+      return Mono.just(ids);
+    }
+    return repository.findEnrichedIds(ids, run).collectList();
+  }
+
+  private Mono<List<UUID>> record(List<UUID> ids, LocalDateTime now) {
+    cache.evictAll(ids);
+    enriched.increment(ids.size());
+    if (ids.isEmpty()) {
+      return Mono.just(ids);
+    }
+    List<ConsentLog> logEntries =
+        ids.stream()
+            .map(
+                id ->
+                    ConsentLog.builder()
+                        .id(idGenerator.generateId())
+                        .consentId(id)
+                        .action(ActionType.ENRICHED)
+                        .timestamp(now)
+                        .details("Additional info fetched after the consent was created.")
+                        .build())
+            .toList();
+    return logRepository
+        .appendAll(logEntries)
+        .then()
+        .onErrorResume(
+            error -> {
+              log.error(
+                  "Failed to log action [ENRICHED] for {} consents: {}",
+                  logEntries.size(),
+                  error.getMessage());
+              return Mono.empty();
+            })
+        .thenReturn(ids);
+  }
+
+  /** Enriches whatever is still queued before the application shuts down. */
+  @PreDestroy
+  public void close() {
+    if (Objects.nonNull(sweep)) {
+      sweep.dispose();
+    }
+    if (Objects.nonNull(queue)) {
+      queue.complete();
+      terminated.asMono().block(SHUTDOWN_TIMEOUT);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.config.ExpirationProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.LeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.IdGenerator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Periodically marks ACTIVE consents past their expiration date as EXPIRED. Each run works in
+ * chunks of {@code chunkSize}: the ids come from the (status, expirationDateTime, _id) index, one
+ * updateMulti expires them and one insert logs them. Chunks are spaced by {@code chunkPause} so a
+ * large backlog does not starve online traffic.
+ *
+ * <p>Only the instance holding the {@value #LEASE} lease sweeps. The lease is renewed before every
+ * chunk and released at the end of the run; if it is lost the run stops.
+ */
+@Slf4j
+@Component
+public class ConsentExpirationSweeper {
+
+  static final String LEASE = "consent-expiration-sweeper";
+
+  private final ConsentRepository repository;
+  private final ConsentLogRepository logRepository;
+  private final LeaseRepository leaseRepository;
+  private final ConsentCache cache;
+  private final ExpirationProperties properties;
+  private final IdGenerator idGenerator;
+  private final Counter expired;
+  private final String owner = UUID.randomUUID().toString();
+  private Disposable schedule;
+
+  public ConsentExpirationSweeper(
+      ConsentRepository repository,
+      ConsentLogRepository logRepository,
+      LeaseRepository leaseRepository,
+      ConsentCache cache,
+      ExpirationProperties properties,
+      IdGenerator idGenerator,
+      MeterRegistry registry) {
+    this.repository = repository;
+    this.logRepository = logRepository;
+    this.leaseRepository = leaseRepository;
+    this.cache = cache;
+    this.properties = properties;
+    this.idGenerator = idGenerator;
+    this.expired =
+        Counter.builder("consents.expiration.expired")
+            .description("Consents marked EXPIRED by the sweeper")
+            .register(registry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!properties.enabled()) {
+      return;
+    }
+    schedule =
+        Flux.interval(properties.interval(), properties.interval())
+            .onBackpressureDrop()
+            .concatMap(tick -> sweep(), 0)
+            .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (Objects.nonNull(schedule)) {
+      schedule.dispose();
+    }
+  }
+
+  /** Runs one sweep if this instance can take the lease, emitting how many consents expired. */
+  public Mono<Long> sweep() {
+    LocalDateTime now = LocalDateTime.now();
+    return Mono.usingWhen(
+            acquireLease().filter(Boolean::booleanValue),
+            held -> sweepChunks(now),
+            held -> leaseRepository.release(LEASE, owner))
+        .filter(count -> count > 0)
+        .doOnNext(count -> log.info("Expiration sweep marked {} consents as EXPIRED", count))
+        .onErrorResume(
+            error -> {
+              log.error("Expiration sweep failed: {}", error.getMessage());
+              return Mono.empty();
+            })
+        .defaultIfEmpty(0L);
+  }
+
+  private Mono<Boolean> acquireLease() {
+    return leaseRepository.tryAcquire(LEASE, owner, properties.leaseTtl());
+  }
+
+  private Mono<Long> sweepChunks(LocalDateTime now) {
+    return sweepChunk(now)
+        .expand(
+            chunk ->
+                chunk.found() < properties.chunkSize()
+                    ? Mono.empty()
+                    : Mono.delay(properties.chunkPause())
+                        .then(acquireLease())
+                        .filter(Boolean::booleanValue)
+                        .flatMap(held -> sweepChunk(now)))
+        .map(Chunk::expired)
+        .reduce(0L, Long::sum);
+  }
+
+  private Mono<Chunk> sweepChunk(LocalDateTime now) {
+    return repository
+        .findExpiredIds(now, properties.chunkSize())
+        .collectList()
+        .flatMap(
+            ids ->
+                ids.isEmpty()
+                    ? Mono.just(new Chunk(0, 0))
+                    : repository
+                        .markExpired(ids, now)
+                        .flatMap(modified -> confirmExpired(ids, modified))
+                        .flatMap(expiredIds -> record(expiredIds, now))
+                        .map(expiredIds -> new Chunk(ids.size(), expiredIds.size())));
+  }
+
+  /**
+   * When fewer documents were modified than found, some changed in between; re-read them to log
+   * only the ones that actually expired.
+   */
+  private Mono<List<UUID>> confirmExpired(List<UUID> ids, long modified) {
+    if (modified == ids.size()) {
+      return Mono.just(ids);
+    }
+    return repository
+        .findAllById(ids)
+        .filter(consent -> consent.getStatus() == ConsentStatus.EXPIRED)
+        .map(Consent::getId)
+        .collectList();
+  }
+
+  private Mono<List<UUID>> record(List<UUID> ids, LocalDateTime now) {
+    cache.evictAll(ids);
+    expired.increment(ids.size());
+    if (ids.isEmpty()) {
+      return Mono.just(ids);
+    }
+    List<ConsentLog> logEntries =
+        ids.stream()
+            .map(
+                id ->
+                    ConsentLog.builder()
+                        .id(idGenerator.generateId())
+                        .consentId(id)
+                        .action(ActionType.EXPIRED)
+                        .timestamp(now)
+                        .details("Consent expired by the expiration sweeper.")
+                        .build())
+            .toList();
+    return logRepository
+        .appendAll(logEntries)
+        .then()
+        .onErrorResume(
+            error -> {
+              log.error(
+                  "Failed to log action [EXPIRED] for {} consents: {}",
+                  logEntries.size(),
+                  error.getMessage());
+              return Mono.empty();
+            })
+        .thenReturn(ids);
+  }
+
+  private record Chunk(int found, int expired) {}
+}
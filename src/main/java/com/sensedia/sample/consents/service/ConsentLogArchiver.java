@@ -0,0 +1,185 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.config.RetentionProperties;
+import com.sensedia.sample.consents.repository.ConsentLogBuckets;
+import com.sensedia.sample.consents.repository.ConsentLogStorage;
+import com.sensedia.sample.consents.repository.LeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Moves monthly audit buckets older than {@code keep} out of MongoDB. Each bucket is written to
+ * {@code archiveDirectory/<bucket>.ndjson.gz}, one extended JSON document per line, and dropped
+ * only once the file is complete. The file is written under a {@code .part} name and renamed at the
+ * end, so a failed run leaves no archive that looks finished and the bucket is retried.
+ *
+ * <p>Only runs with {@code MONTHLY} storage, and only on the instance holding the {@value #LEASE}
+ * lease, which is renewed before every bucket.
+ */
+@Slf4j
+@Component
+public class ConsentLogArchiver {
+
+  static final String LEASE = "consent-log-archiver";
+
+  private static final int READ_BATCH_SIZE = 1000;
+  private static final String EXTENSION = ".ndjson.gz";
+  private static final String PART_SUFFIX = ".part";
+  private static final JsonWriterSettings JSON =
+      JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+  private final ConsentLogBuckets buckets;
+  private final LeaseRepository leaseRepository;
+  private final RetentionProperties properties;
+  private final Counter archived;
+  private final String owner = UUID.randomUUID().toString();
+  private Disposable schedule;
+
+  public ConsentLogArchiver(
+      ConsentLogBuckets buckets,
+      LeaseRepository leaseRepository,
+      RetentionProperties properties,
+      MeterRegistry registry) {
+    this.buckets = buckets;
+    this.leaseRepository = leaseRepository;
+    this.properties = properties;
+    this.archived =
+        Counter.builder("consents.audit.archived")
+            .description("Audit entries archived to files and dropped from MongoDB")
+            .register(registry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!properties.enabled()) {
+      return;
+    }
+    if (buckets.storage() != ConsentLogStorage.MONTHLY) {
+      log.warn("Audit retention is enabled but only applies to MONTHLY storage; not scheduling it");
+      return;
+    }
+    schedule =
+        Flux.interval(properties.interval(), properties.interval())
+            .onBackpressureDrop()
+            .concatMap(tick -> archiveExpired(), 0)
+            .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (Objects.nonNull(schedule)) {
+      schedule.dispose();
+    }
+  }
+
+  /** Archives and drops every expired bucket if this instance can take the lease. */
+  public Mono<Long> archiveExpired() {
+    LocalDateTime cutoff = LocalDateTime.now().minus(properties.keep());
+    return Mono.usingWhen(
+            acquireLease().filter(Boolean::booleanValue),
+            held ->
+                buckets
+                    .bucketsBefore(cutoff)
+                    .concatMap(bucket -> renewLease().then(archive(bucket)))
+                    .reduce(0L, Long::sum),
+            held -> leaseRepository.release(LEASE, owner))
+        .onErrorResume(
+            error -> {
+              log.error("Audit archival failed: {}", error.getMessage());
+              return Mono.empty();
+            })
+        .defaultIfEmpty(0L);
+  }
+
+  private Mono<Boolean> acquireLease() {
+    return leaseRepository.tryAcquire(LEASE, owner, properties.leaseTtl());
+  }
+
+  private Mono<Void> renewLease() {
+    return acquireLease()
+        .filter(Boolean::booleanValue)
+        .switchIfEmpty(Mono.error(new IllegalStateException("Lost the " + LEASE + " lease")))
+        .then();
+  }
+
+  private Mono<Long> archive(String bucket) {
+    Path target = properties.archiveDirectory().resolve(bucket + EXTENSION);
+    Path part = properties.archiveDirectory().resolve(bucket + EXTENSION + PART_SUFFIX);
+    return Mono.using(
+            () -> open(part),
+            writer ->
+                buckets
+                    .documents(bucket, READ_BATCH_SIZE)
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(document -> writeLine(writer, document))
+                    .count(),
+            ConsentLogArchiver::close)
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(
+            count ->
+                Mono.fromCallable(
+                        () ->
+                            Files.move(
+                                part,
+                                target,
+                                StandardCopyOption.ATOMIC_MOVE,
+                                StandardCopyOption.REPLACE_EXISTING))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(buckets.drop(bucket))
+                    .thenReturn(count))
+        .doOnNext(
+            count -> {
+              archived.increment(count);
+              log.info("Archived {} audit entries from {} to {}", count, bucket, target);
+            });
+  }
+
+  private static Writer open(Path part) throws IOException {
+    Files.createDirectories(part.getParent());
+    return new BufferedWriter(
+        new OutputStreamWriter(
+            new GZIPOutputStream(Files.newOutputStream(part)), StandardCharsets.UTF_8));
+  }
+
+  private static void writeLine(Writer writer, Document document) {
+    try {
+      writer.write(document.toJson(JSON));
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void close(Writer writer) {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.dto.ConsentLogResponseDTO;
+import com.sensedia.sample.consents.dto.PageDTO;
+import com.sensedia.sample.consents.mapper.ConsentLogMapper;
+import com.sensedia.sample.consents.repository.ConsentLogCursor;
+import com.sensedia.sample.consents.repository.ConsentLogFilter;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/** Reads the audit trail in chronological order, by keyset pages or as one stream. */
+@Service
+@RequiredArgsConstructor
+public class ConsentLogService {
+
+  private final ConsentLogRepository repository;
+  private final ConsentLogMapper mapper;
+
+  public Mono<PageDTO<ConsentLogResponseDTO>> getAllAfter(
+      ConsentLogFilter filter, String cursor, int size) {
+    return Mono.fromCallable(() -> Optional.ofNullable(cursor).map(ConsentLogCursor::decode))
+        .flatMap(
+            position ->
+                repository.findAllAfter(filter, position.orElse(null), size + 1).collectList())
+        .map(
+            entries -> {
+              boolean hasNext = entries.size() > size;
+              List<ConsentLog> content = hasNext ? entries.subList(0, size) : entries;
+              String nextCursor =
+                  hasNext ? ConsentLogCursor.after(content.get(content.size() - 1)).encode() : null;
+              return new PageDTO<>(
+                  content.stream().map(mapper::toResponseDTO).toList(),
+                  null,
+                  content.size(),
+                  null,
+                  null,
+                  hasNext,
+                  nextCursor);
+            });
+  }
+
+  public Flux<ConsentLogResponseDTO> stream(ConsentLogFilter filter) {
+    return repository.streamAll(filter).map(mapper::toResponseDTO);
+  }
+}
@@ -0,0 +1,144 @@
+package com.sensedia.sample.consents.service;
+
+import com.sensedia.sample.consents.config.AuditProperties;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Writes {@link ConsentLog} entries according to the configured {@link AuditDurability}. Unless the
+ * durability is {@code SYNC}, entries go through a bounded queue and are flushed with one insert
+ * per batch of up to {@code maxBatchSize} entries or {@code maxWait}, whichever comes first. When
+ * the queue is full the caller falls back to a direct insert, which pushes back on writers instead
+ * of dropping audit entries.
+ */
+@Slf4j
+@Component
+public class ConsentLogWriter {
+
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final ConsentLogRepository logRepository;
+  private final AuditProperties properties;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Counter overflow;
+  private final DistributionSummary batchSize;
+  private final Sinks.Empty<Void> terminated = Sinks.empty();
+  private FluxSink<PendingLog> queue;
+
+  public ConsentLogWriter(
+      ConsentLogRepository logRepository, AuditProperties properties, MeterRegistry registry) {
+    this.logRepository = logRepository;
+    this.properties = properties;
+    this.overflow =
+        Counter.builder("consents.audit.overflow")
+            .description("Audit entries written directly because the queue was full")
+            .register(registry);
+    this.batchSize =
+        DistributionSummary.builder("consents.audit.batch.size")
+            .description("Audit entries flushed per insert")
+            .register(registry);
+    Gauge.builder("consents.audit.queue.size", pending, AtomicInteger::get)
+        .description("Audit entries waiting to be flushed")
+        .register(registry);
+
+    if (properties.durability() != AuditDurability.SYNC) {
+      start();
+    }
+  }
+
+  private void start() {
+    Flux.<PendingLog>create(sink -> this.queue = sink)
+        .bufferTimeout(properties.maxBatchSize(), properties.maxWait(), true)
+        .concatMap(this::flush)
+        .doFinally(signal -> terminated.tryEmitEmpty())
+        .subscribe();
+  }
+
+  public Mono<Void> write(ConsentLog entry) {
+    return switch (properties.durability()) {
+      case SYNC -> insert(entry);
+      case GROUP_COMMIT ->
+          Mono.defer(
+              () -> {
+                Sinks.One<Void> flushed = Sinks.one();
+                return enqueue(new PendingLog(entry, flushed))
+                    ? flushed.asMono()
+                    : overflowed(entry);
+              });
+      case FIRE_AND_FORGET ->
+          Mono.defer(
+              () -> enqueue(new PendingLog(entry, null)) ? Mono.<Void>empty() : overflowed(entry));
+    };
+  }
+
+  private boolean enqueue(PendingLog pendingLog) {
+    if (pending.incrementAndGet() > properties.queueCapacity()) {
+      pending.decrementAndGet();
+      return false;
+    }
+    queue.next(pendingLog);
+    return true;
+  }
+
+  private Mono<Void> overflowed(ConsentLog entry) {
+    overflow.increment();
+    return insert(entry);
+  }
+
+  private Mono<Void> insert(ConsentLog entry) {
+    return logRepository.append(entry).then();
+  }
+
+  private Mono<Void> flush(List<PendingLog> batch) {
+    batchSize.record(batch.size());
+    return logRepository
+        .appendAll(batch.stream().map(PendingLog::entry).toList())
+        .then()
+        .doOnSuccess(v -> batch.forEach(PendingLog::complete))
+        .onErrorResume(
+            error -> {
+              log.error("Failed to flush {} audit entries: {}", batch.size(), error.getMessage());
+              batch.forEach(pendingLog -> pendingLog.fail(error));
+              return Mono.empty();
+            })
+        .doFinally(signal -> pending.addAndGet(-batch.size()));
+  }
+
+  /** Flushes whatever is still queued before the application shuts down. */
+  @PreDestroy
+  public void close() {
+    if (Objects.nonNull(queue)) {
+      queue.complete();
+      terminated.asMono().block(SHUTDOWN_TIMEOUT);
+    }
+  }
+
+  private record PendingLog(ConsentLog entry, Sinks.One<Void> flushed) {
+    void complete() {
+      if (Objects.nonNull(flushed)) {
+        flushed.tryEmitEmpty();
+      }
+    }
+
+    void fail(Throwable error) {
+      if (Objects.nonNull(flushed)) {
+        flushed.tryEmitError(error);
+      }
+    }
+  }
+}
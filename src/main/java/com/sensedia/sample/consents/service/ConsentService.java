@@ -4,21 +4,39 @@ import com.sensedia.sample.consents.client.ExternalInfoClient;
 import com.sensedia.sample.consents.domain.ActionType;
 import com.sensedia.sample.consents.domain.Consent;
 import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.ConsentCheckStatus;
 import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestUpdateDTO;
 import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckResponseDTO;
 import com.sensedia.sample.consents.dto.PageDTO;
+import com.sensedia.sample.consents.exception.PreconditionFailedException;
 import com.sensedia.sample.consents.exception.ResourceNotFoundException;
 import com.sensedia.sample.consents.mapper.ConsentMapper;
-import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.mapper.CpfMapperUtil;
+import com.sensedia.sample.consents.repository.ConsentCursor;
+import com.sensedia.sample.consents.repository.ConsentFilter;
 import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.ConsentSortField;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.util.IdGenerator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -26,23 +44,65 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class ConsentService {
 
+  private static final int CPF_LENGTH = 11;
+
+  private static final String CREATE = "create";
+  private static final String UPDATE = "update";
+  private static final String DELETE = "delete";
+  private static final String GET_BY_ID = "get_by_id";
+  private static final String GET_ALL_BY = "get_all_by";
+
   private final ConsentMapper mapper;
   private final ConsentRepository repository;
-  private final ConsentLogRepository logRepository;
+  private final ConsentLogWriter logWriter;
   private final ExternalInfoClient externalInfoClient;
+  private final ConsentCounter counter;
+  private final ConsentCache cache;
+  private final ConsentEnricher enricher;
+  private final IdGenerator idGenerator;
+  private final ConsentTimers timers;
 
   public Mono<ConsentResponseDTO> create(ConsentRequestCreateDTO dto) {
-    Consent consent = mapper.toEntity(dto);
-    consent.setId(UUID.randomUUID());
+    return Mono.defer(() -> create(dto, idGenerator.generateId()));
+  }
 
-    return fetchInfoIfNull(consent)
-        .flatMap(repository::save)
-        .flatMap(
-            saved -> saveConsentLog(saved, ActionType.CREATED, "Consent created successfully."))
-        .map(mapper::toResponseDTO);
+  /**
+   * Creates the consent under an id chosen beforehand, so a retry of a failed request can find what
+   * it saved with {@link #findCreated}.
+   */
+  public Mono<ConsentResponseDTO> create(ConsentRequestCreateDTO dto, UUID id) {
+    return timers.operation(
+        CREATE,
+        Mono.defer(
+            () -> {
+              Consent consent = mapper.toEntity(dto);
+              consent.setId(id);
+              return timers
+                  .stage(CREATE, "fetch_info", fetchInfoIfNull(consent))
+                  .flatMap(pending -> timers.stage(CREATE, "save", repository.save(pending)))
+                  .flatMap(
+                      saved ->
+                          timers.stage(
+                              CREATE,
+                              "log",
+                              saveConsentLog(
+                                  saved, ActionType.CREATED, "Consent created successfully.")))
+                  .flatMap(logged -> timers.stage(CREATE, "enrich", enrichIfPending(logged)))
+                  .map(mapper::toResponseDTO);
+            }));
+  }
+
+  /** The consent saved with {@code id}, read from the database and not the cache, or nothing. */
+  public Mono<ConsentResponseDTO> findCreated(UUID id) {
+    return repository.findById(id).map(mapper::toResponseDTO);
   }
 
   private Mono<Consent> fetchInfoIfNull(Consent consent) {
+    if (Objects.isNull(consent.getAdditionalInfo()) && enricher.isDeferred()) {
+      log.info("Deferring the external call for additional info.");
+      consent.setEnrichmentPending(true);
+      return Mono.just(consent);
+    }
     if (Objects.isNull(consent.getAdditionalInfo())) {
       log.info("Fetching additional info from external API.");
       return externalInfoClient
@@ -54,66 +114,302 @@ public class ConsentService {
     return Mono.just(consent);
   }
 
-  public Mono<ConsentResponseDTO> getById(String id) {
-    return getConsent(id).map(mapper::toResponseDTO);
+  private Mono<Consent> enrichIfPending(Consent consent) {
+    return enricher.isDeferred() && Boolean.TRUE.equals(consent.getEnrichmentPending())
+        ? enricher.submit(consent.getId()).thenReturn(consent)
+        : Mono.just(consent);
   }
 
-  public Mono<PageDTO<ConsentResponseDTO>> getAllBy(Pageable pageable) {
-    return repository
-        .findAllBy(pageable)
-        .map(mapper::toResponseDTO)
-        .collectList()
-        .zipWith(repository.count())
-        .map(
-            tuple -> {
-              List<ConsentResponseDTO> content = tuple.getT1();
-              long totalElements = tuple.getT2();
-              int totalPages = (int) Math.ceil((double) totalElements / pageable.getPageSize());
-              return new PageDTO<>(
-                  content, pageable.getPageNumber(), content.size(), totalElements, totalPages);
-            });
+  public Mono<Versioned<ConsentResponseDTO>> getById(String id) {
+    return timers.operation(
+        GET_BY_ID,
+        Mono.just(id)
+            .map(UUID::fromString)
+            .flatMap(
+                uuid ->
+                    timers.stage(
+                        GET_BY_ID,
+                        "find",
+                        cache.get(uuid, repository::findById, repository::findVersionById)))
+            .switchIfEmpty(Mono.error(() -> notFound(id)))
+            .map(this::toVersioned));
+  }
+
+  /**
+   * Emits the current version of a consent from a query answered by an index alone, so an unchanged
+   * consent can be confirmed cheaply. The cache is not trusted for it, since another instance may
+   * have changed the consent.
+   */
+  public Mono<Integer> getVersion(String id) {
+    return Mono.just(id)
+        .map(UUID::fromString)
+        .filter(uuid -> !cache.isKnownAbsent(uuid))
+        .flatMap(repository::findVersionById)
+        .switchIfEmpty(Mono.error(() -> notFound(id)));
   }
 
-  public Mono<ConsentResponseDTO> update(String id, ConsentRequestUpdateDTO dto) {
-    return getConsent(id)
-        .map(existing -> mapper.merge(dto, existing))
-        .flatMap(repository::save)
-        .flatMap(updated -> saveConsentLog(updated, ActionType.UPDATED, "Consent details updated."))
+  public Flux<ConsentResponseDTO> getByCpf(String cpf, ConsentStatus status) {
+    return Mono.fromCallable(() -> normalizeCpf(cpf))
+        .flatMapMany(digits -> repository.findByCpf(digits, status))
         .map(mapper::toResponseDTO);
   }
 
-  public Mono<Void> delete(String id) {
-    return getConsent(id)
+  /**
+   * Reports the consent situation of each CPF from a single query. When a CPF has several consents
+   * the one most favourable to the holder wins: active, then expired, then revoked.
+   */
+  public Mono<ConsentStatusCheckResponseDTO> checkStatus(List<String> cpfs) {
+    return Mono.fromCallable(() -> normalizeCpfs(cpfs))
+        .flatMap(
+            digits -> {
+              LocalDateTime now = LocalDateTime.now();
+              Map<String, ConsentCheckStatus> statuses = new LinkedHashMap<>();
+              digits.forEach(cpf -> statuses.put(cpf, ConsentCheckStatus.ABSENT));
+              return repository
+                  .findStatusesByCpfIn(digits)
+                  .doOnNext(
+                      consent ->
+                          statuses.merge(
+                              consent.getCpf(),
+                              checkStatus(consent, now),
+                              ConsentService::mostFavourable))
+                  .then(Mono.fromSupplier(() -> new ConsentStatusCheckResponseDTO(statuses)));
+            });
+  }
+
+  private static Set<String> normalizeCpfs(List<String> cpfs) {
+    Set<String> digits = new LinkedHashSet<>(cpfs.size());
+    cpfs.forEach(cpf -> digits.add(normalizeCpf(cpf)));
+    return digits;
+  }
+
+  private static ConsentCheckStatus checkStatus(Consent consent, LocalDateTime now) {
+    return switch (consent.getStatus()) {
+      case ACTIVE ->
+          Objects.nonNull(consent.getExpirationDateTime())
+                  && !consent.getExpirationDateTime().isAfter(now)
+              ? ConsentCheckStatus.EXPIRED
+              : ConsentCheckStatus.ACTIVE;
+      case EXPIRED -> ConsentCheckStatus.EXPIRED;
+      case REVOKED -> ConsentCheckStatus.REVOKED;
+    };
+  }
+
+  /** Enum order is ACTIVE, EXPIRED, REVOKED, ABSENT, so the lower ordinal is the better one. */
+  private static ConsentCheckStatus mostFavourable(
+      ConsentCheckStatus current, ConsentCheckStatus candidate) {
+    return candidate.compareTo(current) < 0 ? candidate : current;
+  }
+
+  private static String normalizeCpf(String cpf) {
+    String digits = CpfMapperUtil.onlyDigits(cpf);
+    if (Objects.isNull(digits) || digits.length() != CPF_LENGTH) {
+      throw new IllegalArgumentException("CPF must have " + CPF_LENGTH + " digits: " + cpf);
+    }
+    return digits;
+  }
+
+  public Mono<PageDTO<ConsentResponseDTO>> getAllBy(ConsentFilter filter, Pageable pageable) {
+    Mono<List<Consent>> slice =
+        timers.stage(GET_ALL_BY, "find", repository.findSlice(filter, pageable).collectList());
+    Mono<Optional<Long>> count =
+        timers.stage(
+            GET_ALL_BY,
+            "count",
+            counter.count(filter).map(Optional::of).defaultIfEmpty(Optional.empty()));
+    return timers.operation(
+        GET_ALL_BY,
+        slice
+            .zipWith(count)
+            .map(
+                tuple -> {
+                  List<Consent> consents = tuple.getT1();
+                  boolean hasNext = consents.size() > pageable.getPageSize();
+                  List<Consent> content =
+                      hasNext ? consents.subList(0, pageable.getPageSize()) : consents;
+                  Long totalElements = tuple.getT2().orElse(null);
+                  Integer totalPages =
+                      Objects.isNull(totalElements)
+                          ? null
+                          : (int) Math.ceil((double) totalElements / pageable.getPageSize());
+                  return new PageDTO<>(
+                      toResponseDTOs(content),
+                      pageable.getPageNumber(),
+                      content.size(),
+                      totalElements,
+                      totalPages,
+                      hasNext,
+                      hasNext ? nextCursor(content, pageable.getSort()) : null);
+                }));
+  }
+
+  public Mono<PageDTO<ConsentResponseDTO>> getAllAfter(
+      String cursor, ConsentFilter filter, int size) {
+    return Mono.fromCallable(() -> ConsentCursor.decode(cursor))
         .flatMap(
-            consent ->
+            position ->
                 repository
-                    .delete(consent)
-                    .then(saveConsentLog(consent, ActionType.DELETED, "Consent has been deleted.")))
-        .then();
+                    .findAllAfter(position, filter, size + 1)
+                    .collectList()
+                    .map(
+                        consents -> {
+                          boolean hasNext = consents.size() > size;
+                          List<Consent> content = hasNext ? consents.subList(0, size) : consents;
+                          String nextCursor =
+                              hasNext
+                                  ? ConsentCursor.after(
+                                          content.get(content.size() - 1),
+                                          position.field(),
+                                          position.direction())
+                                      .encode()
+                                  : null;
+                          return new PageDTO<>(
+                              toResponseDTOs(content),
+                              null,
+                              content.size(),
+                              null,
+                              null,
+                              hasNext,
+                              nextCursor);
+                        }));
   }
 
-  private Mono<Consent> getConsent(String id) {
-    return Mono.just(id)
-        .map(UUID::fromString)
-        .flatMap(uuid -> repository.findById(uuid))
-        .switchIfEmpty(
-            Mono.error(new ResourceNotFoundException("Consent not found with id: " + id)));
+  public Flux<ConsentResponseDTO> stream(Sort sort) {
+    return repository.streamAll(sort).map(mapper::toResponseDTO);
+  }
+
+  private List<ConsentResponseDTO> toResponseDTOs(List<Consent> consents) {
+    return consents.stream().map(mapper::toResponseDTO).toList();
+  }
+
+  private String nextCursor(List<Consent> consents, Sort sort) {
+    if (consents.isEmpty()) {
+      return null;
+    }
+    Consent last = consents.get(consents.size() - 1);
+    return sort.stream()
+        .findFirst()
+        .flatMap(
+            order ->
+                ConsentSortField.fromProperty(order.getProperty())
+                    .map(field -> ConsentCursor.after(last, field, order.getDirection()).encode()))
+        .orElse(null);
+  }
+
+  /**
+   * Updates the consent. When {@code expectedVersions} is not null the update only applies if the
+   * consent still has one of them, and fails with {@link PreconditionFailedException} otherwise.
+   */
+  public Mono<Versioned<ConsentResponseDTO>> update(
+      String id, ConsentRequestUpdateDTO dto, Collection<Integer> expectedVersions) {
+    return timers.operation(
+        UPDATE,
+        Mono.just(id)
+            .map(UUID::fromString)
+            .filter(uuid -> !cache.isKnownAbsent(uuid))
+            .flatMap(
+                uuid ->
+                    timers.stage(
+                        UPDATE,
+                        "update",
+                        repository
+                            .updateFields(uuid, toUpdate(dto), expectedVersions)
+                            .switchIfEmpty(preconditionFailedIfExists(uuid, id, expectedVersions))))
+            .switchIfEmpty(Mono.error(() -> notFound(id)))
+            .doOnNext(cache::refresh)
+            .flatMap(
+                updated ->
+                    timers.stage(
+                        UPDATE,
+                        "log",
+                        saveConsentLog(updated, ActionType.UPDATED, "Consent details updated.")))
+            .map(this::toVersioned));
+  }
+
+  /**
+   * A conditional write that matched nothing either found the consent at another version or did not
+   * find it at all; only the first is a failed precondition.
+   */
+  private <T> Mono<T> preconditionFailedIfExists(
+      UUID uuid, String id, Collection<Integer> expectedVersions) {
+    if (Objects.isNull(expectedVersions)) {
+      return Mono.empty();
+    }
+    return repository
+        .existsById(uuid)
+        .filter(Boolean::booleanValue)
+        .flatMap(
+            exists ->
+                Mono.error(
+                    new PreconditionFailedException(
+                        "Consent " + id + " does not match the If-Match version")));
+  }
+
+  private Versioned<ConsentResponseDTO> toVersioned(Consent consent) {
+    return new Versioned<>(mapper.toResponseDTO(consent), consent.getVersion());
+  }
+
+  private static Update toUpdate(ConsentRequestUpdateDTO dto) {
+    Update update = new Update();
+    if (Objects.nonNull(dto.cpf())) {
+      update.set("cpf", CpfMapperUtil.onlyDigits(dto.cpf()));
+    }
+    if (Objects.nonNull(dto.status())) {
+      update.set("status", dto.status());
+    }
+    if (Objects.nonNull(dto.expirationDateTime())) {
+      update.set("expirationDateTime", dto.expirationDateTime());
+    }
+    if (Objects.nonNull(dto.additionalInfo())) {
+      update.set("additionalInfo", dto.additionalInfo()).unset("enrichmentPending");
+    }
+    return update;
+  }
+
+  /** Deletes the consent, under the same {@code expectedVersions} condition as an update. */
+  public Mono<Void> delete(String id, Collection<Integer> expectedVersions) {
+    return timers.operation(
+        DELETE,
+        Mono.just(id)
+            .map(UUID::fromString)
+            .filter(uuid -> !cache.isKnownAbsent(uuid))
+            .flatMap(
+                uuid ->
+                    timers.stage(
+                        DELETE,
+                        "delete",
+                        repository
+                            .findAndDeleteById(uuid, expectedVersions)
+                            .switchIfEmpty(preconditionFailedIfExists(uuid, id, expectedVersions))))
+            .switchIfEmpty(Mono.error(() -> notFound(id)))
+            .doOnNext(deleted -> cache.markAbsent(deleted.getId()))
+            .flatMap(
+                deleted ->
+                    timers.stage(
+                        DELETE,
+                        "log",
+                        saveConsentLog(deleted, ActionType.DELETED, "Consent has been deleted.")))
+            .then());
+  }
+
+  private static ResourceNotFoundException notFound(String id) {
+    return new ResourceNotFoundException("Consent not found with id: " + id);
   }
 
   private Mono<Consent> saveConsentLog(Consent consent, ActionType action, String details) {
     ConsentLog logEntry =
         ConsentLog.builder()
-            .id(UUID.randomUUID())
+            .id(idGenerator.generateId())
             .consentId(consent.getId())
             .action(action)
+            .timestamp(LocalDateTime.now())
             .details(details)
             .build();
 
-    return logRepository
-        .save(logEntry)
+    return logWriter
+        .write(logEntry)
         .doOnSuccess(
-            loggedEntry ->
-                log.info("Logged action [{}] for consent ID [{}]", action, consent.getId()))
+            v -> log.info("Logged action [{}] for consent ID [{}]", action, consent.getId()))
         .doOnError(
             error ->
                 log.error(
@@ -0,0 +1,364 @@
+package com.sensedia.sample.consents.service;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.sensedia.sample.consents.config.StorageMigrationEnvironment;
+import com.sensedia.sample.consents.config.StorageProperties;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import com.sensedia.sample.consents.repository.CompactStorage;
+import com.sensedia.sample.consents.repository.ConsentIndex;
+import com.sensedia.sample.consents.repository.ConsentLogBuckets;
+import com.sensedia.sample.consents.repository.ConsentLogIndex;
+import com.sensedia.sample.consents.repository.LegacyUuids;
+import com.sensedia.sample.consents.repository.StorageFormat;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.conversions.Bson;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rewrites stored consents and log entries into the configured {@link StorageFormat}, for switching
+ * {@code consents.storage.format} on an existing database. Neither format reads the other, so it
+ * runs with the service stopped, from the release that will serve the new format. With {@code
+ * consents.storage.migrate} set the application starts without a web server (see {@link
+ * StorageMigrationEnvironment}) and exits when it is done:
+ *
+ * <pre>java -jar consents.jar --consents.storage.format=COMPACT --consents.storage.migrate=true
+ * </pre>
+ *
+ * <p>Each collection has its secondary indexes dropped, its documents rewritten in batches of
+ * {@code migrationBatchSize} ids by a server-side update pipeline, so no document crosses the
+ * network, and its indexes built again on the new field names. Documents already in the target
+ * format are left alone, so an interrupted run can simply be started again. The document and index
+ * sizes of each collection before and after are logged at the end.
+ *
+ * <p>With {@code spring.data.mongodb.uuid-representation: standard} it also converts UUIDs written
+ * in the legacy Java representation, which the standard one cannot read: documents with a legacy
+ * {@code _id} are copied under the converted id and then removed, in batches, and the idempotency
+ * records, which keep their string keys, are replaced in place.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConsentStorageMigrator implements ApplicationRunner {
+
+  private static final String ID = "_id";
+
+  private final ReactiveMongoTemplate template;
+  private final ConsentLogBuckets buckets;
+  private final StorageProperties properties;
+  private final MongoProperties mongoProperties;
+  private final ApplicationContext context;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!properties.migrate()) {
+      return;
+    }
+    migrate().doOnNext(report -> log.info("{}", report)).blockLast();
+    System.exit(SpringApplication.exit(context));
+  }
+
+  /** Migrates the consents, then every log collection, emitting the report of each. */
+  public Flux<SizeReport> migrate() {
+    StorageFormat target = properties.format();
+    log.info("Migrating stored consents and log entries to the {} format", target);
+    List<Index> consentIndexes =
+        Arrays.stream(ConsentIndex.values()).map(ConsentIndex::toIndex).toList();
+    List<Index> logIndexes =
+        Arrays.stream(ConsentLogIndex.values()).map(ConsentLogIndex::toIndex).toList();
+    return migrate(
+            template.getCollectionName(Consent.class),
+            Consent.class,
+            template.indexOps(Consent.class),
+            consentIndexes,
+            target)
+        .concatWith(
+            buckets
+                .collectionsBetween(null, null)
+                .concatMap(
+                    collection ->
+                        migrate(
+                            collection,
+                            ConsentLog.class,
+                            buckets.indexOps(collection),
+                            logIndexes,
+                            target)))
+        .concatWith(convertIdempotencyRecords().then(Mono.empty()));
+  }
+
+  private Mono<SizeReport> migrate(
+      String name,
+      Class<?> type,
+      ReactiveIndexOperations indexOps,
+      List<Index> indexes,
+      StorageFormat target) {
+    return template
+        .collectionExists(name)
+        .filter(Boolean::booleanValue)
+        .flatMap(exists -> template.getCollection(name))
+        .flatMap(
+            collection ->
+                stats(collection)
+                    .flatMap(
+                        before ->
+                            Mono.from(collection.dropIndexes())
+                                .then(convertLegacyIds(collection))
+                                .then(rewrite(collection, type, target))
+                                .flatMap(
+                                    rewritten ->
+                                        Flux.fromIterable(indexes)
+                                            .concatMap(indexOps::ensureIndex)
+                                            .then(flushToDisk())
+                                            .then(stats(collection))
+                                            .map(
+                                                after ->
+                                                    new SizeReport(
+                                                        name, rewritten, before, after)))));
+  }
+
+  /**
+   * Walks the collection in {@code _id} order, the one index left, and rewrites each batch of ids
+   * that still holds documents in the other format.
+   */
+  private Mono<Long> rewrite(
+      MongoCollection<Document> collection, Class<?> type, StorageFormat target) {
+    List<Document> pipeline = CompactStorage.rewritePipeline(type, target);
+    Map<String, String> names = CompactStorage.fieldNames(type);
+    Bson inOtherFormat =
+        Filters.or(
+            (target == StorageFormat.COMPACT ? names.keySet() : names.values())
+                .stream().map(Filters::exists).toList());
+    String collectionName = collection.getNamespace().getCollectionName();
+    return nextIds(collection, null)
+        .expand(
+            ids ->
+                ids.size() < properties.migrationBatchSize()
+                    ? Mono.empty()
+                    : nextIds(collection, ids.get(ids.size() - 1)))
+        .filter(ids -> !ids.isEmpty())
+        .concatMap(
+            ids ->
+                Mono.from(
+                        collection.updateMany(
+                            Filters.and(Filters.in(ID, ids), inOtherFormat), pipeline))
+                    .map(UpdateResult::getModifiedCount))
+        .scan(Long::sum)
+        .doOnNext(
+            rewritten -> log.debug("Rewrote {} documents of {} so far", rewritten, collectionName))
+        .last(0L);
+  }
+
+  private boolean convertsLegacyUuids() {
+    return mongoProperties.getUuidRepresentation() == UuidRepresentation.STANDARD;
+  }
+
+  /**
+   * The {@code _id} cannot be updated, so each batch of legacy documents is inserted again under
+   * the converted ids and then deleted. Copies left by an interrupted run collide on insert and are
+   * skipped; the legacy originals are removed all the same.
+   */
+  private Mono<Long> convertLegacyIds(MongoCollection<Document> collection) {
+    if (!convertsLegacyUuids()) {
+      return Mono.just(0L);
+    }
+    MongoCollection<BsonDocument> raw = collection.withDocumentClass(BsonDocument.class);
+    Bson legacyIds = LegacyUuids.idsOf(BsonBinarySubType.UUID_LEGACY);
+    int batchSize = properties.migrationBatchSize();
+    Mono<Integer> batch =
+        Mono.defer(
+            () ->
+                Flux.from(raw.find(legacyIds).limit(batchSize))
+                    .collectList()
+                    .flatMap(
+                        documents -> documents.isEmpty() ? Mono.just(0) : convert(raw, documents)));
+    String collectionName = collection.getNamespace().getCollectionName();
+    return batch
+        .expand(converted -> converted < batchSize ? Mono.empty() : batch)
+        .reduce(0L, Long::sum)
+        .doOnNext(
+            converted -> log.info("Converted {} legacy UUID ids of {}", converted, collectionName));
+  }
+
+  private static Mono<Integer> convert(
+      MongoCollection<BsonDocument> collection, List<BsonDocument> documents) {
+    return Mono.from(
+            collection.insertMany(
+                documents.stream().map(LegacyUuids::toStandard).toList(),
+                new InsertManyOptions().ordered(false)))
+        .then()
+        .onErrorResume(
+            MongoBulkWriteException.class,
+            error ->
+                error.getWriteErrors().stream()
+                        .allMatch(
+                            writeError ->
+                                ErrorCategory.fromErrorCode(writeError.getCode())
+                                    == ErrorCategory.DUPLICATE_KEY)
+                    ? Mono.empty()
+                    : Mono.error(error))
+        .then(
+            Mono.from(
+                collection.deleteMany(
+                    Filters.in(ID, documents.stream().map(document -> document.get(ID)).toList()))))
+        .thenReturn(documents.size());
+  }
+
+  /** Idempotency records live a day at most, so they are simply read in full. */
+  private Mono<Long> convertIdempotencyRecords() {
+    if (!convertsLegacyUuids()) {
+      return Mono.just(0L);
+    }
+    return template
+        .getCollection(template.getCollectionName(IdempotencyRecord.class))
+        .map(collection -> collection.withDocumentClass(BsonDocument.class))
+        .flatMapMany(
+            collection ->
+                Flux.from(collection.find())
+                    .concatMap(
+                        document -> {
+                          BsonDocument converted = LegacyUuids.toStandard(document);
+                          return converted.equals(document)
+                              ? Mono.empty()
+                              : Mono.from(
+                                  collection.replaceOne(
+                                      Filters.eq(ID, document.get(ID)), converted));
+                        }))
+        .count()
+        .doOnNext(
+            converted ->
+                log.info("Converted the legacy UUIDs of {} idempotency records", converted));
+  }
+
+  private Mono<List<Object>> nextIds(MongoCollection<Document> collection, Object after) {
+    Bson filter = Objects.isNull(after) ? new Document() : Filters.gt(ID, after);
+    return Flux.from(
+            collection
+                .find(filter)
+                .projection(Projections.include(ID))
+                .sort(Sorts.ascending(ID))
+                .limit(properties.migrationBatchSize()))
+        .map(document -> document.get(ID))
+        .collectList();
+  }
+
+  /**
+   * Sizes on disk are only updated by a checkpoint. Needs the fsync privilege; without it the
+   * storage and index sizes may lag behind.
+   */
+  private Mono<Void> flushToDisk() {
+    return template
+        .getMongoDatabaseFactory()
+        .getMongoDatabase("admin")
+        .flatMap(admin -> Mono.from(admin.runCommand(new Document("fsync", 1))))
+        .onErrorResume(
+            error -> {
+              log.warn("Could not flush to disk before measuring: {}", error.getMessage());
+              return Mono.empty();
+            })
+        .then();
+  }
+
+  private static Mono<CollectionStats> stats(MongoCollection<Document> collection) {
+    return Flux.from(
+            collection.aggregate(
+                List.of(new Document("$collStats", new Document("storageStats", new Document())))))
+        .next()
+        .map(stats -> CollectionStats.of(stats.get("storageStats", Document.class)));
+  }
+
+  /**
+   * Figures from {@code $collStats}. The data size and average document size are those of the
+   * uncompressed documents; the storage size is the compressed file, which keeps the space of
+   * rewritten documents for reuse until the collection is compacted.
+   */
+  public record CollectionStats(
+      long documents,
+      long averageDocumentSize,
+      long dataSize,
+      long storageSize,
+      long indexSize,
+      Map<String, Long> indexSizes) {
+
+    static CollectionStats of(Document storageStats) {
+      Map<String, Long> indexSizes = new LinkedHashMap<>();
+      storageStats
+          .get("indexSizes", new Document())
+          .forEach((index, size) -> indexSizes.put(index, ((Number) size).longValue()));
+      return new CollectionStats(
+          number(storageStats, "count"),
+          number(storageStats, "avgObjSize"),
+          number(storageStats, "size"),
+          number(storageStats, "storageSize"),
+          number(storageStats, "totalIndexSize"),
+          indexSizes);
+    }
+
+    private static long number(Document document, String key) {
+      Number value = document.get(key, Number.class);
+      return Objects.isNull(value) ? 0 : value.longValue();
+    }
+  }
+
+  /** Sizes of one collection before and after the migration. */
+  public record SizeReport(
+      String collection, long rewritten, CollectionStats before, CollectionStats after) {
+
+    @Override
+    public String toString() {
+      StringBuilder report =
+          new StringBuilder()
+              .append(collection)
+              .append(": rewrote ")
+              .append(rewritten)
+              .append(" of ")
+              .append(after.documents())
+              .append(" documents\n")
+              .append(
+                  String.format("  %-28s %14s %14s %8s%n", "bytes", "before", "after", "change"));
+      row(report, "average document", before.averageDocumentSize(), after.averageDocumentSize());
+      row(report, "data", before.dataSize(), after.dataSize());
+      row(report, "storage", before.storageSize(), after.storageSize());
+      row(report, "indexes", before.indexSize(), after.indexSize());
+      after
+          .indexSizes()
+          .forEach(
+              (index, size) ->
+                  row(report, "  " + index, before.indexSizes().getOrDefault(index, 0L), size));
+      return report.toString().stripTrailing();
+    }
+
+    private static void row(StringBuilder report, String label, long before, long after) {
+      String change =
+          before == 0 ? "" : String.format("%+.1f%%", 100.0 * (after - before) / before);
+      report.append(String.format("  %-28s %14d %14d %8s%n", label, before, after, change));
+    }
+  }
+}
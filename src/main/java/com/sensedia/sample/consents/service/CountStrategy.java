@@ -0,0 +1,8 @@
+package com.sensedia.sample.consents.service;
+
+public enum CountStrategy {
+  EXACT,
+  ESTIMATED,
+  CACHED,
+  NONE
+}
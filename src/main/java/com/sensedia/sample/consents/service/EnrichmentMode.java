@@ -0,0 +1,13 @@
+package com.sensedia.sample.consents.service;
+
+/** When a consent created without additional info gets it from the external API. */
+public enum EnrichmentMode {
+  /** Before the consent is saved; the create waits for the external call. */
+  INLINE,
+
+  /**
+   * After the consent is saved with {@code enrichmentPending} set and no info; the create returns
+   * at once and {@link ConsentEnricher} fills the info in later.
+   */
+  DEFERRED
+}
@@ -0,0 +1,10 @@
+package com.sensedia.sample.consents.service;
+
+/** How ids of new consents and log entries are generated. */
+public enum IdStrategy {
+  /** Random UUIDv4; inserts land anywhere in the {@code _id} index. */
+  RANDOM,
+
+  /** UUIDv7 from {@link TimeOrderedIdGenerator}; inserts land on the right edge of the index. */
+  TIME_ORDERED
+}
@@ -0,0 +1,252 @@
+package com.sensedia.sample.consents.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sensedia.sample.consents.config.IdempotencyProperties;
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.exception.IdempotencyConflictException;
+import com.sensedia.sample.consents.repository.IdempotencyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+import org.springframework.util.IdGenerator;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+/**
+ * Runs a create at most once per {@code Idempotency-Key}. The first request claims the key by
+ * inserting it into {@code idempotency_keys}, runs the create and stores its response; repeats get
+ * that response back without running anything.
+ *
+ * <p>Repeats that arrive while the first request is still running wait for it instead of racing: on
+ * this instance they join its result directly, on other instances they poll the stored record every
+ * {@code pollInterval} for up to {@code waitTimeout}. Recently completed keys are kept in memory
+ * ({@code cache=idempotency-keys}) so most repeats never reach MongoDB.
+ *
+ * <p>The id of the consent is stored with the claim before the create runs. If the create fails the
+ * record is kept and the claim released, since the consent may already be saved: the next repeat
+ * takes the key over, returns the consent saved with that id if there is one, and only creates it
+ * otherwise. A claim held for longer than {@code claimLease}, whose request died before completing
+ * or releasing it, is taken over the same way.
+ *
+ * <p>Requests are counted in {@code consents.idempotency} tagged {@code
+ * result=new|replayed|joined|resumed}.
+ */
+@Component
+public class IdempotencyService {
+
+  private static final int MAX_KEY_LENGTH = 255;
+
+  private final IdempotencyRepository repository;
+  private final IdempotencyProperties properties;
+  private final IdGenerator idGenerator;
+  private final Cache<String, Completed> recent;
+  private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+  private final Counter created;
+  private final Counter replayed;
+  private final Counter joined;
+  private final Counter resumed;
+
+  public IdempotencyService(
+      IdempotencyRepository repository,
+      IdempotencyProperties properties,
+      IdGenerator idGenerator,
+      MeterRegistry registry) {
+    this.repository = repository;
+    this.properties = properties;
+    this.idGenerator = idGenerator;
+    this.recent =
+        Caffeine.newBuilder()
+            .maximumSize(properties.recentMaximumSize())
+            .expireAfterWrite(properties.recentTtl())
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(registry, recent, "idempotency-keys");
+    this.created = requests(registry, "new");
+    this.replayed = requests(registry, "replayed");
+    this.joined = requests(registry, "joined");
+    this.resumed = requests(registry, "resumed");
+  }
+
+  private static Counter requests(MeterRegistry registry, String result) {
+    return Counter.builder("consents.idempotency")
+        .description("Create requests carrying an Idempotency-Key, by how they were served")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  /**
+   * Runs {@code create}, which saves the consent with the id it is given, at most once for the key.
+   * {@code find} returns the consent saved with an id, or nothing, for resuming after a failure.
+   */
+  public Mono<ConsentResponseDTO> execute(
+      String key,
+      ConsentRequestCreateDTO request,
+      Function<UUID, Mono<ConsentResponseDTO>> create,
+      Function<UUID, Mono<ConsentResponseDTO>> find) {
+    Work work = new Work(create, find);
+    return Mono.defer(
+        () -> {
+          if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(
+                new IllegalArgumentException(
+                    "Idempotency-Key must have between 1 and " + MAX_KEY_LENGTH + " characters"));
+          }
+          String fingerprint = fingerprint(request);
+          Completed completed = recent.getIfPresent(key);
+          if (Objects.nonNull(completed)) {
+            replayed.increment();
+            return replay(key, fingerprint, completed.fingerprint(), completed.response());
+          }
+
+          Sinks.One<ConsentResponseDTO> result = Sinks.one();
+          InFlight mine = new InFlight(fingerprint, result.asMono());
+          InFlight current = inFlight.putIfAbsent(key, mine);
+          if (Objects.nonNull(current)) {
+            joined.increment();
+            return checkFingerprint(key, fingerprint, current.fingerprint())
+                .then(current.response());
+          }
+          // Detached from the caller, so a client that disconnects does not abort the create for
+          // the repeats waiting on it.
+          claimOrAwait(key, fingerprint, work)
+              .doOnNext(response -> recent.put(key, new Completed(fingerprint, response)))
+              .doFinally(signal -> inFlight.remove(key, mine))
+              .subscribe(result::tryEmitValue, result::tryEmitError, result::tryEmitEmpty);
+          return mine.response();
+        });
+  }
+
+  private Mono<ConsentResponseDTO> claimOrAwait(String key, String fingerprint, Work work) {
+    UUID consentId = idGenerator.generateId();
+    return repository
+        .claim(key, fingerprint, consentId)
+        .flatMap(
+            claimed -> {
+              if (!claimed) {
+                return awaitStored(key, fingerprint, work);
+              }
+              created.increment();
+              return finish(key, work.create().apply(consentId));
+            });
+  }
+
+  /**
+   * Polls the record claimed by another request until it holds a response, or until its claim is
+   * released or outlives the lease and this one takes it over. If the record is gone, this one
+   * claims the key in turn.
+   */
+  private Mono<ConsentResponseDTO> awaitStored(String key, String fingerprint, Work work) {
+    return repository
+        .findById(key)
+        .flatMap(
+            stored -> {
+              if (Objects.nonNull(stored.getResponse())) {
+                return Mono.just(stored);
+              }
+              Instant claimedBefore = Instant.now().minus(properties.claimLease());
+              Mono<IdempotencyRecord> takeOver =
+                  Objects.isNull(stored.getClaimedAt())
+                          || !stored.getClaimedAt().isAfter(claimedBefore)
+                      ? repository.takeOver(key, claimedBefore)
+                      : Mono.empty();
+              return checkFingerprint(key, fingerprint, stored.getFingerprint())
+                  .then(takeOver)
+                  .switchIfEmpty(Mono.error(StillInProgress::new));
+            })
+        .retryWhen(
+            Retry.fixedDelay(Long.MAX_VALUE, properties.pollInterval())
+                .filter(StillInProgress.class::isInstance))
+        .timeout(
+            properties.waitTimeout(),
+            Mono.error(
+                () ->
+                    new IdempotencyConflictException(
+                        "A request with Idempotency-Key " + key + " is still in progress")))
+        .flatMap(
+            stored -> {
+              if (Objects.nonNull(stored.getResponse())) {
+                replayed.increment();
+                return replay(key, fingerprint, stored.getFingerprint(), stored.getResponse());
+              }
+              resumed.increment();
+              return resume(key, stored, work);
+            })
+        .switchIfEmpty(Mono.defer(() -> claimOrAwait(key, fingerprint, work)));
+  }
+
+  /**
+   * Returns the consent the failed request saved, or creates it with the id it was meant to have.
+   */
+  private Mono<ConsentResponseDTO> resume(String key, IdempotencyRecord stored, Work work) {
+    UUID consentId = Objects.requireNonNullElseGet(stored.getConsentId(), idGenerator::generateId);
+    return finish(
+        key,
+        work.find()
+            .apply(consentId)
+            .switchIfEmpty(Mono.defer(() -> work.create().apply(consentId))));
+  }
+
+  /**
+   * Stores the response. On failure the claim is released but not removed: the consent may be saved
+   * already, and whoever retries the key must find it rather than create another one.
+   */
+  private Mono<ConsentResponseDTO> finish(String key, Mono<ConsentResponseDTO> result) {
+    return result
+        .flatMap(response -> repository.complete(key, response).thenReturn(response))
+        .onErrorResume(error -> repository.release(key).onErrorComplete().then(Mono.error(error)));
+  }
+
+  private static Mono<ConsentResponseDTO> replay(
+      String key, String fingerprint, String storedFingerprint, ConsentResponseDTO response) {
+    return checkFingerprint(key, fingerprint, storedFingerprint).thenReturn(response);
+  }
+
+  private static Mono<Void> checkFingerprint(
+      String key, String fingerprint, String storedFingerprint) {
+    return fingerprint.equals(storedFingerprint)
+        ? Mono.empty()
+        : Mono.error(
+            new IdempotencyConflictException(
+                "Idempotency-Key " + key + " was already used for a different request"));
+  }
+
+  /** Records render every component, so equal request bodies always hash the same. */
+  private static String fingerprint(ConsentRequestCreateDTO request) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of()
+          .formatHex(digest.digest(request.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private record Work(
+      Function<UUID, Mono<ConsentResponseDTO>> create,
+      Function<UUID, Mono<ConsentResponseDTO>> find) {}
+
+  private record InFlight(String fingerprint, Mono<ConsentResponseDTO> response) {}
+
+  private record Completed(String fingerprint, ConsentResponseDTO response) {}
+
+  private static class StillInProgress extends RuntimeException {
+    StillInProgress() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.sensedia.sample.consents.service;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.util.IdGenerator;
+
+/**
+ * Generates UUIDv7 (RFC 9562). The first 48 bits are the Unix time in milliseconds, so ids created
+ * later sort after earlier ones and new documents are appended to the right edge of the {@code _id}
+ * index instead of touching a random page of it.
+ *
+ * <p>The 12 {@code rand_a} bits are a counter that orders ids created in the same millisecond. The
+ * timestamp and the counter advance together in one {@link AtomicLong}, so ids from a generator are
+ * strictly increasing without locking, even if the clock steps back. Past 4096 ids in a millisecond
+ * the counter carries into the timestamp, which then runs slightly ahead of the clock until it
+ * catches up. The other 62 bits come from {@link SecureRandom}, as in {@link UUID#randomUUID()}.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+  private static final int COUNTER_BITS = 12;
+  private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+  private static final long VERSION = 0x7000L;
+  private static final long VARIANT = 0x8000_0000_0000_0000L;
+  private static final long RAND_B_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+  private final LongSupplier clock;
+  private final Random random;
+  private final AtomicLong last = new AtomicLong();
+
+  public TimeOrderedIdGenerator() {
+    this(System::currentTimeMillis, new SecureRandom());
+  }
+
+  TimeOrderedIdGenerator(LongSupplier clock, Random random) {
+    this.clock = clock;
+    this.random = random;
+  }
+
+  @Override
+  public UUID generateId() {
+    long next =
+        last.accumulateAndGet(
+            clock.getAsLong() << COUNTER_BITS, (previous, now) -> Math.max(previous + 1, now));
+    long mostSignificant = (next >>> COUNTER_BITS) << 16 | VERSION | (next & COUNTER_MASK);
+    long leastSignificant = (random.nextLong() & RAND_B_MASK) | VARIANT;
+    return new UUID(mostSignificant, leastSignificant);
+  }
+}
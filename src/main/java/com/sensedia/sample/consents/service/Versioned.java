@@ -0,0 +1,4 @@
+package com.sensedia.sample.consents.service;
+
+/** A response body together with the {@code version} of the consent it was built from. */
+public record Versioned<T>(T body, Integer version) {}
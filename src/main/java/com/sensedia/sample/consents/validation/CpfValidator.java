@@ -0,0 +1,14 @@
+package com.sensedia.sample.consents.validation;
+
+import com.sensedia.sample.consents.mapper.CpfCodec;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import java.util.Objects;
+
+public class CpfValidator implements ConstraintValidator<ValidCpf, CharSequence> {
+
+  @Override
+  public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+    return Objects.isNull(value) || CpfCodec.isValid(value);
+  }
+}
@@ -0,0 +1,32 @@
+package com.sensedia.sample.consents.validation;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.ElementType.RECORD_COMPONENT;
+import static java.lang.annotation.ElementType.TYPE_USE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * A valid CPF, formatted or not. Accepts the same values as Hibernate Validator's {@code @CPF} and
+ * reports the same message, but checks them with {@link
+ * com.sensedia.sample.consents.mapper.CpfCodec} in one pass instead of a dozen regular expressions
+ * followed by the check digit validators. Null is valid.
+ */
+@Documented
+@Constraint(validatedBy = CpfValidator.class)
+@Target({FIELD, PARAMETER, RECORD_COMPONENT, TYPE_USE})
+@Retention(RUNTIME)
+public @interface ValidCpf {
+
+  String message() default "{org.hibernate.validator.constraints.br.CPF.message}";
+
+  Class<?>[] groups() default {};
+
+  Class<? extends Payload>[] payload() default {};
+}
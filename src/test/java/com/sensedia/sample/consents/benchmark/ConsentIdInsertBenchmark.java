@@ -0,0 +1,143 @@
+package com.sensedia.sample.consents.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.service.IdStrategy;
+import com.sensedia.sample.consents.service.TimeOrderedIdGenerator;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.JdkIdGenerator;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Inserts the same consents keyed by each {@link IdStrategy} into their own collection and reports
+ * insert throughput and the size of the {@code _id} index. Random ids split pages all over the
+ * index and leave them half full; time-ordered ids only ever append to the last page. The
+ * throughput gap widens once the index no longer fits in the WiredTiger cache, so raise {@code
+ * benchmark.documents} well past it for numbers that resemble production.
+ *
+ * <p>Skipped unless run explicitly:
+ *
+ * <pre>./mvnw test -Dtest=ConsentIdInsertBenchmark -Dbenchmark=true -Dbenchmark.documents=1000000
+ * </pre>
+ */
+@Slf4j
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConsentIdInsertBenchmark {
+
+  private static final int DOCUMENTS = Integer.getInteger("benchmark.documents", 200_000);
+  private static final int BATCH_SIZE = 1_000;
+  private static final int CONCURRENCY = 4;
+
+  @Container
+  static MongoDBContainer mongoDBContainer =
+      new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+  private static MongoClient client;
+  private static ReactiveMongoTemplate template;
+
+  @BeforeAll
+  static void connect() {
+    client =
+        MongoClients.create(
+            MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoDBContainer.getReplicaSetUrl()))
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .build());
+    template = new ReactiveMongoTemplate(client, "benchmark");
+  }
+
+  @AfterAll
+  static void close() {
+    client.close();
+  }
+
+  @Test
+  @DisplayName("Time-ordered ids should build a smaller _id index than random ids")
+  void compareIdStrategies() {
+    Result random = run(IdStrategy.RANDOM, new JdkIdGenerator());
+    Result timeOrdered = run(IdStrategy.TIME_ORDERED, new TimeOrderedIdGenerator());
+
+    log.info(
+        "\n{} documents\n{}\n{}\n{}",
+        DOCUMENTS,
+        String.format("%-13s %12s %14s", "strategy", "inserts/s", "_id index (B)"),
+        random,
+        timeOrdered);
+    assertTrue(timeOrdered.idIndexBytes() <= random.idIndexBytes());
+  }
+
+  private Result run(IdStrategy strategy, IdGenerator idGenerator) {
+    String collection = "consents_" + strategy.name().toLowerCase();
+    LocalDateTime now = LocalDateTime.now();
+    long start = System.nanoTime();
+    Flux.range(0, DOCUMENTS)
+        .map(i -> consent(idGenerator, now, i))
+        .buffer(BATCH_SIZE)
+        .flatMap(batch -> template.insert(batch, collection).then(), CONCURRENCY)
+        .blockLast();
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    // Flushes to disk so the storage stats reflect the pages written, not just the cache.
+    Mono.from(client.getDatabase("admin").runCommand(new Document("fsync", 1))).block();
+    Document storage =
+        template
+            .getCollection(collection)
+            .flatMapMany(
+                c ->
+                    c.aggregate(
+                        List.of(
+                            new Document(
+                                "$collStats", new Document("storageStats", new Document())))))
+            .next()
+            .map(stats -> stats.get("storageStats", Document.class))
+            .block();
+
+    return new Result(
+        strategy,
+        DOCUMENTS * 1_000_000_000.0 / elapsed.toNanos(),
+        storage.get("indexSizes", Document.class).get("_id_", Number.class).longValue());
+  }
+
+  private static Consent consent(IdGenerator idGenerator, LocalDateTime now, int i) {
+    return Consent.builder()
+        .id(idGenerator.generateId())
+        .cpf(String.format("%011d", i))
+        .status(ConsentStatus.ACTIVE)
+        .creationDateTime(now)
+        .expirationDateTime(now.plusDays(365))
+        .additionalInfo("Benchmark")
+        .version(0)
+        .build();
+  }
+
+  private record Result(IdStrategy strategy, double insertsPerSecond, long idIndexBytes) {
+    @Override
+    public String toString() {
+      return String.format("%-13s %12.0f %14d", strategy, insertsPerSecond, idIndexBytes);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.sensedia.sample.consents.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.sensedia.sample.consents.config.AuditProperties;
+import com.sensedia.sample.consents.config.MongoStorageConfig;
+import com.sensedia.sample.consents.config.StorageProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.mapper.CpfCodec;
+import com.sensedia.sample.consents.repository.ConsentIndex;
+import com.sensedia.sample.consents.repository.ConsentLogBuckets;
+import com.sensedia.sample.consents.repository.ConsentLogIndex;
+import com.sensedia.sample.consents.repository.ConsentLogStorage;
+import com.sensedia.sample.consents.repository.StorageFormat;
+import com.sensedia.sample.consents.service.AuditDurability;
+import com.sensedia.sample.consents.service.ConsentStorageMigrator;
+import com.sensedia.sample.consents.service.ConsentStorageMigrator.SizeReport;
+import com.sensedia.sample.consents.service.TimeOrderedIdGenerator;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.util.IdGenerator;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+
+/**
+ * Stores consents and log entries in the standard format with their indexes, migrates them with
+ * {@link ConsentStorageMigrator} to the compact one and reports the document and index sizes of
+ * both collections before and after. Then reads the consents back through the compact mapping to
+ * check nothing was lost.
+ *
+ * <p>Skipped unless run explicitly:
+ *
+ * <pre>
+ * ./mvnw test -Dtest=ConsentStorageFormatBenchmark -Dbenchmark=true -Dbenchmark.documents=1000000
+ * </pre>
+ */
+@Slf4j
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConsentStorageFormatBenchmark {
+
+  private static final long DOCUMENTS = Long.getLong("benchmark.documents", 200_000);
+  private static final int BATCH_SIZE = 1_000;
+  private static final int CONCURRENCY = 4;
+
+  @Container
+  static MongoDBContainer mongoDBContainer =
+      new MongoDBContainer(DockerImageName.parse("mongo:latest"));
+
+  private static MongoClient client;
+
+  @BeforeAll
+  static void connect() {
+    client =
+        MongoClients.create(
+            MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoDBContainer.getReplicaSetUrl()))
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .build());
+  }
+
+  @AfterAll
+  static void close() {
+    client.close();
+  }
+
+  @Test
+  @DisplayName("The compact format should shrink documents and indexes without losing data")
+  void compareStorageFormats() {
+    ReactiveMongoTemplate standard = template(StorageFormat.STANDARD);
+    ReactiveMongoTemplate compact = template(StorageFormat.COMPACT);
+    store(standard);
+
+    List<SizeReport> reports = migrator(compact).migrate().collectList().block();
+
+    reports.forEach(report -> log.info("\n{}", report));
+    for (SizeReport report : reports) {
+      assertEquals(DOCUMENTS, report.rewritten());
+      assertTrue(report.after().dataSize() < report.before().dataSize());
+    }
+    assertEquals(DOCUMENTS, compact.findAll(Consent.class).filter(this::isIntact).count().block());
+  }
+
+  private boolean isIntact(Consent consent) {
+    return CpfCodec.isValid(consent.getCpf())
+        && consent.getStatus() != null
+        && consent.getCreationDateTime() != null
+        && consent.getVersion() == 0;
+  }
+
+  private static ReactiveMongoTemplate template(StorageFormat format) {
+    MongoCustomConversions conversions = MongoStorageConfig.customConversions(format);
+    MongoMappingContext mappingContext = MongoStorageConfig.mappingContext(format, conversions);
+    mappingContext.afterPropertiesSet();
+    MappingMongoConverter converter =
+        MongoStorageConfig.converter(format, mappingContext, conversions);
+    converter.afterPropertiesSet();
+    return new ReactiveMongoTemplate(
+        new SimpleReactiveMongoDatabaseFactory(client, "benchmark"), converter);
+  }
+
+  private static ConsentStorageMigrator migrator(ReactiveMongoTemplate template) {
+    ConsentLogBuckets buckets =
+        new ConsentLogBuckets(
+            template,
+            new AuditProperties(
+                AuditDurability.SYNC, 1, Duration.ZERO, 1, ConsentLogStorage.SINGLE));
+    return new ConsentStorageMigrator(
+        template,
+        buckets,
+        new StorageProperties(StorageFormat.COMPACT, true, BATCH_SIZE),
+        mongoProperties(),
+        null);
+  }
+
+  private static MongoProperties mongoProperties() {
+    MongoProperties properties = new MongoProperties();
+    properties.setUuidRepresentation(UuidRepresentation.STANDARD);
+    return properties;
+  }
+
+  private static void store(ReactiveMongoTemplate template) {
+    Flux.fromArray(ConsentIndex.values())
+        .concatMap(index -> template.indexOps(Consent.class).ensureIndex(index.toIndex()))
+        .thenMany(Flux.fromArray(ConsentLogIndex.values()))
+        .concatMap(index -> template.indexOps(ConsentLog.class).ensureIndex(index.toIndex()))
+        .blockLast();
+
+    IdGenerator idGenerator = new TimeOrderedIdGenerator();
+    Random random = new Random(42);
+    LocalDateTime now = LocalDateTime.now();
+    ConsentStatus[] statuses = ConsentStatus.values();
+    Flux.range(0, (int) DOCUMENTS)
+        .map(
+            i ->
+                Consent.builder()
+                    .id(idGenerator.generateId())
+                    .cpf(cpf(random))
+                    .status(statuses[i % statuses.length])
+                    .creationDateTime(now)
+                    .expirationDateTime(now.plusDays(random.nextInt(365)))
+                    .additionalInfo("Additional details")
+                    .version(0)
+                    .build())
+        .buffer(BATCH_SIZE)
+        .flatMap(batch -> template.insertAll(batch).then(), CONCURRENCY)
+        .blockLast();
+    Flux.range(0, (int) DOCUMENTS)
+        .map(
+            i ->
+                ConsentLog.builder()
+                    .id(idGenerator.generateId())
+                    .consentId(idGenerator.generateId())
+                    .action(ActionType.CREATED)
+                    .timestamp(now)
+                    .details("Consent created successfully.")
+                    .build())
+        .buffer(BATCH_SIZE)
+        .flatMap(batch -> template.insertAll(batch).then(), CONCURRENCY)
+        .blockLast();
+  }
+
+  /** A random valid CPF: nine random digits and their two check digits. */
+  private static String cpf(Random random) {
+    int[] digits = new int[CpfCodec.LENGTH];
+    do {
+      for (int i = 0; i < 9; i++) {
+        digits[i] = random.nextInt(10);
+      }
+    } while (Arrays.stream(digits, 0, 9).distinct().count() == 1);
+    digits[9] = checkDigit(digits, 9);
+    digits[10] = checkDigit(digits, 10);
+    StringBuilder cpf = new StringBuilder(CpfCodec.LENGTH);
+    Arrays.stream(digits).forEach(cpf::append);
+    return cpf.toString();
+  }
+
+  private static int checkDigit(int[] digits, int length) {
+    int sum = 0;
+    for (int i = 0; i < length; i++) {
+      sum += digits[i] * (length + 1 - i);
+    }
+    int remainder = sum % 11;
+    return remainder < 2 ? 0 : 11 - remainder;
+  }
+}
@@ -0,0 +1,268 @@
+package com.sensedia.sample.consents.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.sensedia.sample.consents.config.ExternalInfoProperties;
+import com.sensedia.sample.consents.config.WebClientConfig;
+import com.sensedia.sample.consents.config.WebClientProperties;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+class IExternalInfoClientUnitTest {
+
+  private SimpleMeterRegistry registry;
+  private AtomicInteger calls;
+  private Sinks.Empty<Void> release;
+  private HttpStatus status;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    calls = new AtomicInteger();
+    release = null;
+    status = HttpStatus.OK;
+  }
+
+  private IExternalInfoClient client(Duration ttl, Duration staleWhileRevalidate) {
+    WebClient webClient =
+        WebClient.builder()
+            .exchangeFunction(
+                request -> {
+                  int call = calls.incrementAndGet();
+                  Mono<ClientResponse> response =
+                      Mono.fromSupplier(
+                          () ->
+                              ClientResponse.create(status)
+                                  .header(
+                                      HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                  .body("{\"title\":\"Info " + call + "\"}")
+                                  .build());
+                  return release == null ? response : release.asMono().then(response);
+                })
+            .build();
+    return new IExternalInfoClient(
+        webClient,
+        new ExternalInfoProperties(
+            "http://external.test/info", ttl, staleWhileRevalidate, 5, Duration.ofMinutes(1)),
+        registry);
+  }
+
+  private double lookups(String result) {
+    return registry.get("consents.external.info").tag("result", result).counter().count();
+  }
+
+  @Test
+  @DisplayName("Should call the API once and serve later lookups from cache")
+  void shouldCacheTheAnswer() {
+    IExternalInfoClient client = client(Duration.ofMinutes(1), Duration.ZERO);
+
+    StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Info 1").verifyComplete();
+    StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Info 1").verifyComplete();
+
+    assertEquals(1, calls.get());
+    assertEquals(1, lookups("miss"));
+    assertEquals(1, lookups("hit"));
+  }
+
+  @Test
+  @DisplayName("Should share one in-flight call between concurrent callers")
+  void shouldCoalesceConcurrentCallers() {
+    IExternalInfoClient client = client(Duration.ofMinutes(1), Duration.ZERO);
+    release = Sinks.empty();
+
+    Mono<List<String>> burst =
+        Flux.range(0, 50).flatMap(i -> client.fetchAdditionalInfo()).collectList();
+
+    StepVerifier.create(burst)
+        .then(release::tryEmitEmpty)
+        .assertNext(infos -> assertEquals(List.of("Info 1"), infos.stream().distinct().toList()))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+    assertEquals(1, lookups("miss"));
+    assertEquals(49, lookups("coalesced"));
+  }
+
+  @Test
+  @DisplayName("Should serve the stale answer while refreshing it in the background")
+  void shouldRevalidateStaleAnswer() {
+    IExternalInfoClient client = client(Duration.ZERO, Duration.ofMinutes(1));
+
+    StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Info 1").verifyComplete();
+    StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Info 1").verifyComplete();
+    StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Info 2").verifyComplete();
+
+    assertEquals(2, lookups("stale"));
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  @DisplayName("Should fall back to the default info without caching a failure")
+  void shouldNotCacheFailures() {
+    IExternalInfoClient client = client(Duration.ofMinutes(1), Duration.ZERO);
+    status = HttpStatus.SERVICE_UNAVAILABLE;
+
+    StepVerifier.create(client.fetchAdditionalInfo())
+        .expectNext("Default information")
+        .verifyComplete();
+    status = HttpStatus.OK;
+    StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Info 2").verifyComplete();
+
+    assertEquals(2, lookups("miss"));
+  }
+
+  @Test
+  @DisplayName("Should surface the failure instead of the default info when asked to")
+  void shouldSurfaceFailures() {
+    IExternalInfoClient client = client(Duration.ofMinutes(1), Duration.ZERO);
+    status = HttpStatus.SERVICE_UNAVAILABLE;
+
+    StepVerifier.create(client.fetchAdditionalInfoOrError()).expectError().verify();
+    status = HttpStatus.OK;
+    StepVerifier.create(client.fetchAdditionalInfoOrError()).expectNext("Info 2").verifyComplete();
+  }
+
+  @Nested
+  class AgainstStubServer {
+
+    private HttpServer server;
+    private AtomicInteger served;
+    private volatile Duration delay;
+    private SimpleMeterRegistry poolRegistry;
+    private ConnectionProvider connectionProvider;
+
+    @BeforeEach
+    void startServer() throws IOException {
+      served = new AtomicInteger();
+      delay = Duration.ZERO;
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.createContext(
+          "/info",
+          exchange -> {
+            served.incrementAndGet();
+            try {
+              Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"title\":\"Stub info\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+              out.write(body);
+            } catch (IOException e) {
+              // the client gave up on the response
+            }
+          });
+      server.start();
+      poolRegistry = new SimpleMeterRegistry();
+      Metrics.addRegistry(poolRegistry);
+    }
+
+    @AfterEach
+    void stopServer() {
+      server.stop(0);
+      connectionProvider.dispose();
+      Metrics.removeRegistry(poolRegistry);
+    }
+
+    private IExternalInfoClient stubClient() {
+      WebClientProperties properties =
+          new WebClientProperties(
+              Duration.ofSeconds(1),
+              Duration.ofMillis(200),
+              4,
+              10,
+              Duration.ofSeconds(1),
+              Duration.ofSeconds(30),
+              Duration.ofSeconds(30));
+      WebClientConfig config = new WebClientConfig();
+      connectionProvider = config.outboundConnectionProvider(properties);
+      WebClient webClient = config.webClient(WebClient.builder(), connectionProvider, properties);
+      String url = "http://localhost:" + server.getAddress().getPort() + "/info";
+      return new IExternalInfoClient(
+          webClient,
+          new ExternalInfoProperties(url, Duration.ZERO, Duration.ZERO, 2, Duration.ofMinutes(1)),
+          registry);
+    }
+
+    private double breakerState(String state) {
+      return registry
+          .get("consents.external.info.breaker.state")
+          .tag("state", state)
+          .gauge()
+          .value();
+    }
+
+    @Test
+    @DisplayName("Should fetch through the outbound pool and publish its metrics")
+    void shouldFetchThroughThePool() {
+      IExternalInfoClient client = stubClient();
+
+      StepVerifier.create(client.fetchAdditionalInfo()).expectNext("Stub info").verifyComplete();
+
+      assertEquals(1, served.get());
+      assertEquals(1, breakerState("closed"));
+      assertEquals(
+          4,
+          poolRegistry
+              .get("reactor.netty.connection.provider.max.connections")
+              .tag("name", "outbound")
+              .gauge()
+              .value());
+    }
+
+    @Test
+    @DisplayName("Should time out a slow upstream and then fail fast while the breaker is open")
+    void shouldOpenTheBreakerOnTimeouts() {
+      IExternalInfoClient client = stubClient();
+      delay = Duration.ofSeconds(2);
+
+      for (int i = 0; i < 2; i++) {
+        StepVerifier.create(client.fetchAdditionalInfo())
+            .expectNext("Default information")
+            .expectComplete()
+            .verify(Duration.ofSeconds(1));
+      }
+      assertEquals(1, breakerState("open"));
+
+      StepVerifier.create(client.fetchAdditionalInfo())
+          .expectNext("Default information")
+          .expectComplete()
+          .verify(Duration.ofMillis(100));
+      assertEquals(2, served.get());
+      assertEquals(
+          1,
+          registry
+              .get("consents.external.info.breaker.calls")
+              .tag("outcome", "rejected")
+              .counter()
+              .count());
+    }
+  }
+}
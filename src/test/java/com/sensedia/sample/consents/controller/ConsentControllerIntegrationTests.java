@@ -2,20 +2,40 @@ package com.sensedia.sample.consents.controller;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.sensedia.sample.consents.config.MongoIndexConfig;
 import com.sensedia.sample.consents.domain.ActionType;
 import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
 import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.BatchItemResultDTO;
+import com.sensedia.sample.consents.dto.ConsentCheckStatus;
+import com.sensedia.sample.consents.dto.ConsentLogResponseDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestUpdateDTO;
 import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckRequestDTO;
+import com.sensedia.sample.consents.dto.ConsentStatusCheckResponseDTO;
 import com.sensedia.sample.consents.dto.PageDTO;
 import com.sensedia.sample.consents.mapper.CpfMapperUtil;
 import com.sensedia.sample.consents.repository.ConsentLogRepository;
 import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.QueryExplainer;
+import com.sensedia.sample.consents.repository.QueryExplainer.QueryPlan;
+import com.sensedia.sample.consents.repository.QueryShape;
+import com.sensedia.sample.consents.repository.SlowQueryMonitor;
+import com.sensedia.sample.consents.repository.SlowQueryMonitor.SlowQuery;
+import com.sensedia.sample.consents.service.ConsentExpirationSweeper;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -23,6 +43,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -32,6 +55,8 @@ import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 @Slf4j
@@ -62,12 +87,40 @@ class ConsentControllerIntegrationTests {
 
   @Autowired private ConsentLogRepository consentLogRepository;
 
+  @Autowired private ReactiveMongoTemplate mongoTemplate;
+
+  @Autowired private ConsentExpirationSweeper expirationSweeper;
+
+  @Autowired private SlowQueryMonitor slowQueryMonitor;
+
+  @Autowired private QueryExplainer queryExplainer;
+
   @BeforeEach
   void setUp() {
     consentRepository.deleteAll().block();
     consentLogRepository.deleteAll().block();
   }
 
+  /**
+   * The test profile captures every query, so each one the test ran is explained here. Filtered
+   * queries must be served by an index; unfiltered ones read the whole collection on purpose.
+   */
+  @AfterEach
+  void assertNoCollectionScans() {
+    List<QueryPlan> scans =
+        Flux.fromIterable(slowQueryMonitor.drain())
+            .map(SlowQuery::shape)
+            .filter(QueryShape::filtered)
+            .distinct(
+                shape -> List.of(shape.collection(), shape.filter(), String.valueOf(shape.sort())))
+            .concatMap(queryExplainer::explain)
+            .filter(QueryPlan::collectionScan)
+            .collectList()
+            .block();
+
+    assertTrue(scans.isEmpty(), () -> "Consultas que varreram a coleção inteira: " + scans);
+  }
+
   @Test
   @DisplayName("POST /consents - Deve criar um consentimento e um log de criação")
   void shouldCreateConsentSuccessfullyAndLogIt() {
@@ -117,6 +170,109 @@ class ConsentControllerIntegrationTests {
         .isBadRequest();
   }
 
+  @Test
+  @DisplayName(
+      "POST /consents com Idempotency-Key - Deve repetir a resposta original sem criar outro"
+          + " consentimento")
+  void shouldReplayResponseForRepeatedIdempotencyKey() {
+    String key = UUID.randomUUID().toString();
+    ConsentRequestCreateDTO request =
+        new ConsentRequestCreateDTO(
+            CPF_VALIDO_1, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), INFO_TESTE_1);
+
+    List<ConsentResponseDTO> responses =
+        IntStream.range(0, 3)
+            .mapToObj(
+                i ->
+                    webTestClient
+                        .post()
+                        .uri(API_URL)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(request)
+                        .exchange()
+                        .expectStatus()
+                        .isCreated()
+                        .expectBody(ConsentResponseDTO.class)
+                        .returnResult()
+                        .getResponseBody())
+            .toList();
+
+    assertEquals(1, new HashSet<>(responses).size());
+    StepVerifier.create(consentRepository.count()).expectNext(1L).verifyComplete();
+  }
+
+  @Test
+  @DisplayName(
+      "POST /consents com Idempotency-Key - Deve retornar 409 para outro corpo com a mesma chave")
+  void shouldReturnConflictWhenIdempotencyKeyIsReused() {
+    String key = UUID.randomUUID().toString();
+    ConsentRequestCreateDTO first =
+        new ConsentRequestCreateDTO(
+            CPF_VALIDO_1, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), INFO_TESTE_1);
+    ConsentRequestCreateDTO second =
+        new ConsentRequestCreateDTO(
+            CPF_VALIDO_2, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), INFO_TESTE_1);
+
+    webTestClient
+        .post()
+        .uri(API_URL)
+        .header("Idempotency-Key", key)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(first)
+        .exchange()
+        .expectStatus()
+        .isCreated();
+
+    webTestClient
+        .post()
+        .uri(API_URL)
+        .header("Idempotency-Key", key)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(second)
+        .exchange()
+        .expectStatus()
+        .isEqualTo(409);
+  }
+
+  @Test
+  @DisplayName("POST /consents/batch - Deve criar consentimentos em lote e reportar cada item")
+  void shouldCreateConsentsInBatch() {
+    List<ConsentRequestCreateDTO> requests =
+        List.of(
+            new ConsentRequestCreateDTO(
+                CPF_VALIDO_1, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), INFO_TESTE_1),
+            new ConsentRequestCreateDTO(
+                "invalid-cpf", ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), null),
+            new ConsentRequestCreateDTO(
+                CPF_VALIDO_2, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(30), null));
+
+    List<BatchItemResultDTO> results =
+        webTestClient
+            .post()
+            .uri(API_URL + "/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(requests)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(BatchItemResultDTO.class)
+            .getResponseBody()
+            .collectList()
+            .block();
+
+    assertNotNull(results);
+    assertEquals(List.of(201, 400, 201), results.stream().map(BatchItemResultDTO::status).toList());
+    assertEquals(2L, consentRepository.count().block());
+    assertEquals(2L, consentLogRepository.count().block());
+
+    Consent created = consentRepository.findById(results.get(2).id()).block();
+    assertNotNull(created);
+    assertNotNull(created.getCreationDateTime());
+    assertNotNull(created.getAdditionalInfo());
+  }
+
   @Test
   @DisplayName("GET /consents/{id} - Deve encontrar um consentimento por ID e retornar 200 OK")
   void shouldFindConsentById() {
@@ -156,6 +312,145 @@ class ConsentControllerIntegrationTests {
         .isNotFound();
   }
 
+  @Test
+  @DisplayName(
+      "GET /consents/by-cpf/{cpf} - Deve listar os consentimentos do CPF filtrando por status")
+  void shouldFindConsentsByCpf() {
+    String cpf = CpfMapperUtil.onlyDigits(CPF_VALIDO_1);
+    consentRepository
+        .saveAll(
+            List.of(
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(cpf)
+                    .status(ConsentStatus.ACTIVE)
+                    .expirationDateTime(LocalDateTime.now().plusDays(10))
+                    .build(),
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(cpf)
+                    .status(ConsentStatus.REVOKED)
+                    .expirationDateTime(LocalDateTime.now().plusDays(5))
+                    .build(),
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CpfMapperUtil.onlyDigits(CPF_VALIDO_2))
+                    .status(ConsentStatus.ACTIVE)
+                    .build()))
+        .blockLast();
+
+    webTestClient
+        .get()
+        .uri(API_URL + "/by-cpf/{cpf}", CPF_VALIDO_1)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBodyList(ConsentResponseDTO.class)
+        .value(
+            consents ->
+                assertEquals(
+                    List.of(ConsentStatus.ACTIVE, ConsentStatus.REVOKED),
+                    consents.stream().map(ConsentResponseDTO::status).toList()));
+
+    webTestClient
+        .get()
+        .uri(API_URL + "/by-cpf/{cpf}?status=REVOKED", CPF_VALIDO_1)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBodyList(ConsentResponseDTO.class)
+        .hasSize(1);
+  }
+
+  @Test
+  @DisplayName("GET /consents/by-cpf/{cpf} - Deve retornar 400 Bad Request para CPF malformado")
+  void shouldReturnBadRequestForMalformedCpfLookup() {
+    webTestClient
+        .get()
+        .uri(API_URL + "/by-cpf/{cpf}", "123")
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  @Test
+  @DisplayName("GET /consents/by-cpf/{cpf} - A consulta por CPF deve usar o índice composto")
+  void shouldServeCpfLookupFromIndex() {
+    Document filter =
+        new Document("cpf", CpfMapperUtil.onlyDigits(CPF_VALIDO_1)).append("status", "ACTIVE");
+    Document sort = new Document("status", 1).append("expirationDateTime", 1);
+
+    Document plan =
+        mongoTemplate
+            .getCollection("consents")
+            .flatMap(
+                collection -> Mono.from(collection.find(filter).sort(sort).explain(Document.class)))
+            .block();
+
+    assertNotNull(plan);
+    String winningPlan = plan.get("queryPlanner", Document.class).toJson();
+    assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+    assertTrue(winningPlan.contains(MongoIndexConfig.CPF_INDEX), winningPlan);
+    assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+    assertFalse(winningPlan.contains("\"SORT\""), winningPlan);
+  }
+
+  @Test
+  @DisplayName("POST /consents/status-check - Deve informar a situação de cada CPF em uma consulta")
+  void shouldCheckStatusOfManyCpfs() {
+    consentRepository
+        .saveAll(
+            List.of(
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CpfMapperUtil.onlyDigits(CPF_VALIDO_1))
+                    .status(ConsentStatus.ACTIVE)
+                    .expirationDateTime(LocalDateTime.now().plusDays(10))
+                    .build(),
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CpfMapperUtil.onlyDigits(CPF_VALIDO_2))
+                    .status(ConsentStatus.REVOKED)
+                    .build()))
+        .blockLast();
+
+    webTestClient
+        .post()
+        .uri(API_URL + "/status-check")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(
+            new ConsentStatusCheckRequestDTO(List.of(CPF_VALIDO_1, CPF_VALIDO_2, CPF_VALIDO_3)))
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody(ConsentStatusCheckResponseDTO.class)
+        .value(
+            response -> {
+              assertEquals(
+                  ConsentCheckStatus.ACTIVE,
+                  response.statuses().get(CpfMapperUtil.onlyDigits(CPF_VALIDO_1)));
+              assertEquals(
+                  ConsentCheckStatus.REVOKED,
+                  response.statuses().get(CpfMapperUtil.onlyDigits(CPF_VALIDO_2)));
+              assertEquals(
+                  ConsentCheckStatus.ABSENT,
+                  response.statuses().get(CpfMapperUtil.onlyDigits(CPF_VALIDO_3)));
+            });
+  }
+
+  @Test
+  @DisplayName("POST /consents/status-check - Deve retornar 400 Bad Request para lista vazia")
+  void shouldReturnBadRequestForEmptyStatusCheck() {
+    webTestClient
+        .post()
+        .uri(API_URL + "/status-check")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new ConsentStatusCheckRequestDTO(List.of()))
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
   @Test
   @DisplayName("GET /consents - Deve listar todos os consentimentos com paginação")
   void shouldListAllConsents() {
@@ -213,6 +508,296 @@ class ConsentControllerIntegrationTests {
             });
   }
 
+  @Test
+  @DisplayName("GET /consents?cursor= - Deve percorrer todos os consentimentos via cursor")
+  void shouldListAllConsentsWithCursor() {
+    List<Consent> consentsToSave =
+        IntStream.range(0, 5)
+            .mapToObj(
+                i ->
+                    Consent.builder()
+                        .id(UUID.randomUUID())
+                        .cpf(CPF_VALIDO_1)
+                        .status(ConsentStatus.ACTIVE)
+                        .expirationDateTime(LocalDateTime.now().plusDays(i % 2))
+                        .build())
+            .toList();
+    consentRepository.saveAll(consentsToSave).blockLast();
+
+    ParameterizedTypeReference<PageDTO<ConsentResponseDTO>> pageDtoType =
+        new ParameterizedTypeReference<>() {};
+
+    PageDTO<ConsentResponseDTO> firstPage =
+        webTestClient
+            .get()
+            .uri(API_URL + "?page=0&size=2&sort=expirationDateTime&direction=asc")
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(pageDtoType)
+            .returnResult()
+            .getResponseBody();
+    assertNotNull(firstPage);
+    assertNotNull(firstPage.nextCursor());
+
+    Set<UUID> seen = new HashSet<>();
+    firstPage.content().forEach(consent -> seen.add(consent.id()));
+    String cursor = firstPage.nextCursor();
+    while (cursor != null) {
+      PageDTO<ConsentResponseDTO> page =
+          webTestClient
+              .get()
+              .uri(API_URL + "?size=2&cursor={cursor}", cursor)
+              .exchange()
+              .expectStatus()
+              .isOk()
+              .expectBody(pageDtoType)
+              .returnResult()
+              .getResponseBody();
+      assertNotNull(page);
+      assertNull(page.totalElements());
+      page.content().forEach(consent -> assertTrue(seen.add(consent.id())));
+      cursor = page.nextCursor();
+    }
+
+    assertEquals(5, seen.size());
+  }
+
+  @Test
+  @DisplayName("GET /consents?cursor= - Deve retornar 400 Bad Request para cursor inválido")
+  void shouldReturnBadRequestForMalformedCursor() {
+    webTestClient.get().uri(API_URL + "?cursor=invalid").exchange().expectStatus().isBadRequest();
+  }
+
+  @Test
+  @DisplayName(
+      "GET /consents - Deve retornar 400 Bad Request para tamanho de página acima do limite")
+  void shouldReturnBadRequestForPageSizeAboveLimit() {
+    webTestClient
+        .get()
+        .uri(API_URL + "?page=0&size=500000")
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  @Test
+  @DisplayName("GET /consents?status=&expirationTo= - Deve filtrar por status e vencimento")
+  void shouldFilterConsentsByStatusAndExpiration() {
+    LocalDateTime now = LocalDateTime.now();
+    consentRepository
+        .saveAll(
+            List.of(
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CPF_VALIDO_1)
+                    .status(ConsentStatus.ACTIVE)
+                    .expirationDateTime(now.plusDays(5))
+                    .build(),
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CPF_VALIDO_2)
+                    .status(ConsentStatus.ACTIVE)
+                    .expirationDateTime(now.plusDays(60))
+                    .build(),
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CPF_VALIDO_3)
+                    .status(ConsentStatus.REVOKED)
+                    .expirationDateTime(now.plusDays(5))
+                    .build()))
+        .blockLast();
+
+    webTestClient
+        .get()
+        .uri(
+            uriBuilder ->
+                uriBuilder
+                    .path(API_URL)
+                    .queryParam("status", "ACTIVE")
+                    .queryParam("expirationTo", now.plusDays(30).toString())
+                    .queryParam("sort", "expirationDateTime")
+                    .build())
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody(new ParameterizedTypeReference<PageDTO<ConsentResponseDTO>>() {})
+        .value(
+            page -> {
+              assertEquals(1, page.content().size());
+              assertEquals(CPF_VALIDO_1, page.content().get(0).cpf());
+              assertEquals(1L, page.totalElements());
+            });
+  }
+
+  @Test
+  @DisplayName("GET /consents?sort= - Deve retornar 400 Bad Request para campo sem índice")
+  void shouldReturnBadRequestForUnindexedSort() {
+    webTestClient
+        .get()
+        .uri(API_URL + "?sort=additionalInfo")
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  @Test
+  @DisplayName("Sweeper - Deve marcar como EXPIRED apenas os consentimentos ativos vencidos")
+  void shouldExpireOverdueActiveConsents() {
+    Consent overdue =
+        Consent.builder()
+            .id(UUID.randomUUID())
+            .cpf(CPF_VALIDO_1)
+            .status(ConsentStatus.ACTIVE)
+            .expirationDateTime(LocalDateTime.now().minusDays(1))
+            .build();
+    Consent current =
+        Consent.builder()
+            .id(UUID.randomUUID())
+            .cpf(CPF_VALIDO_2)
+            .status(ConsentStatus.ACTIVE)
+            .expirationDateTime(LocalDateTime.now().plusDays(1))
+            .build();
+    consentRepository.saveAll(List.of(overdue, current)).blockLast();
+
+    StepVerifier.create(expirationSweeper.sweep()).expectNext(1L).verifyComplete();
+
+    assertEquals(
+        ConsentStatus.EXPIRED, consentRepository.findById(overdue.getId()).block().getStatus());
+    assertEquals(
+        ConsentStatus.ACTIVE, consentRepository.findById(current.getId()).block().getStatus());
+    StepVerifier.create(consentLogRepository.findAll())
+        .expectNextMatches(
+            log ->
+                log.getConsentId().equals(overdue.getId()) && log.getAction() == ActionType.EXPIRED)
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("GET /consents/{id}/history - Deve percorrer o histórico em ordem cronológica")
+  void shouldWalkConsentHistoryWithCursor() {
+    UUID consentId = UUID.randomUUID();
+    LocalDateTime start = LocalDateTime.now().minusHours(1);
+    List<ConsentLog> entries =
+        IntStream.range(0, 5)
+            .mapToObj(
+                i ->
+                    ConsentLog.builder()
+                        .id(UUID.randomUUID())
+                        .consentId(consentId)
+                        .action(i == 0 ? ActionType.CREATED : ActionType.UPDATED)
+                        .timestamp(start.plusMinutes(i))
+                        .build())
+            .toList();
+    consentLogRepository.saveAll(entries).blockLast();
+    consentLogRepository
+        .save(
+            ConsentLog.builder()
+                .id(UUID.randomUUID())
+                .consentId(UUID.randomUUID())
+                .action(ActionType.CREATED)
+                .timestamp(start)
+                .build())
+        .block();
+
+    List<UUID> visited = new ArrayList<>();
+    String cursor = null;
+    do {
+      String currentCursor = cursor;
+      PageDTO<ConsentLogResponseDTO> page =
+          webTestClient
+              .get()
+              .uri(
+                  uriBuilder ->
+                      uriBuilder
+                          .path("/api/v1/consents/{id}/history")
+                          .queryParam("size", 2)
+                          .queryParamIfPresent("cursor", Optional.ofNullable(currentCursor))
+                          .build(consentId))
+              .exchange()
+              .expectStatus()
+              .isOk()
+              .expectBody(new ParameterizedTypeReference<PageDTO<ConsentLogResponseDTO>>() {})
+              .returnResult()
+              .getResponseBody();
+      assertNotNull(page);
+      page.content().forEach(entry -> visited.add(entry.id()));
+      cursor = page.nextCursor();
+    } while (cursor != null);
+
+    assertEquals(entries.stream().map(ConsentLog::getId).toList(), visited);
+  }
+
+  @Test
+  @DisplayName("GET /consent-logs/stream - Deve transmitir os logs do intervalo em NDJSON")
+  void shouldStreamLogsWithinTimeRange() {
+    LocalDateTime start = LocalDateTime.now().minusHours(1);
+    consentLogRepository
+        .saveAll(
+            IntStream.range(0, 4)
+                .mapToObj(
+                    i ->
+                        ConsentLog.builder()
+                            .id(UUID.randomUUID())
+                            .consentId(UUID.randomUUID())
+                            .action(ActionType.CREATED)
+                            .timestamp(start.plusMinutes(i * 10L))
+                            .build())
+                .toList())
+        .blockLast();
+
+    List<ConsentLogResponseDTO> streamed =
+        webTestClient
+            .get()
+            .uri(
+                uriBuilder ->
+                    uriBuilder
+                        .path("/api/v1/consent-logs/stream")
+                        .queryParam("from", start.plusMinutes(5).toString())
+                        .queryParam("to", start.plusMinutes(25).toString())
+                        .build())
+            .accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(ConsentLogResponseDTO.class)
+            .getResponseBody()
+            .collectList()
+            .block();
+
+    assertNotNull(streamed);
+    assertEquals(2, streamed.size());
+  }
+
+  @Test
+  @DisplayName("GET /consents/stream - Deve transmitir todos os consentimentos em NDJSON")
+  void shouldStreamAllConsentsAsNdjson() {
+    List<Consent> consentsToSave =
+        IntStream.range(0, 3)
+            .mapToObj(
+                i ->
+                    Consent.builder()
+                        .id(UUID.randomUUID())
+                        .cpf(CPF_VALIDO_1)
+                        .status(ConsentStatus.ACTIVE)
+                        .build())
+            .toList();
+    consentRepository.saveAll(consentsToSave).blockLast();
+
+    StepVerifier.create(
+            webTestClient
+                .get()
+                .uri(API_URL + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(ConsentResponseDTO.class)
+                .getResponseBody())
+        .expectNextCount(3)
+        .verifyComplete();
+  }
+
   @Test
   @DisplayName("PUT /consents/{id} - Deve atualizar um consentimento e retornar 200 OK")
   void shouldUpdateConsent() {
@@ -354,4 +939,105 @@ class ConsentControllerIntegrationTests {
         .expectStatus()
         .isNotFound();
   }
+
+  @Test
+  @DisplayName(
+      "GET /consents/{id} - Deve retornar 304 Not Modified sem corpo quando o ETag não mudou")
+  void shouldReturnNotModifiedForMatchingETag() {
+    Consent savedConsent =
+        consentRepository
+            .save(
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CPF_VALIDO_1)
+                    .status(ConsentStatus.ACTIVE)
+                    .build())
+            .block();
+    assertNotNull(savedConsent);
+
+    String etag =
+        webTestClient
+            .get()
+            .uri(API_URL + "/{id}", savedConsent.getId())
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(ConsentResponseDTO.class)
+            .getResponseHeaders()
+            .getETag();
+    assertEquals("W/\"" + savedConsent.getId() + "-" + savedConsent.getVersion() + "\"", etag);
+
+    webTestClient
+        .get()
+        .uri(API_URL + "/{id}", savedConsent.getId())
+        .header(HttpHeaders.IF_NONE_MATCH, etag)
+        .exchange()
+        .expectStatus()
+        .isNotModified()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, etag)
+        .expectBody()
+        .isEmpty();
+  }
+
+  @Test
+  @DisplayName("PUT /consents/{id} - Deve atualizar com If-Match atual e retornar o novo ETag")
+  void shouldUpdateWithCurrentIfMatch() {
+    Consent savedConsent =
+        consentRepository
+            .save(
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CPF_VALIDO_1)
+                    .status(ConsentStatus.ACTIVE)
+                    .build())
+            .block();
+    assertNotNull(savedConsent);
+    String etag = "W/\"" + savedConsent.getId() + "-" + savedConsent.getVersion() + "\"";
+
+    webTestClient
+        .put()
+        .uri(API_URL + "/{id}", savedConsent.getId())
+        .header(HttpHeaders.IF_MATCH, etag)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new ConsentRequestUpdateDTO(null, ConsentStatus.REVOKED, null, null))
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .valueEquals(
+            HttpHeaders.ETAG,
+            "W/\"" + savedConsent.getId() + "-" + (savedConsent.getVersion() + 1) + "\"");
+  }
+
+  @Test
+  @DisplayName(
+      "PUT /consents/{id} - Deve retornar 412 Precondition Failed quando o If-Match está desatualizado")
+  void shouldReturnPreconditionFailedForStaleIfMatch() {
+    Consent savedConsent =
+        consentRepository
+            .save(
+                Consent.builder()
+                    .id(UUID.randomUUID())
+                    .cpf(CPF_VALIDO_1)
+                    .status(ConsentStatus.ACTIVE)
+                    .build())
+            .block();
+    assertNotNull(savedConsent);
+    String staleETag = "W/\"" + savedConsent.getId() + "-" + (savedConsent.getVersion() - 1) + "\"";
+
+    webTestClient
+        .put()
+        .uri(API_URL + "/{id}", savedConsent.getId())
+        .header(HttpHeaders.IF_MATCH, staleETag)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new ConsentRequestUpdateDTO(null, ConsentStatus.REVOKED, null, null))
+        .exchange()
+        .expectStatus()
+        .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+    Consent unchanged = consentRepository.findById(savedConsent.getId()).block();
+    assertNotNull(unchanged);
+    assertEquals(ConsentStatus.ACTIVE, unchanged.getStatus());
+  }
 }
@@ -0,0 +1,206 @@
+package com.sensedia.sample.consents.mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.sensedia.sample.consents.validation.ValidCpf;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.hibernate.validator.constraints.br.CPF;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the codec against the behaviour it replaces, Hibernate's {@code @CPF} and {@code
+ * replaceAll("\\D", "")}, on generated input: valid CPFs in every layout, mutations of them and
+ * random strings. The seed can be fixed with {@code -Dcpf.seed} to replay a failure.
+ */
+class CpfCodecUnitTest {
+
+  private static final long SEED = Long.getLong("cpf.seed", System.nanoTime());
+  private static final int SAMPLES = 50_000;
+  private static final String ALPHABET = "0123456789.-/ x٣";
+
+  private static Validator validator;
+  private static List<String> samples;
+
+  private record HibernateCpf(@CPF String cpf) {}
+
+  private record CodecCpf(@ValidCpf String cpf) {}
+
+  @BeforeAll
+  static void setUp() {
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+    Random random = new Random(SEED);
+    samples = new ArrayList<>(SAMPLES);
+    for (int i = 0; i < SAMPLES; i++) {
+      samples.add(sample(random));
+    }
+  }
+
+  private static String sample(Random random) {
+    return switch (random.nextInt(5)) {
+      case 0, 1 -> layout(validDigits(random), random);
+      case 2 -> mutate(layout(validDigits(random), random), random);
+      case 3 -> layout(String.valueOf(random.nextInt(10)).repeat(11), random);
+      default -> randomString(random);
+    };
+  }
+
+  private static String validDigits(Random random) {
+    int[] digits = new int[11];
+    for (int i = 0; i < 9; i++) {
+      digits[i] = random.nextInt(10);
+    }
+    digits[9] = checkDigit(digits, 9);
+    digits[10] = checkDigit(digits, 10);
+    StringBuilder result = new StringBuilder();
+    for (int digit : digits) {
+      result.append(digit);
+    }
+    return result.toString();
+  }
+
+  private static int checkDigit(int[] digits, int count) {
+    int sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += digits[i] * (count + 1 - i);
+    }
+    int remainder = sum % 11;
+    return remainder < 2 ? 0 : 11 - remainder;
+  }
+
+  /** Bare, fully formatted, or formatted with either dot left out. */
+  private static String layout(String digits, Random random) {
+    if (random.nextBoolean()) {
+      return digits;
+    }
+    return digits.substring(0, 3)
+        + (random.nextInt(4) == 0 ? "" : ".")
+        + digits.substring(3, 6)
+        + (random.nextInt(4) == 0 ? "" : ".")
+        + digits.substring(6, 9)
+        + (random.nextInt(8) == 0 ? "" : "-")
+        + digits.substring(9);
+  }
+
+  private static String mutate(String value, Random random) {
+    StringBuilder result = new StringBuilder(value);
+    int position = random.nextInt(result.length());
+    char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+    switch (random.nextInt(3)) {
+      case 0 -> result.setCharAt(position, c);
+      case 1 -> result.insert(position, c);
+      default -> result.deleteCharAt(position);
+    }
+    return result.toString();
+  }
+
+  private static String randomString(Random random) {
+    StringBuilder result = new StringBuilder();
+    int length = random.nextInt(17);
+    for (int i = 0; i < length; i++) {
+      result.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    return result.toString();
+  }
+
+  private static boolean hibernateAccepts(String cpf) {
+    return validator.validate(new HibernateCpf(cpf)).isEmpty();
+  }
+
+  private static String failure(String cpf) {
+    return "input \"" + cpf + "\" (replay with -Dcpf.seed=" + SEED + ")";
+  }
+
+  private static boolean hasSingleDot(String cpf) {
+    return cpf.indexOf('.') >= 0 && cpf.indexOf('.') == cpf.lastIndexOf('.');
+  }
+
+  @Test
+  @DisplayName("Should accept exactly the CPFs Hibernate's @CPF accepts, bar single-dot layouts")
+  void shouldMatchHibernateValidation() {
+    for (String cpf : samples) {
+      if (hasSingleDot(cpf)) {
+        assertFalse(CpfCodec.isValid(cpf), failure(cpf));
+      } else {
+        assertEquals(hibernateAccepts(cpf), CpfCodec.isValid(cpf), failure(cpf));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should read valid CPFs as the number their digits spell and reject the rest")
+  void shouldReadValidCpfs() {
+    for (String cpf : samples) {
+      if (!hasSingleDot(cpf) && hibernateAccepts(cpf)) {
+        String digits = cpf.replaceAll("\\D", "");
+        assertEquals(Long.parseLong(digits), CpfCodec.toLong(cpf), failure(cpf));
+        assertEquals(digits, CpfCodec.normalize(cpf), failure(cpf));
+        assertEquals(digits, CpfCodec.toDigits(CpfCodec.toLong(cpf)), failure(cpf));
+      } else {
+        assertEquals(CpfCodec.INVALID, CpfCodec.toLong(cpf), failure(cpf));
+        assertNull(CpfCodec.normalize(cpf), failure(cpf));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should strip non-digits exactly like replaceAll(\"\\\\D\", \"\")")
+  void shouldStripLikeRegex() {
+    for (String value : samples) {
+      assertEquals(value.replaceAll("\\D", ""), CpfCodec.onlyDigits(value), failure(value));
+    }
+    assertNull(CpfCodec.onlyDigits(null));
+  }
+
+  @Test
+  @DisplayName("Should pack any 11 digits for storage and nothing else")
+  void shouldPackStoredDigits() {
+    for (String value : samples) {
+      boolean elevenDigits = value.length() == CpfCodec.LENGTH && value.matches("[0-9]+");
+      long packed = CpfCodec.fromDigits(value);
+      if (elevenDigits) {
+        assertEquals(value, CpfCodec.toDigits(packed), failure(value));
+      } else {
+        assertEquals(CpfCodec.INVALID, packed, failure(value));
+      }
+    }
+    assertEquals(CpfCodec.INVALID, CpfCodec.fromDigits(null));
+  }
+
+  @Test
+  @DisplayName("Should return bare digits without copying them")
+  void shouldNotCopyBareDigits() {
+    String cpf = "01234567890";
+
+    assertSame(cpf, CpfCodec.normalize(cpf));
+    assertSame(cpf, CpfCodec.onlyDigits(cpf));
+    assertEquals("01234567890", CpfCodec.toDigits(CpfCodec.toLong("012.345.678-90")));
+  }
+
+  @Test
+  @DisplayName("Should report the same violation as @CPF and accept null")
+  void shouldReportSameViolation() {
+    Set<String> expected =
+        validator.validate(new HibernateCpf("123.456.789-00")).stream()
+            .map(ConstraintViolation::getMessage)
+            .collect(Collectors.toSet());
+    Set<String> actual =
+        validator.validate(new CodecCpf("123.456.789-00")).stream()
+            .map(ConstraintViolation::getMessage)
+            .collect(Collectors.toSet());
+
+    assertEquals(expected, actual);
+    assertEquals(Set.of(), validator.validate(new CodecCpf(null)));
+  }
+}
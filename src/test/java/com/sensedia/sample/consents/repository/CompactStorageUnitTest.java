@@ -0,0 +1,191 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.sensedia.sample.consents.config.MongoStorageConfig;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+class CompactStorageUnitTest {
+
+  private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+  private MappingMongoConverter converter;
+  private MongoMappingContext mappingContext;
+
+  private void use(StorageFormat format) {
+    MongoCustomConversions conversions = MongoStorageConfig.customConversions(format);
+    mappingContext = MongoStorageConfig.mappingContext(format, conversions);
+    mappingContext.afterPropertiesSet();
+    converter = MongoStorageConfig.converter(format, mappingContext, conversions);
+    converter.afterPropertiesSet();
+  }
+
+  private static Consent consent(String cpf) {
+    return Consent.builder()
+        .id(UUID.randomUUID())
+        .cpf(cpf)
+        .status(ConsentStatus.REVOKED)
+        .creationDateTime(NOW)
+        .expirationDateTime(NOW.plusDays(30))
+        .additionalInfo("Info")
+        .version(3)
+        .build();
+  }
+
+  private Document write(Object entity) {
+    Document document = new Document();
+    converter.write(entity, document);
+    return document;
+  }
+
+  private MongoPersistentEntity<?> entity(Class<?> type) {
+    return mappingContext.getRequiredPersistentEntity(type);
+  }
+
+  @Nested
+  class Compact {
+
+    @BeforeEach
+    void setUp() {
+      use(StorageFormat.COMPACT);
+    }
+
+    @Test
+    @DisplayName("Should store consents with short names, the CPF as int64 and the status code")
+    void shouldWriteCompactConsent() {
+      Consent consent = consent("01234567890");
+
+      Document document = write(consent);
+
+      assertEquals(Set.of("_id", "c", "s", "cd", "ed", "ai", "v"), document.keySet());
+      assertEquals(1234567890L, document.get("c"));
+      assertEquals(3, document.get("s"));
+      assertEquals(consent, converter.read(Consent.class, document));
+    }
+
+    @Test
+    @DisplayName("Should store log entries with short names and the action code")
+    void shouldWriteCompactLog() {
+      ConsentLog entry =
+          ConsentLog.builder()
+              .id(UUID.randomUUID())
+              .consentId(UUID.randomUUID())
+              .action(ActionType.ENRICHED)
+              .timestamp(NOW)
+              .details("Details")
+              .build();
+
+      Document document = write(entry);
+
+      assertEquals(3, document.get("a"));
+      assertEquals(entry.getConsentId(), document.get("ci"));
+      assertEquals(entry, converter.read(ConsentLog.class, document));
+    }
+
+    @Test
+    @DisplayName("Should map queries, sorts and updates written with the property names")
+    void shouldMapQueriesAndUpdates() {
+      QueryMapper queryMapper = new QueryMapper(converter);
+      Query query =
+          new Query(
+                  where("cpf")
+                      .in(List.of("01234567890", "123"))
+                      .and("status")
+                      .gt(ConsentStatus.ACTIVE))
+              .with(Sort.by("expirationDateTime"));
+
+      assertEquals(
+          new Document("c", new Document("$in", List.of(1234567890L, "123")))
+              .append("s", new Document("$gt", 1)),
+          queryMapper.getMappedObject(query.getQueryObject(), entity(Consent.class)));
+      assertEquals(
+          new Document("ed", 1),
+          queryMapper.getMappedSort(query.getSortObject(), entity(Consent.class)));
+      assertEquals(
+          new Document("$set", new Document("s", 2)).append("$inc", new Document("v", 1)),
+          new UpdateMapper(converter)
+              .getMappedObject(
+                  new Update()
+                      .set("status", ConsentStatus.EXPIRED)
+                      .inc("version", 1)
+                      .getUpdateObject(),
+                  entity(Consent.class)));
+    }
+
+    @Test
+    @DisplayName("Should keep the field names of other documents")
+    void shouldNotRenameOtherDocuments() {
+      assertEquals(
+          "createdAt",
+          entity(IdempotencyRecord.class)
+              .getRequiredPersistentProperty("createdAt")
+              .getFieldName());
+    }
+  }
+
+  @Test
+  @DisplayName("Should keep the standard layout unless the compact format is selected")
+  void shouldWriteStandardConsent() {
+    use(StorageFormat.STANDARD);
+
+    Document document = write(consent("01234567890"));
+
+    assertEquals("01234567890", document.get("cpf"));
+    assertEquals("REVOKED", document.get("status"));
+    assertFalse(document.containsKey("c"));
+    assertTrue(document.containsKey("_class"));
+  }
+
+  @Test
+  @DisplayName("Should rewrite every field one way and remove it the other way")
+  void shouldRewriteEveryField() {
+    List<Document> toCompact = CompactStorage.rewritePipeline(Consent.class, StorageFormat.COMPACT);
+    List<Document> toStandard =
+        CompactStorage.rewritePipeline(Consent.class, StorageFormat.STANDARD);
+
+    assertEquals(
+        Set.copyOf(CompactStorage.fieldNames(Consent.class).values()),
+        toCompact.get(0).get("$set", Document.class).keySet());
+    assertEquals(
+        Set.of(
+            "cpf",
+            "status",
+            "creationDateTime",
+            "expirationDateTime",
+            "additionalInfo",
+            "enrichmentPending",
+            "enrichmentRun",
+            "version",
+            "_class"),
+        Set.copyOf(toCompact.get(1).getList("$unset", String.class)));
+    assertEquals(
+        Set.copyOf(CompactStorage.fieldNames(Consent.class).keySet()),
+        toStandard.get(0).get("$set", Document.class).keySet());
+    assertEquals("$v", toStandard.get(0).get("$set", Document.class).get("version"));
+  }
+}
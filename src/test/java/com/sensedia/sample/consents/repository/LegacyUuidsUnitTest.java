@@ -0,0 +1,49 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LegacyUuidsUnitTest {
+
+  private static final UUID ID = UUID.fromString("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a5b");
+
+  @Test
+  @DisplayName("Should rewrite legacy UUIDs at any depth in the standard representation")
+  void shouldConvertLegacyUuids() {
+    BsonDocument legacy =
+        new BsonDocument("_id", new BsonBinary(ID, UuidRepresentation.JAVA_LEGACY))
+            .append("key", new BsonString("request-1"))
+            .append(
+                "response",
+                new BsonDocument("id", new BsonBinary(ID, UuidRepresentation.JAVA_LEGACY)))
+            .append(
+                "ids", new BsonArray(List.of(new BsonBinary(ID, UuidRepresentation.JAVA_LEGACY))));
+
+    BsonDocument standard =
+        new BsonDocument("_id", new BsonBinary(ID, UuidRepresentation.STANDARD))
+            .append("key", new BsonString("request-1"))
+            .append(
+                "response", new BsonDocument("id", new BsonBinary(ID, UuidRepresentation.STANDARD)))
+            .append("ids", new BsonArray(List.of(new BsonBinary(ID, UuidRepresentation.STANDARD))));
+
+    assertEquals(standard, LegacyUuids.toStandard(legacy));
+  }
+
+  @Test
+  @DisplayName("Should leave standard UUIDs as they are")
+  void shouldKeepStandardUuids() {
+    BsonDocument standard =
+        new BsonDocument("_id", new BsonBinary(ID, UuidRepresentation.STANDARD));
+
+    assertEquals(standard, LegacyUuids.toStandard(standard));
+  }
+}
@@ -0,0 +1,66 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sensedia.sample.consents.repository.QueryExplainer.QueryPlan;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class QueryExplainerUnitTest {
+
+  private static final QueryShape SHAPE =
+      new QueryShape("find", "consents", "{\"status\": \"?\"}", null);
+
+  private static Document explained(String winningPlan) {
+    return new Document("queryPlanner", new Document("winningPlan", Document.parse(winningPlan)))
+        .append(
+            "executionStats",
+            new Document("nReturned", 2)
+                .append("executionTimeMillis", 1)
+                .append("totalKeysExamined", 2L)
+                .append("totalDocsExamined", 2));
+  }
+
+  @Test
+  @DisplayName("Should report the index of an index scan and what it examined")
+  void shouldReportIndexScan() {
+    QueryPlan plan =
+        QueryPlan.of(
+            SHAPE,
+            explained("{stage: 'FETCH', inputStage: {stage: 'IXSCAN', indexName: 'status_id'}}"));
+
+    assertEquals(QueryPlan.IXSCAN, plan.access());
+    assertEquals(List.of("FETCH", "IXSCAN"), plan.stages());
+    assertEquals(List.of("status_id"), plan.indexes());
+    assertEquals(2, plan.keysExamined());
+    assertEquals(2, plan.docsExamined());
+    assertFalse(plan.collectionScan());
+  }
+
+  @Test
+  @DisplayName("Should find a collection scan inside the plan of the slot-based engine")
+  void shouldReportCollectionScan() {
+    QueryPlan plan =
+        QueryPlan.of(
+            SHAPE,
+            explained(
+                """
+                {queryPlan: {stage: 'SORT', inputStage: {stage: 'OR', inputStages: [
+                  {stage: 'IXSCAN', indexName: 'status_id'}, {stage: 'COLLSCAN'}]}},
+                 slotBasedPlan: {}}
+                """));
+
+    assertEquals(List.of("SORT", "OR", "IXSCAN", "COLLSCAN"), plan.stages());
+    assertTrue(plan.collectionScan());
+  }
+
+  @Test
+  @DisplayName("Should report the last stage when the plan reads nothing")
+  void shouldReportEmptyCollection() {
+    assertEquals("EOF", QueryPlan.of(SHAPE, explained("{stage: 'EOF'}")).access());
+  }
+}
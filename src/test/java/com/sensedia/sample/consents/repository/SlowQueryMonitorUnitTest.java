@@ -0,0 +1,156 @@
+package com.sensedia.sample.consents.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.sensedia.sample.consents.config.SlowQueryProperties;
+import com.sensedia.sample.consents.repository.SlowQueryMonitor.SlowQuery;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class SlowQueryMonitorUnitTest {
+
+  private static final ConnectionDescription CONNECTION =
+      new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+  private final AtomicInteger requestIds = new AtomicInteger();
+
+  private SlowQueryMonitor monitor;
+
+  @BeforeEach
+  void setUp() {
+    monitor =
+        new SlowQueryMonitor(
+            new SlowQueryProperties(
+                true, Duration.ofMillis(100), 2, List.of("consents", "consent_logs")));
+  }
+
+  private void run(String json, long elapsedMillis) {
+    BsonDocument command = BsonDocument.parse(json);
+    String name = command.getFirstKey();
+    int requestId = requestIds.incrementAndGet();
+    monitor.commandStarted(
+        new CommandStartedEvent(null, 1, requestId, CONNECTION, "consents", name, command));
+    monitor.commandSucceeded(
+        new CommandSucceededEvent(
+            null,
+            1,
+            requestId,
+            CONNECTION,
+            name,
+            "consents",
+            new BsonDocument(),
+            TimeUnit.MILLISECONDS.toNanos(elapsedMillis)));
+  }
+
+  @Nested
+  class Capture {
+
+    @Test
+    @DisplayName("Should keep slow queries, newest first, up to the capacity")
+    void shouldKeepTheLastSlowQueries() {
+      run("{find: 'consents', filter: {status: 'ACTIVE'}}", 150);
+      run("{count: 'consents', query: {status: 'REVOKED'}}", 200);
+      run("{find: 'consent_logs', filter: {consentId: 1}}", 300);
+
+      List<SlowQuery> recent = monitor.recent();
+
+      assertEquals(List.of(3L, 2L), recent.stream().map(SlowQuery::id).toList());
+      assertEquals(300, recent.get(0).elapsedMillis());
+      assertEquals("count", recent.get(1).shape().command());
+      assertTrue(monitor.find(1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should ignore fast queries, other collections and commands without a filter")
+    void shouldIgnoreOtherCommands() {
+      run("{find: 'consents', filter: {status: 'ACTIVE'}}", 99);
+      run("{find: 'idempotency_keys', filter: {key: 'k'}}", 500);
+      run("{find: 'consentsx', filter: {key: 'k'}}", 500);
+      run("{insert: 'consents', documents: [{status: 'ACTIVE'}]}", 500);
+      run("{getMore: 1, collection: 'consents'}", 500);
+
+      assertTrue(monitor.recent().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should watch the monthly log buckets as the log collection")
+    void shouldWatchLogBuckets() {
+      run("{delete: 'consent_logs_2024_05', deletes: [{q: {timestamp: {$lt: 1}}, limit: 0}]}", 150);
+
+      SlowQuery query = monitor.drain().get(0);
+
+      assertEquals("consent_logs_2024_05", query.shape().collection());
+      assertEquals(
+          new Document("timestamp", new Document("$lt", 0)), query.shape().filterDocument());
+      assertTrue(monitor.recent().isEmpty());
+    }
+  }
+
+  @Nested
+  class Shape {
+
+    private QueryShape shape(String json) {
+      BsonDocument command = BsonDocument.parse(json);
+      String name = command.getFirstKey();
+      return QueryShape.of(name, QueryShape.collectionOf(name, command), command);
+    }
+
+    @Test
+    @DisplayName("Should replace every value with a placeholder of the same type")
+    void shouldRedactValues() {
+      QueryShape shape =
+          shape(
+              """
+              {find: 'consents',
+               filter: {cpf: {$in: ['66052705094', '01234567890', {$numberLong: '1'}]},
+                        $or: [{expirationDateTime: {$gt: {$date: '2024-05-01T12:00:00Z'}}},
+                              {expirationDateTime: null}]},
+               sort: {expirationDateTime: 1, _id: 1}}
+              """);
+
+      assertFalse(shape.filter().contains("66052705094"));
+      assertEquals(
+          new Document("cpf", new Document("$in", List.of("?", 0)))
+              .append(
+                  "$or",
+                  List.of(
+                      new Document(
+                          "expirationDateTime", new Document("$gt", new java.util.Date(0))),
+                      new Document("expirationDateTime", null))),
+          shape.filterDocument());
+      assertEquals(new Document("expirationDateTime", 1).append("_id", 1), shape.sortDocument());
+    }
+
+    @Test
+    @DisplayName("Should take the filter of updates and aggregations")
+    void shouldShapeUpdatesAndAggregations() {
+      QueryShape update =
+          shape("{update: 'consents', updates: [{q: {_id: 'a'}, u: {$set: {status: 'REVOKED'}}}]}");
+      QueryShape aggregate =
+          shape("{aggregate: 'consents', pipeline: [{$match: {status: 'ACTIVE'}}, {$count: 'n'}]}");
+      QueryShape countAll = shape("{aggregate: 'consents', pipeline: [{$group: {_id: 1}}]}");
+
+      assertEquals(new Document("_id", "?"), update.filterDocument());
+      assertEquals(new Document("status", "?"), aggregate.filterDocument());
+      assertNull(aggregate.sort());
+      assertFalse(countAll.filtered());
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.client.ExternalInfoClient;
+import com.sensedia.sample.consents.config.BatchProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
+import com.sensedia.sample.consents.mapper.ConsentMapper;
+import com.sensedia.sample.consents.repository.BulkWriteFailure;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import jakarta.validation.Validation;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentBatchServiceUnitTest {
+
+  private static final String VALID_CPF = "660.527.050-94";
+
+  @Mock private ConsentRepository repository;
+
+  @Mock private ConsentLogRepository logRepository;
+
+  @Mock private ConsentMapper mapper;
+
+  @Mock private ExternalInfoClient externalInfoClient;
+
+  private ConsentBatchService service;
+
+  @BeforeEach
+  void setUp() {
+    service =
+        new ConsentBatchService(
+            mapper,
+            repository,
+            logRepository,
+            externalInfoClient,
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new BatchProperties(2),
+            new TimeOrderedIdGenerator());
+  }
+
+  private static ConsentRequestCreateDTO request(String cpf, String info) {
+    return new ConsentRequestCreateDTO(
+        cpf, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(1), info);
+  }
+
+  @Test
+  @DisplayName("Should report each item and insert consents and logs once per chunk")
+  void shouldCreateInChunksAndReportEachItem() {
+    when(mapper.toEntity(any(ConsentRequestCreateDTO.class)))
+        .thenAnswer(
+            invocation -> {
+              ConsentRequestCreateDTO dto = invocation.getArgument(0);
+              return Consent.builder().cpf(dto.cpf()).additionalInfo(dto.additionalInfo()).build();
+            });
+    when(repository.insertUnordered(anyList()))
+        .thenReturn(Flux.empty(), Flux.just(new BulkWriteFailure(0, "write failed")));
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    Flux<ConsentRequestCreateDTO> requests =
+        Flux.just(
+            request(VALID_CPF, "Info"), request("invalid-cpf", "Info"), request(VALID_CPF, "Info"));
+
+    StepVerifier.create(service.createAll(requests))
+        .expectNextMatches(r -> r.index() == 0 && r.status() == 201 && r.id() != null)
+        .expectNextMatches(r -> r.index() == 1 && r.status() == 400 && !r.errors().isEmpty())
+        .expectNextMatches(r -> r.index() == 2 && r.status() == 500 && r.id() == null)
+        .verifyComplete();
+
+    verify(repository, times(2)).insertUnordered(anyList());
+    verify(externalInfoClient, never()).fetchAdditionalInfo();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ConsentLog>> logCaptor = ArgumentCaptor.forClass(List.class);
+    verify(logRepository).appendAll(logCaptor.capture());
+    assertEquals(1, logCaptor.getValue().size());
+    assertEquals(ActionType.CREATED, logCaptor.getValue().get(0).getAction());
+  }
+
+  @Test
+  @DisplayName("Should fetch additional info once per chunk")
+  void shouldFetchAdditionalInfoOncePerChunk() {
+    when(mapper.toEntity(any(ConsentRequestCreateDTO.class)))
+        .thenAnswer(invocation -> Consent.builder().cpf(VALID_CPF).build());
+    when(externalInfoClient.fetchAdditionalInfo()).thenReturn(Mono.just("Fetched"));
+    when(repository.insertUnordered(anyList())).thenReturn(Flux.empty());
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    StepVerifier.create(
+            service.createAll(Flux.just(request(VALID_CPF, null), request(VALID_CPF, null))))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    verify(externalInfoClient, times(1)).fetchAdditionalInfo();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<Consent>> consentCaptor = ArgumentCaptor.forClass(List.class);
+    verify(repository).insertUnordered(consentCaptor.capture());
+    consentCaptor.getValue().forEach(c -> assertEquals("Fetched", c.getAdditionalInfo()));
+  }
+
+  @Test
+  @DisplayName("Should report created consents as failed with their ids when their logs fail")
+  void shouldReportUnauditedConsents() {
+    when(mapper.toEntity(any(ConsentRequestCreateDTO.class)))
+        .thenAnswer(invocation -> Consent.builder().cpf(VALID_CPF).additionalInfo("Info").build());
+    when(repository.insertUnordered(anyList())).thenReturn(Flux.empty());
+    when(logRepository.appendAll(anyList()))
+        .thenReturn(Flux.error(new IllegalStateException("log down")));
+
+    StepVerifier.create(
+            service.createAll(Flux.just(request(VALID_CPF, "Info"), request(VALID_CPF, "Info"))))
+        .expectNextMatches(r -> r.index() == 0 && r.status() == 500 && r.id() != null)
+        .expectNextMatches(
+            r -> r.index() == 1 && r.status() == 500 && r.message().contains("log down"))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Should report every item of a failed chunk and go on with the next one")
+  void shouldReportFailedChunkAndContinue() {
+    when(mapper.toEntity(any(ConsentRequestCreateDTO.class)))
+        .thenAnswer(invocation -> Consent.builder().cpf(VALID_CPF).additionalInfo("Info").build());
+    when(repository.insertUnordered(anyList()))
+        .thenReturn(Flux.error(new IllegalStateException("timed out")), Flux.empty());
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    Flux<ConsentRequestCreateDTO> requests =
+        Flux.just(
+            request(VALID_CPF, "Info"), request("invalid-cpf", "Info"), request(VALID_CPF, "Info"));
+
+    StepVerifier.create(service.createAll(requests))
+        .expectNextMatches(
+            r ->
+                r.index() == 0
+                    && r.status() == 500
+                    && r.id() != null
+                    && r.message().contains("timed out"))
+        .expectNextMatches(r -> r.index() == 1 && r.status() == 400)
+        .expectNextMatches(r -> r.index() == 2 && r.status() == 201)
+        .verifyComplete();
+  }
+}
@@ -0,0 +1,204 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sensedia.sample.consents.config.ConsentCacheProperties;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ConsentCacheUnitTest {
+
+  private static final UUID CONSENT_ID = UUID.randomUUID();
+
+  private SimpleMeterRegistry registry;
+  private ConsentCache cache;
+  private AtomicInteger loads;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    cache =
+        new ConsentCache(
+            new ConsentCacheProperties(
+                true, 100, Duration.ofMinutes(1), Duration.ZERO, 100, Duration.ofMinutes(1)),
+            registry);
+    loads = new AtomicInteger();
+  }
+
+  private Mono<Consent> load(Consent consent) {
+    return Mono.fromSupplier(
+        () -> {
+          loads.incrementAndGet();
+          return consent;
+        });
+  }
+
+  /** The version currently stored, null when the consent is not stored. */
+  private Integer currentVersion;
+
+  private final AtomicInteger versionChecks = new AtomicInteger();
+
+  private Mono<Integer> storedVersion(UUID id) {
+    return Mono.fromSupplier(
+        () -> {
+          versionChecks.incrementAndGet();
+          return currentVersion;
+        });
+  }
+
+  private static Consent consent(int version, ConsentStatus status) {
+    return Consent.builder().id(CONSENT_ID).version(version).status(status).build();
+  }
+
+  @Test
+  @DisplayName("Should load once and then serve from cache, recording hits and misses")
+  void shouldReadThrough() {
+    Consent stored = consent(0, ConsentStatus.ACTIVE);
+    currentVersion = 0;
+
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(stored), this::storedVersion))
+        .expectNext(stored)
+        .verifyComplete();
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(stored), this::storedVersion))
+        .expectNext(stored)
+        .verifyComplete();
+
+    assertEquals(1, loads.get());
+    assertEquals(
+        1,
+        registry
+            .get("cache.gets")
+            .tag("cache", "consents")
+            .tag("result", "hit")
+            .functionCounter()
+            .count());
+    assertEquals(
+        1,
+        registry
+            .get("cache.gets")
+            .tag("cache", "consents")
+            .tag("result", "miss")
+            .functionCounter()
+            .count());
+  }
+
+  @Test
+  @DisplayName("Should load again when the stored version moved past the cached one")
+  void shouldReloadStaleEntry() {
+    cache.refresh(consent(0, ConsentStatus.ACTIVE));
+    Consent revoked = consent(1, ConsentStatus.REVOKED);
+    currentVersion = 1;
+
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(revoked), this::storedVersion))
+        .expectNext(revoked)
+        .verifyComplete();
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(null), this::storedVersion))
+        .expectNext(revoked)
+        .verifyComplete();
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  @DisplayName("Should serve a recent entry without checking the stored version")
+  void shouldServeWithinStalenessBound() {
+    ConsentCache bounded =
+        new ConsentCache(
+            new ConsentCacheProperties(
+                true,
+                100,
+                Duration.ofMinutes(1),
+                Duration.ofMinutes(1),
+                100,
+                Duration.ofMinutes(1)),
+            registry);
+    Consent cached = consent(0, ConsentStatus.ACTIVE);
+    bounded.refresh(cached);
+    currentVersion = 1;
+
+    StepVerifier.create(bounded.get(CONSENT_ID, id -> load(null), this::storedVersion))
+        .expectNext(cached)
+        .verifyComplete();
+
+    assertEquals(0, versionChecks.get());
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  @DisplayName("Should stop serving a cached consent deleted elsewhere")
+  void shouldDropEntryDeletedElsewhere() {
+    cache.refresh(consent(0, ConsentStatus.ACTIVE));
+    currentVersion = null;
+
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(null), this::storedVersion))
+        .verifyComplete();
+
+    assertTrue(cache.isKnownAbsent(CONSENT_ID));
+  }
+
+  @Test
+  @DisplayName("Should keep the newest version when an older one arrives late")
+  void shouldNotReplaceNewerVersion() {
+    Consent updated = consent(2, ConsentStatus.REVOKED);
+    cache.refresh(updated);
+    cache.refresh(consent(1, ConsentStatus.ACTIVE));
+    currentVersion = 2;
+
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(null), this::storedVersion))
+        .expectNext(updated)
+        .verifyComplete();
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  @DisplayName("Should answer repeated lookups of an unknown id without calling the loader")
+  void shouldRememberMisses() {
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(null), this::storedVersion))
+        .verifyComplete();
+    StepVerifier.create(cache.get(CONSENT_ID, id -> load(null), this::storedVersion))
+        .verifyComplete();
+
+    assertEquals(1, loads.get());
+    assertTrue(cache.isKnownAbsent(CONSENT_ID));
+  }
+
+  @Test
+  @DisplayName("Should drop the cached copy and remember the id once it is marked absent")
+  void shouldMarkAbsent() {
+    cache.refresh(consent(0, ConsentStatus.ACTIVE));
+    cache.markAbsent(CONSENT_ID);
+
+    StepVerifier.create(
+            cache.get(
+                CONSENT_ID, id -> load(consent(0, ConsentStatus.ACTIVE)), this::storedVersion))
+        .verifyComplete();
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  @DisplayName("Should always call the loader when disabled")
+  void shouldBypassWhenDisabled() {
+    ConsentCache disabled =
+        new ConsentCache(
+            new ConsentCacheProperties(
+                false, 100, Duration.ofMinutes(1), Duration.ZERO, 100, Duration.ofMinutes(1)),
+            registry);
+    Consent stored = consent(0, ConsentStatus.ACTIVE);
+    disabled.refresh(stored);
+
+    disabled.get(CONSENT_ID, id -> load(stored), this::storedVersion).block();
+    disabled.get(CONSENT_ID, id -> load(stored), this::storedVersion).block();
+
+    assertEquals(2, loads.get());
+  }
+}
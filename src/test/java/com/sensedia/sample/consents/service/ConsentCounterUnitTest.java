@@ -0,0 +1,132 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.config.PaginationProperties;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.repository.ConsentFilter;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentCounterUnitTest {
+
+  @Mock private ConsentRepository repository;
+
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+  }
+
+  private ConsentCounter counter(CountStrategy strategy, Duration ttl) {
+    return new ConsentCounter(
+        repository, new PaginationProperties(strategy, ttl, 100, 500), registry);
+  }
+
+  private double served(CountStrategy strategy) {
+    return registry
+        .get("consents.list.count")
+        .tag("strategy", strategy.name().toLowerCase())
+        .counter()
+        .count();
+  }
+
+  @Test
+  @DisplayName("Should run an exact count when the strategy is EXACT")
+  void shouldCountExactly() {
+    when(repository.count()).thenReturn(Mono.just(7L));
+
+    StepVerifier.create(counter(CountStrategy.EXACT, Duration.ZERO).count(ConsentFilter.none()))
+        .expectNext(7L)
+        .verifyComplete();
+
+    assertEquals(1, served(CountStrategy.EXACT));
+  }
+
+  @Test
+  @DisplayName("Should use collection metadata when the strategy is ESTIMATED")
+  void shouldCountFromMetadata() {
+    when(repository.estimatedCount()).thenReturn(Mono.just(9L));
+
+    StepVerifier.create(counter(CountStrategy.ESTIMATED, Duration.ZERO).count(ConsentFilter.none()))
+        .expectNext(9L)
+        .verifyComplete();
+
+    verify(repository, never()).count();
+    assertEquals(1, served(CountStrategy.ESTIMATED));
+  }
+
+  @Test
+  @DisplayName("Should complete empty without touching Mongo when the strategy is NONE")
+  void shouldSkipCount() {
+    StepVerifier.create(counter(CountStrategy.NONE, Duration.ZERO).count(ConsentFilter.none()))
+        .verifyComplete();
+
+    verifyNoInteractions(repository);
+    assertEquals(1, served(CountStrategy.NONE));
+  }
+
+  @Test
+  @DisplayName("Should count a filtered list exactly when the strategy is EXACT")
+  void shouldCountFilteredExactly() {
+    ConsentFilter filter = new ConsentFilter(ConsentStatus.ACTIVE, null, null, null, null);
+    when(repository.countMatching(filter)).thenReturn(Mono.just(2L));
+
+    StepVerifier.create(counter(CountStrategy.EXACT, Duration.ZERO).count(filter))
+        .expectNext(2L)
+        .verifyComplete();
+
+    verify(repository, never()).count();
+  }
+
+  @Test
+  @DisplayName("Should not count a filtered list when the strategy avoids exact counts")
+  void shouldSkipFilteredCount() {
+    ConsentFilter filter = new ConsentFilter(ConsentStatus.ACTIVE, null, null, null, null);
+
+    StepVerifier.create(counter(CountStrategy.ESTIMATED, Duration.ZERO).count(filter))
+        .verifyComplete();
+
+    verifyNoInteractions(repository);
+    assertEquals(1, served(CountStrategy.NONE));
+  }
+
+  @Test
+  @DisplayName("Should serve the cached count while it is fresh")
+  void shouldServeCachedCount() {
+    when(repository.count()).thenReturn(Mono.just(3L));
+    ConsentCounter counter = counter(CountStrategy.CACHED, Duration.ofMinutes(5));
+
+    StepVerifier.create(counter.count(ConsentFilter.none())).expectNext(3L).verifyComplete();
+    StepVerifier.create(counter.count(ConsentFilter.none())).expectNext(3L).verifyComplete();
+
+    verify(repository, times(1)).count();
+    assertEquals(1, served(CountStrategy.EXACT));
+    assertEquals(1, served(CountStrategy.CACHED));
+  }
+
+  @Test
+  @DisplayName("Should serve the stale count and refresh it in the background once expired")
+  void shouldRefreshExpiredCountInBackground() {
+    when(repository.count()).thenReturn(Mono.just(3L), Mono.just(4L));
+    ConsentCounter counter = counter(CountStrategy.CACHED, Duration.ZERO);
+
+    StepVerifier.create(counter.count(ConsentFilter.none())).expectNext(3L).verifyComplete();
+    StepVerifier.create(counter.count(ConsentFilter.none())).expectNext(3L).verifyComplete();
+    StepVerifier.create(counter.count(ConsentFilter.none())).expectNext(4L).verifyComplete();
+
+    verify(repository, times(3)).count();
+  }
+}
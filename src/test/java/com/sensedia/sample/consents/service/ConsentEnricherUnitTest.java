@@ -0,0 +1,220 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.client.ExternalInfoClient;
+import com.sensedia.sample.consents.config.ConsentCacheProperties;
+import com.sensedia.sample.consents.config.EnrichmentProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.LeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentEnricherUnitTest {
+
+  private static final String INFO = "Fetched info";
+
+  @Mock private ConsentRepository repository;
+
+  @Mock private ConsentLogRepository logRepository;
+
+  @Mock private LeaseRepository leaseRepository;
+
+  @Mock private ExternalInfoClient externalInfoClient;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private ConsentEnricher enricher;
+
+  private ConsentEnricher enricher(int maxBatchSize, int queueCapacity) {
+    ConsentCache cache =
+        new ConsentCache(
+            new ConsentCacheProperties(
+                true, 10, Duration.ofMinutes(1), Duration.ZERO, 10, Duration.ofMinutes(1)),
+            registry);
+    enricher =
+        new ConsentEnricher(
+            repository,
+            logRepository,
+            leaseRepository,
+            externalInfoClient,
+            cache,
+            new EnrichmentProperties(
+                EnrichmentMode.DEFERRED,
+                maxBatchSize,
+                Duration.ofSeconds(1),
+                2,
+                queueCapacity,
+                Duration.ofMinutes(1),
+                Duration.ofMinutes(2)),
+            new TimeOrderedIdGenerator(),
+            registry);
+    return enricher;
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (enricher != null) {
+      enricher.close();
+    }
+  }
+
+  private void fillsEverything() {
+    when(externalInfoClient.fetchAdditionalInfoOrError()).thenReturn(Mono.just(INFO));
+    when(repository.fillAdditionalInfo(anyCollection(), anyString(), any(UUID.class)))
+        .thenAnswer(i -> Mono.just((long) i.<Collection<UUID>>getArgument(0).size()));
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+  }
+
+  private void holdsLease() {
+    when(leaseRepository.tryAcquire(eq(ConsentEnricher.LEASE), anyString(), any(Duration.class)))
+        .thenReturn(Mono.just(true));
+    lenient()
+        .when(leaseRepository.release(eq(ConsentEnricher.LEASE), anyString()))
+        .thenReturn(Mono.empty());
+  }
+
+  private double enrichedCount() {
+    return registry.get("consents.enrichment.enriched").counter().count();
+  }
+
+  @Test
+  @DisplayName("Should enrich queued consents in one batch and log each of them")
+  void shouldEnrichQueuedConsentsInBatches() {
+    fillsEverything();
+    ConsentEnricher enricher = enricher(2, 100);
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+
+    StepVerifier.create(enricher.submit(first).then(enricher.submit(second))).verifyComplete();
+    enricher.close();
+
+    verify(externalInfoClient, times(1)).fetchAdditionalInfoOrError();
+    verify(repository).fillAdditionalInfo(eq(List.of(first, second)), eq(INFO), any(UUID.class));
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ConsentLog>> logs = ArgumentCaptor.forClass(List.class);
+    verify(logRepository).appendAll(logs.capture());
+    assertEquals(
+        List.of(first, second), logs.getValue().stream().map(ConsentLog::getConsentId).toList());
+    assertTrue(logs.getValue().stream().allMatch(log -> log.getAction() == ActionType.ENRICHED));
+    assertEquals(2, enrichedCount());
+  }
+
+  @Test
+  @DisplayName("Should log only the consents that were still pending")
+  void shouldLogOnlyEnrichedConsents() {
+    ConsentEnricher enricher = enricher(10, 100);
+    UUID enrichedId = UUID.randomUUID();
+    UUID updatedId = UUID.randomUUID();
+    when(externalInfoClient.fetchAdditionalInfoOrError()).thenReturn(Mono.just(INFO));
+    when(repository.fillAdditionalInfo(
+            eq(List.of(enrichedId, updatedId)), eq(INFO), any(UUID.class)))
+        .thenReturn(Mono.just(1L));
+    when(repository.findEnrichedIds(eq(List.of(enrichedId, updatedId)), any(UUID.class)))
+        .thenReturn(Flux.just(enrichedId));
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    StepVerifier.create(enricher.enrich(List.of(enrichedId, updatedId)))
+        .expectNext(1L)
+        .verifyComplete();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ConsentLog>> logs = ArgumentCaptor.forClass(List.class);
+    verify(logRepository).appendAll(logs.capture());
+    assertEquals(
+        List.of(enrichedId), logs.getValue().stream().map(ConsentLog::getConsentId).toList());
+    ArgumentCaptor<UUID> filledBy = ArgumentCaptor.forClass(UUID.class);
+    ArgumentCaptor<UUID> loggedBy = ArgumentCaptor.forClass(UUID.class);
+    verify(repository).fillAdditionalInfo(anyCollection(), anyString(), filledBy.capture());
+    verify(repository).findEnrichedIds(anyCollection(), loggedBy.capture());
+    assertEquals(filledBy.getValue(), loggedBy.getValue());
+  }
+
+  @Test
+  @DisplayName("Should enrich in the caller when the queue is full")
+  void shouldEnrichInCallerWhenQueueIsFull() {
+    fillsEverything();
+    ConsentEnricher enricher = enricher(10, 0);
+    UUID id = UUID.randomUUID();
+
+    StepVerifier.create(enricher.submit(id)).verifyComplete();
+
+    verify(repository).fillAdditionalInfo(eq(List.of(id)), eq(INFO), any(UUID.class));
+    assertEquals(1, registry.get("consents.enrichment.overflow").counter().count());
+    assertEquals(1, enrichedCount());
+  }
+
+  @Test
+  @DisplayName("Should enrich consents pending for longer than the sweep interval")
+  void shouldSweepPendingConsents() {
+    fillsEverything();
+    holdsLease();
+    ConsentEnricher enricher = enricher(10, 100);
+    UUID id = UUID.randomUUID();
+    when(repository.findPendingEnrichmentIds(any(LocalDateTime.class))).thenReturn(Flux.just(id));
+
+    enricher.startSweep();
+
+    verify(repository, timeout(1000))
+        .fillAdditionalInfo(eq(List.of(id)), eq(INFO), any(UUID.class));
+    ArgumentCaptor<LocalDateTime> createdBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+    verify(repository).findPendingEnrichmentIds(createdBefore.capture());
+    assertTrue(createdBefore.getValue().isBefore(LocalDateTime.now().minusSeconds(59)));
+  }
+
+  @Test
+  @DisplayName("Should leave a failed batch pending for the next sweep")
+  void shouldRetryFailedBatchOnNextSweep() {
+    holdsLease();
+    ConsentEnricher enricher = enricher(10, 100);
+    UUID id = UUID.randomUUID();
+    when(repository.findPendingEnrichmentIds(any(LocalDateTime.class))).thenReturn(Flux.just(id));
+    when(externalInfoClient.fetchAdditionalInfoOrError())
+        .thenReturn(Mono.error(new IllegalStateException("down")), Mono.just(INFO));
+    when(repository.fillAdditionalInfo(anyCollection(), anyString(), any(UUID.class)))
+        .thenReturn(Mono.just(1L));
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    StepVerifier.create(enricher.sweepPending()).expectNext(0L).verifyComplete();
+    StepVerifier.create(enricher.sweepPending()).expectNext(1L).verifyComplete();
+
+    verify(repository).fillAdditionalInfo(eq(List.of(id)), eq(INFO), any(UUID.class));
+    assertEquals(1, enrichedCount());
+  }
+
+  @Test
+  @DisplayName("Should not sweep while another instance holds the lease")
+  void shouldNotSweepWithoutLease() {
+    ConsentEnricher enricher = enricher(10, 100);
+    when(leaseRepository.tryAcquire(eq(ConsentEnricher.LEASE), anyString(), any(Duration.class)))
+        .thenReturn(Mono.just(false));
+
+    StepVerifier.create(enricher.sweepPending()).expectNext(0L).verifyComplete();
+
+    verify(repository, never()).findPendingEnrichmentIds(any(LocalDateTime.class));
+    verify(leaseRepository, never()).release(anyString(), anyString());
+  }
+}
@@ -0,0 +1,133 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.config.ConsentCacheProperties;
+import com.sensedia.sample.consents.config.ExpirationProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.Consent;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.LeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentExpirationSweeperUnitTest {
+
+  @Mock private ConsentRepository repository;
+
+  @Mock private ConsentLogRepository logRepository;
+
+  @Mock private LeaseRepository leaseRepository;
+
+  private SimpleMeterRegistry registry;
+  private ConsentExpirationSweeper sweeper;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    ConsentCache cache =
+        new ConsentCache(
+            new ConsentCacheProperties(
+                true, 10, Duration.ofMinutes(1), Duration.ZERO, 10, Duration.ofMinutes(1)),
+            registry);
+    sweeper =
+        new ConsentExpirationSweeper(
+            repository,
+            logRepository,
+            leaseRepository,
+            cache,
+            new ExpirationProperties(
+                true, Duration.ofMinutes(1), 2, Duration.ZERO, Duration.ofMinutes(1)),
+            new TimeOrderedIdGenerator(),
+            registry);
+  }
+
+  private double expiredCount() {
+    return registry.get("consents.expiration.expired").counter().count();
+  }
+
+  @Test
+  @DisplayName("Should expire in chunks, log each consent and release the lease")
+  void shouldExpireInChunks() {
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+    UUID third = UUID.randomUUID();
+    when(leaseRepository.tryAcquire(eq(ConsentExpirationSweeper.LEASE), anyString(), any()))
+        .thenReturn(Mono.just(true));
+    when(leaseRepository.release(eq(ConsentExpirationSweeper.LEASE), anyString()))
+        .thenReturn(Mono.empty());
+    when(repository.findExpiredIds(any(), eq(2)))
+        .thenReturn(Flux.just(first, second), Flux.just(third));
+    when(repository.markExpired(anyList(), any()))
+        .thenAnswer(invocation -> Mono.just((long) invocation.<List<UUID>>getArgument(0).size()));
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    StepVerifier.create(sweeper.sweep()).expectNext(3L).verifyComplete();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ConsentLog>> logsCaptor = ArgumentCaptor.forClass(List.class);
+    verify(logRepository, times(2)).appendAll(logsCaptor.capture());
+    List<ConsentLog> logs = logsCaptor.getAllValues().stream().flatMap(List::stream).toList();
+    assertEquals(
+        List.of(first, second, third), logs.stream().map(ConsentLog::getConsentId).toList());
+    assertTrue(logs.stream().allMatch(log -> log.getAction() == ActionType.EXPIRED));
+    verify(leaseRepository).release(eq(ConsentExpirationSweeper.LEASE), anyString());
+    assertEquals(3, expiredCount());
+  }
+
+  @Test
+  @DisplayName("Should only log the consents that were still expirable when updated")
+  void shouldConfirmPartialUpdates() {
+    UUID expired = UUID.randomUUID();
+    UUID renewed = UUID.randomUUID();
+    when(leaseRepository.tryAcquire(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+    when(leaseRepository.release(anyString(), anyString())).thenReturn(Mono.empty());
+    when(repository.findExpiredIds(any(), anyInt()))
+        .thenReturn(Flux.just(expired, renewed), Flux.empty());
+    when(repository.markExpired(anyList(), any())).thenReturn(Mono.just(1L));
+    when(repository.findAllById(List.of(expired, renewed)))
+        .thenReturn(
+            Flux.just(
+                Consent.builder().id(expired).status(ConsentStatus.EXPIRED).build(),
+                Consent.builder().id(renewed).status(ConsentStatus.ACTIVE).build()));
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+
+    StepVerifier.create(sweeper.sweep()).expectNext(1L).verifyComplete();
+
+    assertEquals(1, expiredCount());
+  }
+
+  @Test
+  @DisplayName("Should do nothing when another instance holds the lease")
+  void shouldSkipWithoutLease() {
+    when(leaseRepository.tryAcquire(anyString(), anyString(), any())).thenReturn(Mono.just(false));
+
+    StepVerifier.create(sweeper.sweep()).expectNext(0L).verifyComplete();
+
+    verifyNoInteractions(repository, logRepository);
+    verify(leaseRepository, never()).release(anyString(), anyString());
+  }
+}
@@ -0,0 +1,137 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.config.RetentionProperties;
+import com.sensedia.sample.consents.repository.ConsentLogBuckets;
+import com.sensedia.sample.consents.repository.LeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentLogArchiverUnitTest {
+
+  private static final String BUCKET = "consent_logs_2024_01";
+
+  @Mock private ConsentLogBuckets buckets;
+
+  @Mock private LeaseRepository leaseRepository;
+
+  @TempDir Path archiveDirectory;
+
+  private SimpleMeterRegistry registry;
+  private ConsentLogArchiver archiver;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    archiver =
+        new ConsentLogArchiver(
+            buckets,
+            leaseRepository,
+            new RetentionProperties(
+                true,
+                Duration.ofDays(400),
+                Duration.ofHours(1),
+                archiveDirectory,
+                Duration.ofHours(1)),
+            registry);
+  }
+
+  private void leaseHeld(boolean held) {
+    when(leaseRepository.tryAcquire(eq(ConsentLogArchiver.LEASE), anyString(), any()))
+        .thenReturn(Mono.just(held));
+  }
+
+  private List<String> readArchive(Path file) throws IOException {
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      return reader.lines().toList();
+    }
+  }
+
+  @Test
+  @DisplayName("Should write each expired bucket to a gzipped NDJSON file before dropping it")
+  void shouldArchiveThenDrop() throws IOException {
+    UUID consentId = UUID.randomUUID();
+    leaseHeld(true);
+    when(leaseRepository.release(eq(ConsentLogArchiver.LEASE), anyString()))
+        .thenReturn(Mono.empty());
+    when(buckets.bucketsBefore(any())).thenReturn(Flux.just(BUCKET));
+    when(buckets.documents(eq(BUCKET), anyInt()))
+        .thenReturn(
+            Flux.just(
+                new Document("action", "CREATED").append("consentId", consentId.toString()),
+                new Document("action", "DELETED").append("consentId", consentId.toString())));
+    when(buckets.drop(BUCKET)).thenReturn(Mono.empty());
+
+    StepVerifier.create(archiver.archiveExpired()).expectNext(2L).verifyComplete();
+
+    List<String> lines = readArchive(archiveDirectory.resolve(BUCKET + ".ndjson.gz"));
+    assertEquals(2, lines.size());
+    assertEquals("CREATED", Document.parse(lines.get(0)).getString("action"));
+    assertEquals(consentId.toString(), Document.parse(lines.get(1)).getString("consentId"));
+    assertFalse(Files.exists(archiveDirectory.resolve(BUCKET + ".ndjson.gz.part")));
+    assertEquals(2, registry.get("consents.audit.archived").counter().count());
+    verify(buckets).drop(BUCKET);
+  }
+
+  @Test
+  @DisplayName("Should keep the bucket and leave no finished archive when reading fails")
+  void shouldKeepBucketWhenReadingFails() {
+    leaseHeld(true);
+    when(leaseRepository.release(eq(ConsentLogArchiver.LEASE), anyString()))
+        .thenReturn(Mono.empty());
+    when(buckets.bucketsBefore(any())).thenReturn(Flux.just(BUCKET));
+    when(buckets.documents(eq(BUCKET), anyInt()))
+        .thenReturn(
+            Flux.concat(
+                Flux.just(new Document("action", "CREATED")),
+                Flux.error(new IllegalStateException("cursor killed"))));
+
+    StepVerifier.create(archiver.archiveExpired()).expectNext(0L).verifyComplete();
+
+    assertFalse(Files.exists(archiveDirectory.resolve(BUCKET + ".ndjson.gz")));
+    verify(buckets, never()).drop(anyString());
+    verify(leaseRepository).release(eq(ConsentLogArchiver.LEASE), anyString());
+  }
+
+  @Test
+  @DisplayName("Should do nothing when another instance holds the lease")
+  void shouldSkipWithoutLease() {
+    leaseHeld(false);
+
+    StepVerifier.create(archiver.archiveExpired()).expectNext(0L).verifyComplete();
+
+    verifyNoInteractions(buckets);
+    verify(leaseRepository, never()).release(anyString(), anyString());
+  }
+}
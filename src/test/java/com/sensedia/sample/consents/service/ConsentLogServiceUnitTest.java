@@ -0,0 +1,107 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.dto.ConsentLogResponseDTO;
+import com.sensedia.sample.consents.mapper.ConsentLogMapper;
+import com.sensedia.sample.consents.repository.ConsentLogCursor;
+import com.sensedia.sample.consents.repository.ConsentLogFilter;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentLogServiceUnitTest {
+
+  private static final UUID CONSENT_ID = UUID.randomUUID();
+  private static final ConsentLogFilter FILTER = new ConsentLogFilter(CONSENT_ID, null, null);
+
+  @Mock private ConsentLogRepository repository;
+
+  @Mock private ConsentLogMapper mapper;
+
+  @InjectMocks private ConsentLogService service;
+
+  private static ConsentLog entry(LocalDateTime timestamp) {
+    return ConsentLog.builder()
+        .id(UUID.randomUUID())
+        .consentId(CONSENT_ID)
+        .action(ActionType.UPDATED)
+        .timestamp(timestamp)
+        .build();
+  }
+
+  private void mapEntries() {
+    when(mapper.toResponseDTO(any(ConsentLog.class)))
+        .thenAnswer(
+            invocation -> {
+              ConsentLog log = invocation.getArgument(0);
+              return new ConsentLogResponseDTO(
+                  log.getId(), log.getConsentId(), log.getAction(), log.getTimestamp(), null);
+            });
+  }
+
+  @Test
+  @DisplayName("Should return the first page and a cursor positioned on its last entry")
+  void shouldReturnFirstPageWithCursor() {
+    LocalDateTime now = LocalDateTime.now();
+    ConsentLog first = entry(now.minusMinutes(2));
+    ConsentLog second = entry(now.minusMinutes(1));
+    when(repository.findAllAfter(FILTER, null, 2)).thenReturn(Flux.just(first, second, entry(now)));
+    mapEntries();
+
+    StepVerifier.create(service.getAllAfter(FILTER, null, 1))
+        .assertNext(
+            page -> {
+              assertEquals(1, page.content().size());
+              assertTrue(page.hasNext());
+              assertEquals(ConsentLogCursor.after(first).encode(), page.nextCursor());
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Should continue after the cursor and stop on the last page")
+  void shouldContinueAfterCursor() {
+    ConsentLog last = entry(LocalDateTime.now());
+    ConsentLogCursor cursor =
+        new ConsentLogCursor(LocalDateTime.now().minusMinutes(1), UUID.randomUUID());
+    when(repository.findAllAfter(FILTER, cursor, 3)).thenReturn(Flux.just(last));
+    mapEntries();
+
+    StepVerifier.create(service.getAllAfter(FILTER, cursor.encode(), 2))
+        .assertNext(
+            page -> {
+              assertEquals(1, page.content().size());
+              assertFalse(page.hasNext());
+              assertNull(page.nextCursor());
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Should reject a malformed cursor")
+  void shouldRejectMalformedCursor() {
+    StepVerifier.create(service.getAllAfter(FILTER, "not-a-cursor", 2))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verify(repository, never()).findAllAfter(any(), any(), anyInt());
+  }
+}
@@ -0,0 +1,140 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.config.AuditProperties;
+import com.sensedia.sample.consents.domain.ActionType;
+import com.sensedia.sample.consents.domain.ConsentLog;
+import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentLogStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConsentLogWriterUnitTest {
+
+  @Mock private ConsentLogRepository logRepository;
+
+  private SimpleMeterRegistry registry;
+
+  private ConsentLogWriter writer;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (writer != null) {
+      writer.close();
+    }
+  }
+
+  private ConsentLogWriter writer(AuditDurability durability, int maxBatchSize, int capacity) {
+    writer =
+        new ConsentLogWriter(
+            logRepository,
+            new AuditProperties(
+                durability,
+                maxBatchSize,
+                Duration.ofMillis(50),
+                capacity,
+                ConsentLogStorage.SINGLE),
+            registry);
+    return writer;
+  }
+
+  private static ConsentLog entry() {
+    return ConsentLog.builder()
+        .id(UUID.randomUUID())
+        .consentId(UUID.randomUUID())
+        .action(ActionType.CREATED)
+        .build();
+  }
+
+  @Test
+  @DisplayName("Should insert each entry directly when durability is SYNC")
+  void shouldInsertDirectlyWhenSync() {
+    ConsentLog entry = entry();
+    when(logRepository.append(entry)).thenReturn(Mono.just(entry));
+
+    StepVerifier.create(writer(AuditDurability.SYNC, 10, 10).write(entry)).verifyComplete();
+
+    verify(logRepository).append(entry);
+    verify(logRepository, never()).appendAll(anyList());
+  }
+
+  @Test
+  @DisplayName("Should flush concurrent entries in one insert and complete each caller after it")
+  void shouldGroupCommitConcurrentEntries() {
+    when(logRepository.appendAll(anyList())).thenAnswer(i -> Flux.fromIterable(i.getArgument(0)));
+    ConsentLogWriter writer = writer(AuditDurability.GROUP_COMMIT, 3, 10);
+
+    StepVerifier.create(
+            Flux.merge(IntStream.range(0, 3).mapToObj(i -> writer.write(entry())).toList()))
+        .verifyComplete();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ConsentLog>> batchCaptor = ArgumentCaptor.forClass(List.class);
+    verify(logRepository).appendAll(batchCaptor.capture());
+    assertEquals(3, batchCaptor.getValue().size());
+  }
+
+  @Test
+  @DisplayName("Should propagate a failed flush to the callers waiting on it")
+  void shouldFailCallersWhenFlushFails() {
+    when(logRepository.appendAll(anyList()))
+        .thenReturn(Flux.error(new IllegalStateException("down")));
+
+    StepVerifier.create(writer(AuditDurability.GROUP_COMMIT, 1, 10).write(entry()))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+
+  @Test
+  @DisplayName("Should return before the flush when durability is FIRE_AND_FORGET")
+  void shouldNotWaitForFlushWhenFireAndForget() {
+    Sinks.Empty<Void> flush = Sinks.empty();
+    when(logRepository.appendAll(anyList())).thenReturn(flush.asMono().thenMany(Flux.empty()));
+
+    StepVerifier.create(writer(AuditDurability.FIRE_AND_FORGET, 1, 10).write(entry()))
+        .verifyComplete();
+
+    flush.tryEmitEmpty();
+  }
+
+  @Test
+  @DisplayName("Should write directly and count the overflow when the queue is full")
+  void shouldFallBackToDirectInsertOnOverflow() {
+    Sinks.Empty<Void> flush = Sinks.empty();
+    when(logRepository.appendAll(anyList())).thenReturn(flush.asMono().thenMany(Flux.empty()));
+    when(logRepository.append(any(ConsentLog.class))).thenAnswer(i -> Mono.just(i.getArgument(0)));
+    ConsentLogWriter writer = writer(AuditDurability.FIRE_AND_FORGET, 1, 1);
+
+    StepVerifier.create(writer.write(entry())).verifyComplete();
+    StepVerifier.create(writer.write(entry())).verifyComplete();
+
+    verify(logRepository).append(any(ConsentLog.class));
+    assertEquals(1, registry.get("consents.audit.overflow").counter().count());
+    flush.tryEmitEmpty();
+  }
+}
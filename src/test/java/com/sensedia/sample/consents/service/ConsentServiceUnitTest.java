@@ -1,25 +1,39 @@
 package com.sensedia.sample.consents.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 import com.sensedia.sample.consents.client.ExternalInfoClient;
+import com.sensedia.sample.consents.config.ConsentCacheProperties;
 import com.sensedia.sample.consents.domain.ActionType;
 import com.sensedia.sample.consents.domain.Consent;
 import com.sensedia.sample.consents.domain.ConsentLog;
 import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.dto.ConsentCheckStatus;
 import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
 import com.sensedia.sample.consents.dto.ConsentRequestUpdateDTO;
 import com.sensedia.sample.consents.dto.ConsentResponseDTO;
 import com.sensedia.sample.consents.dto.PageDTO;
+import com.sensedia.sample.consents.exception.PreconditionFailedException;
 import com.sensedia.sample.consents.exception.ResourceNotFoundException;
 import com.sensedia.sample.consents.mapper.ConsentMapper;
-import com.sensedia.sample.consents.repository.ConsentLogRepository;
+import com.sensedia.sample.consents.repository.ConsentCursor;
+import com.sensedia.sample.consents.repository.ConsentFilter;
 import com.sensedia.sample.consents.repository.ConsentRepository;
+import com.sensedia.sample.consents.repository.ConsentSortField;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import org.bson.Document;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -27,9 +41,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.IdGenerator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -42,14 +60,49 @@ class ConsentServiceUnitTest {
 
   @Mock private ConsentRepository repository;
 
-  @Mock private ConsentLogRepository logRepository;
+  @Mock private ConsentLogWriter logWriter;
 
   @Mock private ConsentMapper mapper;
 
   @Mock private ExternalInfoClient externalInfoClient;
 
+  @Mock private ConsentCounter counter;
+
+  @Mock private ConsentEnricher enricher;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Spy
+  private ConsentCache cache =
+      new ConsentCache(
+          new ConsentCacheProperties(false, 0, Duration.ZERO, Duration.ZERO, 0, Duration.ZERO),
+          meterRegistry);
+
+  @Spy private IdGenerator idGenerator = new TimeOrderedIdGenerator();
+
+  @Spy private ConsentTimers timers = new ConsentTimers(meterRegistry);
+
   @InjectMocks private ConsentService service;
 
+  private long timed(String operation, String outcome) {
+    return meterRegistry
+        .get("consents.service")
+        .tag("operation", operation)
+        .tag("outcome", outcome)
+        .timer()
+        .count();
+  }
+
+  private long timedStage(String operation, String stage) {
+    return meterRegistry
+        .get("consents.service.stage")
+        .tag("operation", operation)
+        .tag("stage", stage)
+        .tag("outcome", "success")
+        .timer()
+        .count();
+  }
+
   @Test
   @DisplayName("Should create consent without calling external API when additionalInfo is provided")
   void shouldCreateConsentWhenInfoIsProvided() {
@@ -69,7 +122,7 @@ class ConsentServiceUnitTest {
 
     when(mapper.toEntity(request)).thenReturn(consentFromMapper);
     when(repository.save(any(Consent.class))).thenReturn(Mono.just(savedConsent));
-    when(logRepository.save(any(ConsentLog.class))).thenReturn(Mono.just(new ConsentLog()));
+    when(logWriter.write(any(ConsentLog.class))).thenReturn(Mono.empty());
     when(mapper.toResponseDTO(savedConsent)).thenReturn(responseDTO);
 
     Mono<ConsentResponseDTO> resultMono = service.create(request);
@@ -78,7 +131,11 @@ class ConsentServiceUnitTest {
 
     verify(externalInfoClient, never()).fetchAdditionalInfo();
     verify(repository).save(any(Consent.class));
-    verify(logRepository).save(any(ConsentLog.class));
+    verify(logWriter).write(any(ConsentLog.class));
+    assertEquals(1, timed("create", "success"));
+    for (String stage : List.of("fetch_info", "save", "log", "enrich")) {
+      assertEquals(1, timedStage("create", stage), stage);
+    }
   }
 
   @Test
@@ -102,7 +159,7 @@ class ConsentServiceUnitTest {
     when(externalInfoClient.fetchAdditionalInfo()).thenReturn(Mono.just(fetchedInfo));
     when(mapper.toEntity(request)).thenReturn(consentFromMapper);
     when(repository.save(any(Consent.class))).thenReturn(Mono.just(savedConsent));
-    when(logRepository.save(any(ConsentLog.class))).thenReturn(Mono.just(new ConsentLog()));
+    when(logWriter.write(any(ConsentLog.class))).thenReturn(Mono.empty());
     when(mapper.toResponseDTO(savedConsent)).thenReturn(responseDTO);
 
     Mono<ConsentResponseDTO> resultMono = service.create(request);
@@ -111,7 +168,37 @@ class ConsentServiceUnitTest {
 
     verify(externalInfoClient, times(1)).fetchAdditionalInfo();
     verify(repository).save(any(Consent.class));
-    verify(logRepository).save(any(ConsentLog.class));
+    verify(logWriter).write(any(ConsentLog.class));
+  }
+
+  @Test
+  @DisplayName("Should save a pending consent and queue it for enrichment when deferred")
+  void shouldDeferEnrichmentWhenInfoIsNull() {
+    ConsentRequestCreateDTO request =
+        new ConsentRequestCreateDTO(
+            VALID_CPF, ConsentStatus.ACTIVE, LocalDateTime.now().plusDays(1), null);
+
+    Consent consentFromMapper = Consent.builder().cpf(VALID_CPF).additionalInfo(null).build();
+
+    ConsentResponseDTO responseDTO =
+        new ConsentResponseDTO(
+            CONSENT_ID, VALID_CPF, ConsentStatus.ACTIVE, LocalDateTime.now(), null, null);
+
+    when(enricher.isDeferred()).thenReturn(true);
+    when(enricher.submit(any(UUID.class))).thenReturn(Mono.empty());
+    when(mapper.toEntity(request)).thenReturn(consentFromMapper);
+    when(repository.save(any(Consent.class))).thenAnswer(i -> Mono.just(i.getArgument(0)));
+    when(logWriter.write(any(ConsentLog.class))).thenReturn(Mono.empty());
+    when(mapper.toResponseDTO(any(Consent.class))).thenReturn(responseDTO);
+
+    StepVerifier.create(service.create(request)).expectNext(responseDTO).verifyComplete();
+
+    ArgumentCaptor<Consent> saved = ArgumentCaptor.forClass(Consent.class);
+    verify(repository).save(saved.capture());
+    assertNull(saved.getValue().getAdditionalInfo());
+    assertEquals(true, saved.getValue().getEnrichmentPending());
+    verify(enricher).submit(saved.getValue().getId());
+    verify(externalInfoClient, never()).fetchAdditionalInfo();
   }
 
   @Nested
@@ -120,16 +207,16 @@ class ConsentServiceUnitTest {
     @Test
     @DisplayName("Should return consent when found")
     void shouldReturnConsentWhenFound() {
-      Consent foundConsent = Consent.builder().id(CONSENT_ID).build();
+      Consent foundConsent = Consent.builder().id(CONSENT_ID).version(2).build();
       ConsentResponseDTO responseDTO =
           new ConsentResponseDTO(CONSENT_ID, null, null, null, null, null);
 
       when(repository.findById(CONSENT_ID)).thenReturn(Mono.just(foundConsent));
       when(mapper.toResponseDTO(foundConsent)).thenReturn(responseDTO);
 
-      Mono<ConsentResponseDTO> resultMono = service.getById(CONSENT_ID.toString());
+      Mono<Versioned<ConsentResponseDTO>> resultMono = service.getById(CONSENT_ID.toString());
 
-      StepVerifier.create(resultMono).expectNext(responseDTO).verifyComplete();
+      StepVerifier.create(resultMono).expectNext(new Versioned<>(responseDTO, 2)).verifyComplete();
     }
 
     @Test
@@ -137,11 +224,109 @@ class ConsentServiceUnitTest {
     void shouldReturnErrorWhenNotFound() {
       when(repository.findById(CONSENT_ID)).thenReturn(Mono.empty());
 
-      Mono<ConsentResponseDTO> resultMono = service.getById(CONSENT_ID.toString());
+      Mono<Versioned<ConsentResponseDTO>> resultMono = service.getById(CONSENT_ID.toString());
 
-      StepVerifier.create(resultMono).expectError(ResourceNotFoundException.class).verify();
+      StepVerifier.create(resultMono)
+          .expectErrorSatisfies(
+              error -> {
+                assertInstanceOf(ResourceNotFoundException.class, error);
+                assertEquals(0, error.getStackTrace().length);
+              })
+          .verify();
 
       verify(mapper, never()).toResponseDTO(any());
+      assertEquals(1, timed("get_by_id", "not_found"));
+      assertEquals(1, timedStage("get_by_id", "find"));
+    }
+
+    @Test
+    @DisplayName("Should read only the version, even when the consent is cached")
+    void shouldProjectVersion() {
+      cache.refresh(Consent.builder().id(CONSENT_ID).version(3).build());
+      when(repository.findVersionById(CONSENT_ID)).thenReturn(Mono.just(4));
+
+      StepVerifier.create(service.getVersion(CONSENT_ID.toString())).expectNext(4).verifyComplete();
+
+      verify(repository, never()).findById(any(UUID.class));
+    }
+  }
+
+  @Nested
+  @DisplayName("Get By CPF Tests")
+  class GetByCpf {
+    @Test
+    @DisplayName("Should look up the consents of the CPF by its digits")
+    void shouldFindByNormalizedCpf() {
+      String digits = "12345678900";
+      Consent found = Consent.builder().id(CONSENT_ID).cpf(digits).build();
+      ConsentResponseDTO expected =
+          new ConsentResponseDTO(CONSENT_ID, digits, ConsentStatus.ACTIVE, null, null, null);
+
+      when(repository.findByCpf(digits, ConsentStatus.ACTIVE)).thenReturn(Flux.just(found));
+      when(mapper.toResponseDTO(found)).thenReturn(expected);
+
+      StepVerifier.create(service.getByCpf(VALID_CPF, ConsentStatus.ACTIVE))
+          .expectNext(expected)
+          .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should reject a CPF without 11 digits")
+    void shouldRejectMalformedCpf() {
+      StepVerifier.create(service.getByCpf("123", null))
+          .expectError(IllegalArgumentException.class)
+          .verify();
+
+      verify(repository, never()).findByCpf(any(), any());
+    }
+  }
+
+  @Nested
+  @DisplayName("Status Check Tests")
+  class StatusCheck {
+    @Test
+    @DisplayName("Should report each CPF once, preferring active over expired over revoked")
+    void shouldReportMostFavourableStatusPerCpf() {
+      String revokedAndActive = "12345678900";
+      String expiredByDate = "66052705094";
+      String absent = "01234567890";
+      LocalDateTime past = LocalDateTime.now().minusDays(1);
+
+      when(repository.findStatusesByCpfIn(Set.of(revokedAndActive, expiredByDate, absent)))
+          .thenReturn(
+              Flux.just(
+                  Consent.builder().cpf(revokedAndActive).status(ConsentStatus.REVOKED).build(),
+                  Consent.builder().cpf(revokedAndActive).status(ConsentStatus.ACTIVE).build(),
+                  Consent.builder()
+                      .cpf(expiredByDate)
+                      .status(ConsentStatus.ACTIVE)
+                      .expirationDateTime(past)
+                      .build(),
+                  Consent.builder().cpf(expiredByDate).status(ConsentStatus.REVOKED).build()));
+
+      StepVerifier.create(
+              service.checkStatus(List.of(VALID_CPF, "660.527.050-94", absent, revokedAndActive)))
+          .assertNext(
+              response -> {
+                assertEquals(
+                    List.of(revokedAndActive, expiredByDate, absent),
+                    List.copyOf(response.statuses().keySet()));
+                assertEquals(ConsentCheckStatus.ACTIVE, response.statuses().get(revokedAndActive));
+                assertEquals(ConsentCheckStatus.EXPIRED, response.statuses().get(expiredByDate));
+                assertEquals(ConsentCheckStatus.ABSENT, response.statuses().get(absent));
+              })
+          .verifyComplete();
+      verify(repository, times(1)).findStatusesByCpfIn(any());
+    }
+
+    @Test
+    @DisplayName("Should reject the batch when a CPF is malformed")
+    void shouldRejectMalformedCpf() {
+      StepVerifier.create(service.checkStatus(List.of(VALID_CPF, "123")))
+          .expectError(IllegalArgumentException.class)
+          .verify();
+
+      verify(repository, never()).findStatusesByCpfIn(any());
     }
   }
 
@@ -149,29 +334,36 @@ class ConsentServiceUnitTest {
   @DisplayName("Update Consent Tests")
   class UpdateConsent {
     @Test
-    @DisplayName("Should update, log, and return consent successfully")
+    @DisplayName("Should update in one round trip, log, and return consent successfully")
     void shouldUpdateAndLogConsent() {
       ConsentRequestUpdateDTO request =
-          new ConsentRequestUpdateDTO(null, ConsentStatus.REVOKED, null, null);
-      Consent existingConsent =
-          Consent.builder().id(CONSENT_ID).status(ConsentStatus.ACTIVE).build();
-      Consent mergedConsent =
-          Consent.builder().id(CONSENT_ID).status(ConsentStatus.REVOKED).build();
+          new ConsentRequestUpdateDTO(VALID_CPF, ConsentStatus.REVOKED, null, null);
+      Consent updatedConsent =
+          Consent.builder().id(CONSENT_ID).status(ConsentStatus.REVOKED).version(1).build();
       ConsentResponseDTO responseDTO =
           new ConsentResponseDTO(CONSENT_ID, null, ConsentStatus.REVOKED, null, null, null);
 
-      when(repository.findById(CONSENT_ID)).thenReturn(Mono.just(existingConsent));
-      when(mapper.merge(request, existingConsent)).thenReturn(mergedConsent);
-      when(repository.save(mergedConsent)).thenReturn(Mono.just(mergedConsent));
-      when(logRepository.save(any(ConsentLog.class))).thenReturn(Mono.just(new ConsentLog()));
-      when(mapper.toResponseDTO(mergedConsent)).thenReturn(responseDTO);
+      when(repository.updateFields(eq(CONSENT_ID), any(Update.class), isNull()))
+          .thenReturn(Mono.just(updatedConsent));
+      when(logWriter.write(any(ConsentLog.class))).thenReturn(Mono.empty());
+      when(mapper.toResponseDTO(updatedConsent)).thenReturn(responseDTO);
 
-      Mono<ConsentResponseDTO> resultMono = service.update(CONSENT_ID.toString(), request);
+      Mono<Versioned<ConsentResponseDTO>> resultMono =
+          service.update(CONSENT_ID.toString(), request, null);
 
-      StepVerifier.create(resultMono).expectNext(responseDTO).verifyComplete();
+      StepVerifier.create(resultMono).expectNext(new Versioned<>(responseDTO, 1)).verifyComplete();
+
+      ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+      verify(repository).updateFields(eq(CONSENT_ID), updateCaptor.capture(), isNull());
+      Document set = (Document) updateCaptor.getValue().getUpdateObject().get("$set");
+      assertEquals(Set.of("cpf", "status"), set.keySet());
+      assertEquals("12345678900", set.get("cpf"));
+      verify(repository, never()).findById(any(UUID.class));
+      verify(repository, never()).save(any());
+      verify(cache).refresh(updatedConsent);
 
       ArgumentCaptor<ConsentLog> logCaptor = ArgumentCaptor.forClass(ConsentLog.class);
-      verify(logRepository).save(logCaptor.capture());
+      verify(logWriter).write(logCaptor.capture());
       assertEquals(ActionType.UPDATED, logCaptor.getValue().getAction());
     }
 
@@ -180,14 +372,33 @@ class ConsentServiceUnitTest {
     void shouldReturnErrorWhenUpdatingNonExistent() {
       ConsentRequestUpdateDTO request =
           new ConsentRequestUpdateDTO(null, ConsentStatus.REVOKED, null, null);
-      when(repository.findById(CONSENT_ID)).thenReturn(Mono.empty());
+      when(repository.updateFields(eq(CONSENT_ID), any(Update.class), isNull()))
+          .thenReturn(Mono.empty());
 
-      Mono<ConsentResponseDTO> resultMono = service.update(CONSENT_ID.toString(), request);
+      Mono<Versioned<ConsentResponseDTO>> resultMono =
+          service.update(CONSENT_ID.toString(), request, null);
 
       StepVerifier.create(resultMono).expectError(ResourceNotFoundException.class).verify();
 
-      verify(repository, never()).save(any());
-      verify(logRepository, never()).save(any());
+      verify(logWriter, never()).write(any());
+    }
+
+    @Test
+    @DisplayName("Should fail the precondition when the consent moved past the expected version")
+    void shouldFailPreconditionOnStaleVersion() {
+      ConsentRequestUpdateDTO request =
+          new ConsentRequestUpdateDTO(null, ConsentStatus.REVOKED, null, null);
+      when(repository.updateFields(eq(CONSENT_ID), any(Update.class), eq(Set.of(1))))
+          .thenReturn(Mono.empty());
+      when(repository.existsById(CONSENT_ID)).thenReturn(Mono.just(true));
+
+      StepVerifier.create(service.update(CONSENT_ID.toString(), request, Set.of(1)))
+          .expectError(PreconditionFailedException.class)
+          .verify();
+
+      verify(logWriter, never()).write(any());
+      verify(cache, never()).refresh(any());
+      assertEquals(1, timed("update", "precondition_failed"));
     }
   }
 
@@ -195,36 +406,36 @@ class ConsentServiceUnitTest {
   @DisplayName("Delete Consent Tests")
   class DeleteConsent {
     @Test
-    @DisplayName("Should delete and log consent successfully")
+    @DisplayName("Should delete in one round trip and log consent successfully")
     void shouldDeleteAndLogConsent() {
       Consent existingConsent = Consent.builder().id(CONSENT_ID).build();
 
-      when(repository.findById(CONSENT_ID)).thenReturn(Mono.just(existingConsent));
-      when(repository.delete(existingConsent)).thenReturn(Mono.empty().then());
-      when(logRepository.save(any(ConsentLog.class))).thenReturn(Mono.just(new ConsentLog()));
+      when(repository.findAndDeleteById(CONSENT_ID, null)).thenReturn(Mono.just(existingConsent));
+      when(logWriter.write(any(ConsentLog.class))).thenReturn(Mono.empty());
 
-      Mono<Void> resultMono = service.delete(CONSENT_ID.toString());
+      Mono<Void> resultMono = service.delete(CONSENT_ID.toString(), null);
 
       StepVerifier.create(resultMono).verifyComplete();
 
-      verify(repository).delete(existingConsent);
+      verify(repository, never()).findById(any(UUID.class));
+      verify(cache).markAbsent(CONSENT_ID);
 
       ArgumentCaptor<ConsentLog> logCaptor = ArgumentCaptor.forClass(ConsentLog.class);
-      verify(logRepository).save(logCaptor.capture());
+      verify(logWriter).write(logCaptor.capture());
       assertEquals(ActionType.DELETED, logCaptor.getValue().getAction());
+      assertEquals(CONSENT_ID, logCaptor.getValue().getConsentId());
     }
 
     @Test
     @DisplayName("Should return ResourceNotFoundException when consent to delete does not exist")
     void shouldReturnErrorWhenDeletingNonExistent() {
-      when(repository.findById(CONSENT_ID)).thenReturn(Mono.empty());
+      when(repository.findAndDeleteById(CONSENT_ID, null)).thenReturn(Mono.empty());
 
-      Mono<Void> resultMono = service.delete(CONSENT_ID.toString());
+      Mono<Void> resultMono = service.delete(CONSENT_ID.toString(), null);
 
       StepVerifier.create(resultMono).expectError(ResourceNotFoundException.class).verify();
 
-      verify(repository, never()).delete(any());
-      verify(logRepository, never()).save(any());
+      verify(logWriter, never()).write(any());
     }
   }
 
@@ -240,8 +451,9 @@ class ConsentServiceUnitTest {
       List<Consent> consentList = List.of(c1, c2);
       long totalCount = 5L;
 
-      when(repository.findAllBy(pageable)).thenReturn(Flux.fromIterable(consentList));
-      when(repository.count()).thenReturn(Mono.just(totalCount));
+      when(repository.findSlice(ConsentFilter.none(), pageable))
+          .thenReturn(Flux.fromIterable(consentList));
+      when(counter.count(ConsentFilter.none())).thenReturn(Mono.just(totalCount));
       when(mapper.toResponseDTO(any(Consent.class)))
           .thenAnswer(
               invocation -> {
@@ -249,7 +461,8 @@ class ConsentServiceUnitTest {
                 return new ConsentResponseDTO(c.getId(), null, null, null, null, null);
               });
 
-      Mono<PageDTO<ConsentResponseDTO>> resultMono = service.getAllBy(pageable);
+      Mono<PageDTO<ConsentResponseDTO>> resultMono =
+          service.getAllBy(ConsentFilter.none(), pageable);
 
       StepVerifier.create(resultMono)
           .expectNextMatches(
@@ -257,8 +470,127 @@ class ConsentServiceUnitTest {
                   page.content().size() == 2
                       && page.totalElements() == totalCount
                       && page.totalPages() == 3
-                      && page.page() == 0)
+                      && page.page() == 0
+                      && !page.hasNext())
+          .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should flag a next page from the extra element when counting is disabled")
+    void shouldReturnHasNextWithoutCount() {
+      Pageable pageable = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "creationDateTime"));
+      Consent c1 = Consent.builder().id(UUID.randomUUID()).build();
+      Consent c2 = Consent.builder().id(UUID.randomUUID()).build();
+      Consent c3 = Consent.builder().id(UUID.randomUUID()).build();
+
+      when(repository.findSlice(ConsentFilter.none(), pageable)).thenReturn(Flux.just(c1, c2, c3));
+      when(counter.count(ConsentFilter.none())).thenReturn(Mono.empty());
+      when(mapper.toResponseDTO(any(Consent.class)))
+          .thenAnswer(
+              invocation -> {
+                Consent c = invocation.getArgument(0);
+                return new ConsentResponseDTO(c.getId(), null, null, null, null, null);
+              });
+
+      StepVerifier.create(service.getAllBy(ConsentFilter.none(), pageable))
+          .expectNextMatches(
+              page ->
+                  page.content().size() == 2
+                      && page.totalElements() == null
+                      && page.totalPages() == null
+                      && page.hasNext()
+                      && ConsentCursor.decode(page.nextCursor()).id().equals(c2.getId()))
           .verifyComplete();
     }
+
+    @Test
+    @DisplayName("Should fetch the page after the cursor and return the next cursor")
+    void shouldReturnKeysetPageAfterCursor() {
+      LocalDateTime now = LocalDateTime.now();
+      Consent c1 = Consent.builder().id(UUID.randomUUID()).creationDateTime(now).build();
+      Consent c2 =
+          Consent.builder().id(UUID.randomUUID()).creationDateTime(now.minusMinutes(1)).build();
+      Consent c3 =
+          Consent.builder().id(UUID.randomUUID()).creationDateTime(now.minusMinutes(2)).build();
+      ConsentCursor cursor =
+          new ConsentCursor(
+              ConsentSortField.CREATION_DATE_TIME,
+              Sort.Direction.DESC,
+              now.plusMinutes(1),
+              UUID.randomUUID());
+
+      when(repository.findAllAfter(cursor, ConsentFilter.none(), 3))
+          .thenReturn(Flux.just(c1, c2, c3));
+      when(mapper.toResponseDTO(any(Consent.class)))
+          .thenAnswer(
+              invocation -> {
+                Consent c = invocation.getArgument(0);
+                return new ConsentResponseDTO(c.getId(), null, null, null, null, null);
+              });
+
+      Mono<PageDTO<ConsentResponseDTO>> resultMono =
+          service.getAllAfter(cursor.encode(), ConsentFilter.none(), 2);
+
+      StepVerifier.create(resultMono)
+          .expectNextMatches(
+              page ->
+                  page.content().size() == 2
+                      && page.totalElements() == null
+                      && ConsentCursor.decode(page.nextCursor())
+                          .equals(
+                              ConsentCursor.after(
+                                  c2, ConsentSortField.CREATION_DATE_TIME, Sort.Direction.DESC)))
+          .verifyComplete();
+
+      verify(repository, never()).count();
+    }
+
+    @Test
+    @DisplayName("Should not return a next cursor on the last keyset page")
+    void shouldNotReturnCursorOnLastKeysetPage() {
+      Consent c1 = Consent.builder().id(UUID.randomUUID()).build();
+      ConsentCursor cursor =
+          new ConsentCursor(ConsentSortField.ID, Sort.Direction.ASC, null, UUID.randomUUID());
+
+      when(repository.findAllAfter(cursor, ConsentFilter.none(), 3)).thenReturn(Flux.just(c1));
+      when(mapper.toResponseDTO(c1))
+          .thenReturn(new ConsentResponseDTO(c1.getId(), null, null, null, null, null));
+
+      StepVerifier.create(service.getAllAfter(cursor.encode(), ConsentFilter.none(), 2))
+          .expectNextMatches(page -> page.content().size() == 1 && page.nextCursor() == null)
+          .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should stream consents from the repository cursor")
+    void shouldStreamConsents() {
+      Sort sort = Sort.by(Sort.Direction.ASC, "creationDateTime");
+      Consent c1 = Consent.builder().id(UUID.randomUUID()).build();
+      Consent c2 = Consent.builder().id(UUID.randomUUID()).build();
+
+      when(repository.streamAll(sort)).thenReturn(Flux.just(c1, c2));
+      when(mapper.toResponseDTO(any(Consent.class)))
+          .thenAnswer(
+              invocation -> {
+                Consent c = invocation.getArgument(0);
+                return new ConsentResponseDTO(c.getId(), null, null, null, null, null);
+              });
+
+      StepVerifier.create(service.stream(sort), 1)
+          .expectNextMatches(dto -> dto.id().equals(c1.getId()))
+          .thenRequest(1)
+          .expectNextMatches(dto -> dto.id().equals(c2.getId()))
+          .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed cursor")
+    void shouldRejectMalformedCursor() {
+      StepVerifier.create(service.getAllAfter("not-a-cursor", ConsentFilter.none(), 2))
+          .expectError(IllegalArgumentException.class)
+          .verify();
+
+      verify(repository, never()).findAllAfter(any(), any(), anyInt());
+    }
   }
 }
@@ -0,0 +1,349 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.sensedia.sample.consents.config.IdempotencyProperties;
+import com.sensedia.sample.consents.domain.ConsentStatus;
+import com.sensedia.sample.consents.domain.IdempotencyRecord;
+import com.sensedia.sample.consents.dto.ConsentRequestCreateDTO;
+import com.sensedia.sample.consents.dto.ConsentResponseDTO;
+import com.sensedia.sample.consents.exception.IdempotencyConflictException;
+import com.sensedia.sample.consents.repository.IdempotencyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceUnitTest {
+
+  private static final String KEY = "retry-me";
+  private static final LocalDateTime EXPIRATION = LocalDateTime.now().plusDays(1);
+  private static final ConsentRequestCreateDTO REQUEST =
+      new ConsentRequestCreateDTO("660.527.050-94", ConsentStatus.ACTIVE, EXPIRATION, "Info");
+  private static final ConsentResponseDTO RESPONSE =
+      new ConsentResponseDTO(
+          UUID.randomUUID(),
+          "66052705094",
+          ConsentStatus.ACTIVE,
+          LocalDateTime.now(),
+          EXPIRATION,
+          "Info");
+
+  @Mock private IdempotencyRepository repository;
+
+  private SimpleMeterRegistry registry;
+  private IdempotencyService service;
+  private AtomicInteger creates;
+  private AtomicInteger finds;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    service =
+        new IdempotencyService(
+            repository,
+            new IdempotencyProperties(
+                Duration.ofHours(24),
+                Duration.ofMillis(500),
+                Duration.ofMillis(10),
+                Duration.ofSeconds(30),
+                100,
+                Duration.ofMinutes(1)),
+            new TimeOrderedIdGenerator(),
+            registry);
+    creates = new AtomicInteger();
+    finds = new AtomicInteger();
+  }
+
+  private Mono<ConsentResponseDTO> execute(
+      ConsentRequestCreateDTO request, Mono<ConsentResponseDTO> created) {
+    return execute(request, created, Mono.empty());
+  }
+
+  private Mono<ConsentResponseDTO> execute(
+      ConsentRequestCreateDTO request,
+      Mono<ConsentResponseDTO> created,
+      Mono<ConsentResponseDTO> found) {
+    return service.execute(KEY, request, counted(created, creates), counted(found, finds));
+  }
+
+  private static Function<UUID, Mono<ConsentResponseDTO>> counted(
+      Mono<ConsentResponseDTO> result, AtomicInteger calls) {
+    return id -> Mono.defer(() -> result.doOnSubscribe(s -> calls.incrementAndGet()));
+  }
+
+  private double requests(String result) {
+    return registry.get("consents.idempotency").tag("result", result).counter().count();
+  }
+
+  @Test
+  @DisplayName("Should create once and replay later repeats from memory")
+  void shouldCreateOnceAndReplay() {
+    when(repository.claim(eq(KEY), anyString(), any())).thenReturn(Mono.just(true));
+    when(repository.complete(KEY, RESPONSE)).thenReturn(Mono.empty());
+
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+
+    assertEquals(1, creates.get());
+    verify(repository, times(1)).claim(eq(KEY), anyString(), any());
+    assertEquals(1, requests("new"));
+    assertEquals(1, requests("replayed"));
+  }
+
+  @Test
+  @DisplayName("Should make concurrent repeats wait for the first request instead of racing")
+  void shouldJoinRequestInFlight() {
+    Sinks.One<ConsentResponseDTO> created = Sinks.one();
+    when(repository.claim(eq(KEY), anyString(), any())).thenReturn(Mono.just(true));
+    when(repository.complete(KEY, RESPONSE)).thenReturn(Mono.empty());
+
+    Mono<ConsentResponseDTO> first = execute(REQUEST, created.asMono());
+    Mono<ConsentResponseDTO> repeat = execute(REQUEST, created.asMono());
+
+    StepVerifier.create(Mono.zip(first, repeat))
+        .then(() -> created.tryEmitValue(RESPONSE))
+        .assertNext(
+            responses -> {
+              assertEquals(RESPONSE, responses.getT1());
+              assertEquals(RESPONSE, responses.getT2());
+            })
+        .verifyComplete();
+    assertEquals(1, creates.get());
+    assertEquals(1, requests("joined"));
+  }
+
+  @Test
+  @DisplayName("Should wait for the response stored by another instance")
+  void shouldAwaitResponseStoredElsewhere() {
+    ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+    when(repository.claim(eq(KEY), fingerprint.capture(), any())).thenReturn(Mono.just(false));
+    when(repository.takeOver(eq(KEY), any())).thenReturn(Mono.empty());
+    AtomicInteger polls = new AtomicInteger();
+    when(repository.findById(KEY))
+        .thenAnswer(
+            i ->
+                Mono.fromSupplier(
+                    () ->
+                        IdempotencyRecord.builder()
+                            .key(KEY)
+                            .fingerprint(fingerprint.getValue())
+                            .response(polls.incrementAndGet() < 3 ? null : RESPONSE)
+                            .build()));
+
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+
+    assertEquals(0, creates.get());
+    assertEquals(3, polls.get());
+  }
+
+  @Test
+  @DisplayName("Should reject a key reused for a different request")
+  void shouldRejectKeyReusedForDifferentRequest() {
+    when(repository.claim(eq(KEY), anyString(), any())).thenReturn(Mono.just(true));
+    when(repository.complete(KEY, RESPONSE)).thenReturn(Mono.empty());
+    ConsentRequestCreateDTO other =
+        new ConsentRequestCreateDTO("012.345.678-90", ConsentStatus.ACTIVE, EXPIRATION, "Info");
+
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+    StepVerifier.create(execute(other, Mono.just(RESPONSE)))
+        .expectError(IdempotencyConflictException.class)
+        .verify();
+
+    assertEquals(1, creates.get());
+  }
+
+  @Test
+  @DisplayName("Should release the claim but keep the record when the create fails")
+  void shouldReleaseKeyOnFailure() {
+    when(repository.claim(eq(KEY), anyString(), any())).thenReturn(Mono.just(true));
+    when(repository.release(KEY)).thenReturn(Mono.empty());
+
+    StepVerifier.create(execute(REQUEST, Mono.error(new IllegalStateException("boom"))))
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    verify(repository).release(KEY);
+    verify(repository, never()).complete(anyString(), any());
+  }
+
+  @Test
+  @DisplayName("Should return the saved consent instead of creating another when a retry resumes")
+  void shouldResumeWithoutCreatingAgain() {
+    ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<UUID> consentId = ArgumentCaptor.forClass(UUID.class);
+    when(repository.claim(eq(KEY), fingerprint.capture(), consentId.capture()))
+        .thenReturn(Mono.just(true), Mono.just(false));
+    when(repository.complete(KEY, RESPONSE))
+        .thenReturn(Mono.error(new IllegalStateException("write failed")), Mono.empty());
+    when(repository.release(KEY)).thenReturn(Mono.empty());
+    when(repository.findById(KEY))
+        .thenAnswer(
+            i ->
+                Mono.just(
+                    IdempotencyRecord.builder()
+                        .key(KEY)
+                        .fingerprint(fingerprint.getValue())
+                        .consentId(consentId.getAllValues().get(0))
+                        .build()));
+    when(repository.takeOver(eq(KEY), any()))
+        .thenAnswer(
+            i ->
+                Mono.just(
+                    IdempotencyRecord.builder()
+                        .key(KEY)
+                        .fingerprint(fingerprint.getValue())
+                        .consentId(consentId.getAllValues().get(0))
+                        .build()));
+    AtomicInteger lookups = new AtomicInteger();
+    Function<UUID, Mono<ConsentResponseDTO>> find =
+        id -> {
+          assertEquals(consentId.getAllValues().get(0), id);
+          lookups.incrementAndGet();
+          return Mono.just(RESPONSE);
+        };
+
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectError(IllegalStateException.class)
+        .verify();
+    StepVerifier.create(service.execute(KEY, REQUEST, id -> Mono.error(new AssertionError()), find))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+
+    assertEquals(1, creates.get());
+    assertEquals(1, lookups.get());
+    assertEquals(1, requests("resumed"));
+    verify(repository, times(2)).complete(KEY, RESPONSE);
+  }
+
+  @Test
+  @DisplayName(
+      "Should create the consent with the claimed id when the failed request saved nothing")
+  void shouldCreateWithClaimedIdWhenNothingWasSaved() {
+    UUID claimedId = UUID.randomUUID();
+    ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+    when(repository.claim(eq(KEY), fingerprint.capture(), any())).thenReturn(Mono.just(false));
+    when(repository.findById(KEY))
+        .thenAnswer(
+            i ->
+                Mono.just(
+                    IdempotencyRecord.builder()
+                        .key(KEY)
+                        .fingerprint(fingerprint.getValue())
+                        .consentId(claimedId)
+                        .build()));
+    when(repository.takeOver(eq(KEY), any()))
+        .thenAnswer(
+            i ->
+                Mono.just(
+                    IdempotencyRecord.builder()
+                        .key(KEY)
+                        .fingerprint(fingerprint.getValue())
+                        .consentId(claimedId)
+                        .build()));
+    when(repository.complete(KEY, RESPONSE)).thenReturn(Mono.empty());
+    AtomicInteger createdWith = new AtomicInteger();
+
+    StepVerifier.create(
+            service.execute(
+                KEY,
+                REQUEST,
+                id -> {
+                  assertEquals(claimedId, id);
+                  createdWith.incrementAndGet();
+                  return Mono.just(RESPONSE);
+                },
+                id -> Mono.empty()))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+
+    assertEquals(1, createdWith.get());
+  }
+
+  @Test
+  @DisplayName("Should take over a claim held past its lease by a request that died")
+  void shouldTakeOverStaleClaim() {
+    UUID claimedId = UUID.randomUUID();
+    ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+    when(repository.claim(eq(KEY), fingerprint.capture(), any())).thenReturn(Mono.just(false));
+    when(repository.findById(KEY))
+        .thenAnswer(
+            i ->
+                Mono.just(
+                    IdempotencyRecord.builder()
+                        .key(KEY)
+                        .fingerprint(fingerprint.getValue())
+                        .consentId(claimedId)
+                        .claimedAt(Instant.now().minus(Duration.ofMinutes(5)))
+                        .build()));
+    when(repository.takeOver(eq(KEY), any()))
+        .thenReturn(Mono.just(IdempotencyRecord.builder().key(KEY).consentId(claimedId).build()));
+    when(repository.complete(KEY, RESPONSE)).thenReturn(Mono.empty());
+
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectNext(RESPONSE)
+        .verifyComplete();
+
+    assertEquals(1, creates.get());
+    assertEquals(1, requests("resumed"));
+  }
+
+  @Test
+  @DisplayName("Should leave a claim within its lease to the request holding it")
+  void shouldNotTakeOverLiveClaim() {
+    ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+    when(repository.claim(eq(KEY), fingerprint.capture(), any())).thenReturn(Mono.just(false));
+    when(repository.findById(KEY))
+        .thenAnswer(
+            i ->
+                Mono.just(
+                    IdempotencyRecord.builder()
+                        .key(KEY)
+                        .fingerprint(fingerprint.getValue())
+                        .consentId(UUID.randomUUID())
+                        .claimedAt(Instant.now())
+                        .build()));
+
+    StepVerifier.create(execute(REQUEST, Mono.just(RESPONSE)))
+        .expectError(IdempotencyConflictException.class)
+        .verify();
+
+    verify(repository, never()).takeOver(anyString(), any());
+    assertEquals(0, creates.get());
+  }
+
+  @Test
+  @DisplayName("Should reject a blank key")
+  void shouldRejectBlankKey() {
+    StepVerifier.create(
+            service.execute(" ", REQUEST, id -> Mono.just(RESPONSE), id -> Mono.empty()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verifyNoInteractions(repository);
+  }
+}
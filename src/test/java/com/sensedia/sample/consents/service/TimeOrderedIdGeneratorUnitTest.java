@@ -0,0 +1,77 @@
+package com.sensedia.sample.consents.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TimeOrderedIdGeneratorUnitTest {
+
+  private static final long NOW = 1_760_000_000_000L;
+
+  private final AtomicLong clock = new AtomicLong(NOW);
+  private final TimeOrderedIdGenerator generator =
+      new TimeOrderedIdGenerator(clock::get, new Random(42));
+
+  private static long timestampOf(UUID id) {
+    return id.getMostSignificantBits() >>> 16;
+  }
+
+  @Test
+  @DisplayName("Should generate version 7 ids carrying the current time in milliseconds")
+  void shouldGenerateVersion7Ids() {
+    UUID id = generator.generateId();
+
+    assertEquals(7, id.version());
+    assertEquals(2, id.variant());
+    assertEquals(NOW, timestampOf(id));
+  }
+
+  @Test
+  @DisplayName("Should keep ids increasing within a millisecond and when the clock steps back")
+  void shouldBeMonotonic() {
+    List<UUID> ids = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      if (i == 5_000) {
+        clock.addAndGet(-1_000);
+      }
+      ids.add(generator.generateId());
+    }
+
+    for (int i = 1; i < ids.size(); i++) {
+      assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "id " + i + " is not increasing");
+    }
+    // 10000 ids in a frozen millisecond overflow the 12-bit counter into the timestamp twice.
+    assertEquals(NOW + 2, timestampOf(ids.getLast()));
+  }
+
+  @Test
+  @DisplayName("Should order ids by creation time in their string and byte form")
+  void shouldSortByCreationTime() {
+    UUID earlier = generator.generateId();
+    clock.incrementAndGet();
+    UUID later = generator.generateId();
+
+    assertTrue(earlier.toString().compareTo(later.toString()) < 0);
+  }
+
+  @Test
+  @DisplayName("Should not repeat ids generated concurrently")
+  void shouldBeUniqueAcrossThreads() {
+    TimeOrderedIdGenerator shared = new TimeOrderedIdGenerator();
+    Set<UUID> ids = ConcurrentHashMap.newKeySet();
+
+    IntStream.range(0, 100_000).parallel().forEach(i -> ids.add(shared.generateId()));
+
+    assertEquals(100_000, ids.size());
+  }
+}